@@ -1,3 +1,5 @@
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * Abstract class for the Scrolling Game project.
  * This class must be extended, with all abstract methods
@@ -11,7 +13,13 @@ public abstract class AbstractGame
     // Variables for the game: these are inherited by any descendant class,
     // and can be accessed by such a class (because they are protected).
     
-    // Handles most of the graphics routines.
+    // Handles most of the graphics routines (a Grid, or any other Board a
+    // game is given, such as a HeadlessBoard).
+    protected Board board;
+    // The same board when it is a Grid, for descendants that use it as one.
+    // Games made with AbstractGame( rows, cols ) always have one: when there
+    // is no display it simply has no window (null only for games given
+    // another kind of Board).
     protected Grid grid;
     // Tracks user's row (user's column always == 1).
     protected int userRow;
@@ -30,15 +38,73 @@ public abstract class AbstractGame
     // up; higher values slows it down.
     protected int waitTime;
     protected int msElapsed;
+    // Game time (msElapsed) at which the screen next scrolls.
+    protected int nextScrollTime;
     
     // Used to check if user-icon is to be moved reset to 0 after each step of
-    // play().
+    // play(). Only touched by the game thread: keys pressed go through
+    // queueDirection() instead.
     protected int direction;
     
+    // Directions chosen by the player and not yet used, one per step.
+    private final InputQueue input;
+    
+    // Moving objects, if the game uses any: each step they are moved and
+    // drawn onto the grid (see EntityPool). Games may use these instead of,
+    // or as well as, images scrolled by scrollLeft(); entities are not moved
+    // by scrolling.
+    protected EntityPool entities;
+    
+    // Endless world the right edge is filled from, instead of by
+    // populateRightEdge() (null if the game makes up each column itself).
+    private ChunkedWorld world;
+    
+    // Source of all randomness in the game; give it a known seed (setSeed())
+    // to make a game repeatable.
+    protected GameRandom random;
+    
+    // Chooses the direction of steps with no key press (null if none).
+    private Controller controller;
+    
+    // Directions used in each step, when recording (null otherwise).
+    private InputLog inputLog;
+    
+    // Where each session of play() or simulate() is kept (null if none).
+    private ScoreStore scoreStore;
+    
     // The following are pre-defined constants for directions.
     public static final int UP = -1;
     public static final int DOWN = 1;
     
+    // Length of one step of play, in (possibly simulated) milliseconds.
+    public static final int STEP_TIME = 100;
+    
+    // Set this system property to true to run games with no window.
+    public static final String HEADLESS_PROPERTY = "game.headless";
+    
+    // Most steps run back to back to catch up after a slow frame; beyond this
+    // the game slows down rather than trying to catch up forever.
+    public static final int MAX_CATCH_UP_STEPS = 5;
+    
+    // Images every game starts with (see userImg, avoidImg and getImg).
+    private static final String USER_IMAGE = "ship.gif";
+    private static final String AVOID_IMAGE = "asteroid.gif";
+    private static final String GET_IMAGE = "burger.gif";
+    
+    // Real-time rates used by play(), in steps and frames per second.
+    private double updateRate;
+    private double renderRate;
+    
+    // Times taken by each step and each frame drawn by play().
+    private final FrameStats updateStats;
+    private final FrameStats renderStats;
+    
+    // Live figures shown while playing (null unless turned on).
+    private StatsOverlay stats;
+    
+    // Text last put in the title bar by updateTitle() (null if none yet).
+    private String title;
+    
     /**
      * Basic game constructor: sets up grid of given size, initializes
      * elementary game parameters (these can be changed in the descendant class
@@ -49,45 +115,522 @@ public abstract class AbstractGame
      */
     public AbstractGame( int rows, int cols )
     {
-        grid = new Grid( rows, cols );
+        this( createBoard( rows, cols ) );
+    }
+    
+    /**
+     * Constructor for a game played on a given board (for instance, a
+     * HeadlessBoard for simulations that should not open a window).
+     *
+     * @param board Game-board to play on.
+     */
+    public AbstractGame( Board board )
+    {
+        long began = StartupProfile.begin();
+        this.board = board;
+        grid = board instanceof Grid ? (Grid) board : null;
+        updateRate = 1000.0 / STEP_TIME;
+        renderRate = 60;
+        updateStats = new FrameStats( "update" );
+        renderStats = new FrameStats( "render" );
         userRow = 0;
         msElapsed = 0;
+        nextScrollTime = 0;
+        random = new GameRandom();
+        inputLog = null;
+        scoreStore = null;
+        controller = null;
+        input = new InputQueue();
+        entities = new EntityPool( board.getNumRows(), board.getNumCols(), 64 );
+        world = null;
+        String statsMode = System.getProperty( StatsOverlay.PROPERTY );
+        stats = statsMode == null ? null : new StatsOverlay( this, statsMode );
         timesGet = 0;
         timesAvoid = 0;
+        title = null;
         updateTitle();
         waitTime = 400;
-        userImg = "ship.gif";
-        avoidImg = "asteroid.gif";
-        getImg = "burger.gif";
-        grid.setImage( userRow, 1, userImg );
+        userImg = USER_IMAGE;
+        avoidImg = AVOID_IMAGE;
+        getImg = GET_IMAGE;
+        board.setImage( userRow, 1, userImg );
+        if ( grid != null && !Boolean.getBoolean( HEADLESS_PROPERTY ) )
+        {
+            grid.preloadSprites( userImg, avoidImg, getImg );
+            StartupProfile.end( StartupProfile.GAME, began );
+        }
+    }
+    
+    /*
+     * Utility method: creates the board for a new game of the given size.
+     * With no display, the Grid is kept off the screen, so that descendants
+     * using grid work unchanged.
+     */
+    private static Board createBoard( int rows, int cols )
+    {
+        if ( Boolean.getBoolean( HEADLESS_PROPERTY ) )
+            return new Grid( rows, cols, false );
+        return new Grid( rows, cols );
     }
     
     /**
      * Method that is called by the system to make the game-play happen.
+     * Steps of game-play run at a fixed rate (getUpdateRate() per second of
+     * real time, measured with System.nanoTime()), catching up with extra
+     * steps when one runs late; the screen is drawn separately, at
+     * getRenderRate() frames per second.
      */
     public void play()
     {
+        long seed = random.getState();
+        long started = System.nanoTime();
+        long stepNanos = (long) ( 1e9 / updateRate );
+        long frameNanos = (long) ( 1e9 / renderRate );
+        long previous = System.nanoTime();
+        long nextFrame = previous;
+        long lag = 0;
+        
+        // Changes are collected between frames, and drawn all at once by render().
+        board.beginUpdate();
         while ( !isGameOver() )
         {
-            Grid.pause( 100 );
-            grid.setImage( userRow, 1, null );
-            move();
-            direction = 0;
-            grid.setImage( userRow, 1, userImg );
-            if ( msElapsed % waitTime == 0 )
+            long now = System.nanoTime();
+            lag += now - previous;
+            previous = now;
+            
+            int steps = 0;
+            while ( lag >= stepNanos && !isGameOver() )
             {
-                scrollLeft();
-                populateRightEdge();
+                if ( steps == MAX_CATCH_UP_STEPS )
+                {
+                    // Too far behind: drop the backlog rather than never drawing.
+                    lag = 0;
+                    break;
+                }
+                long start = System.nanoTime();
+                step();
+                updateStats.record( System.nanoTime() - start );
+                lag -= stepNanos;
+                steps++;
+            }
+            
+            now = System.nanoTime();
+            if ( now - nextFrame >= 0 )
+            {
+                renderFrame( (double) lag / stepNanos );
+                if ( stats != null )
+                    stats.update( System.nanoTime() );
+                nextFrame += frameNanos;
+                if ( now - nextFrame > frameNanos )
+                    nextFrame = now + frameNanos;
             }
-            updateTitle();
-            msElapsed += 100;
+            
+            // Sleep until the next step or frame is due, whichever is first.
+            long wait = Math.min( stepNanos - lag, nextFrame - System.nanoTime() );
+            if ( wait > 0 )
+                LockSupport.parkNanos( wait );
+        }
+        renderFrame( 0 );
+        board.commitUpdate();
+        recordSession( seed, System.nanoTime() - started );
+    }
+    
+    /**
+     * Called by play() to draw a frame: shows all changes made to the board
+     * since the last frame and updates the window title. Descendants that
+     * draw extra (smoothly moving) things may override this, calling
+     * super.render( alpha ) first.
+     *
+     * @param alpha How far (from 0 to 1) game-time has moved on from the last
+     *            step towards the next one, for drawing in-between positions.
+     */
+    protected void render( double alpha )
+    {
+        board.commitUpdate();
+        board.beginUpdate();
+        updateTitle();
+    }
+    
+    /**
+     * Sets how many steps of game-play play() runs per second of real time
+     * (by default 1000 / STEP_TIME, so game-time matches real time). Takes
+     * effect the next time play() is called.
+     *
+     * @param stepsPerSecond New step rate (must be positive).
+     */
+    public void setUpdateRate( double stepsPerSecond )
+    {
+        if ( !( stepsPerSecond > 0 ) )
+            throw new RuntimeException( "invalid update rate:  " + stepsPerSecond );
+        updateRate = stepsPerSecond;
+    }
+    
+    /**
+     * @return Number of steps of game-play play() runs per second.
+     */
+    public double getUpdateRate()
+    {
+        return updateRate;
+    }
+    
+    /**
+     * Sets how many frames play() draws per second (60 by default). Takes
+     * effect the next time play() is called.
+     *
+     * @param framesPerSecond New frame rate (must be positive).
+     */
+    public void setRenderRate( double framesPerSecond )
+    {
+        if ( !( framesPerSecond > 0 ) )
+            throw new RuntimeException( "invalid render rate:  " + framesPerSecond );
+        renderRate = framesPerSecond;
+    }
+    
+    /**
+     * @return Number of frames play() draws per second.
+     */
+    public double getRenderRate()
+    {
+        return renderRate;
+    }
+    
+    /**
+     * @return Times taken by each step of game-play run by play(); may be
+     *         read while the game is running.
+     */
+    public FrameStats getUpdateStats()
+    {
+        return updateStats;
+    }
+    
+    /**
+     * @return Times taken by each frame drawn by play(); may be read while
+     *         the game is running.
+     */
+    public FrameStats getRenderStats()
+    {
+        return renderStats;
+    }
+    
+    /**
+     * Turns live performance figures on or off for play() (see StatsOverlay;
+     * they can also be turned on with -Dgame.stats=log or -Dgame.stats=title).
+     *
+     * @param mode StatsOverlay.LOG, StatsOverlay.TITLE, or null for off.
+     */
+    public void showStats( String mode )
+    {
+        stats = mode == null ? null : new StatsOverlay( this, mode );
+        updateTitle();
+    }
+    
+    /**
+     * Runs game-play as fast as possible, with no pauses: each step advances
+     * the game clock (msElapsed) by STEP_TIME without waiting in real time.
+     * Useful on a HeadlessBoard for balancing runs and tests.
+     *
+     * @param maxSteps Largest number of steps to run.
+     *
+     * @return Number of steps actually run (fewer than maxSteps if the game
+     *         ended first).
+     */
+    public long simulate( long maxSteps )
+    {
+        long seed = random.getState();
+        long started = System.nanoTime();
+        long steps = 0;
+        while ( steps < maxSteps && !isGameOver() )
+        {
+            step();
+            steps++;
         }
+        updateTitle();
+        recordSession( seed, System.nanoTime() - started );
+        return steps;
+    }
+    
+    /**
+     * Starts the game's random numbers from a given seed, so that the same
+     * input gives the same game. Should be called before play starts.
+     *
+     * @param seed Seed for the game's GameRandom.
+     */
+    public void setSeed( long seed )
+    {
+        random.setState( seed );
+    }
+    
+    /**
+     * Replaces the game's source of random numbers (for instance, with a
+     * GameRandom using a different algorithm).
+     *
+     * @param random New source of random numbers.
+     */
+    public void setRandom( GameRandom random )
+    {
+        this.random = random;
+    }
+    
+    /**
+     * Starts recording the direction used in each step, along with the
+     * current state of the game's GameRandom, so the game can be replayed.
+     * Should be called before play starts.
+     *
+     * @return Log that each step will be added to.
+     */
+    public InputLog startRecording()
+    {
+        inputLog = new InputLog( random.getState(), board.getNumRows(), board.getNumCols() );
+        return inputLog;
+    }
+    
+    /**
+     * @return Log being recorded by startRecording() (null if not recording).
+     */
+    public InputLog getInputLog()
+    {
+        return inputLog;
+    }
+    
+    /**
+     * Replays a recorded game as fast as possible, with no pauses and no
+     * drawing needed (use a HeadlessBoard for full speed). Should be called
+     * on a newly created game of the same kind as the one recorded.
+     *
+     * @param log Log recorded from the original game.
+     *
+     * @return Number of steps replayed.
+     */
+    public long replay( InputLog log )
+    {
+        random.setState( log.getSeed() );
+        InputLog recording = inputLog;
+        Controller playing = controller;
+        inputLog = null;
+        controller = null;
+        int steps = 0;
+        while ( steps < log.size() && !isGameOver() )
+        {
+            direction = log.get( steps );
+            step();
+            steps++;
+        }
+        inputLog = recording;
+        controller = playing;
+        updateTitle();
+        return steps;
+    }
+    
+    /**
+     * Keeps the result of every later session of play() or simulate() (its
+     * score, objects got and hit, game time, starting seed and real time
+     * taken) in a store, for leaderboards and statistics.
+     *
+     * @param store Store to add sessions to (null to stop keeping them).
+     */
+    public void setScoreStore( ScoreStore store )
+    {
+        scoreStore = store;
+    }
+    
+    /**
+     * @return Store sessions are kept in (null if none).
+     */
+    public ScoreStore getScoreStore()
+    {
+        return scoreStore;
+    }
+    
+    /**
+     * Streams the board's contents from a world made ahead of time in the
+     * background: each time the screen scrolls, the new right-hand column
+     * comes from the world instead of from populateRightEdge(). Should be
+     * called before play starts.
+     *
+     * @param world World with as many rows as the board (null to go back to
+     *            populateRightEdge()).
+     */
+    public void setWorld( ChunkedWorld world )
+    {
+        if ( world != null && world.getNumRows() != board.getNumRows() )
+            throw new RuntimeException( "world has " + world.getNumRows() + " rows, board has " +
+                                       board.getNumRows() );
+        this.world = world;
+    }
+    
+    /**
+     * @return World the board is streamed from (null if none).
+     */
+    public ChunkedWorld getWorld()
+    {
+        return world;
+    }
+    
+    /**
+     * Lets something other than the keyboard play the game: the controller
+     * chooses the direction of every step that has no key press waiting.
+     * Directions it chooses are recorded by startRecording() like any
+     * other.
+     *
+     * @param controller Controller to ask (null for keyboard only).
+     */
+    public void setController( Controller controller )
+    {
+        this.controller = controller;
+    }
+    
+    /**
+     * @return Controller playing the game (null if none).
+     */
+    public Controller getController()
+    {
+        return controller;
+    }
+    
+    /**
+     * Queues a direction for the user to move in, taken by the next step of
+     * game-play that has no direction yet (each queued direction moves the
+     * user once, so quick key presses are not lost). Meant to be called
+     * from the GUI thread's key listener while the game thread plays; it
+     * never blocks either thread.
+     *
+     * @param direction UP or DOWN.
+     */
+    public void queueDirection( int direction )
+    {
+        input.offer( direction );
+    }
+    
+    /**
+     * Runs a single step of game-play: moves the user, and every waitTime
+     * milliseconds scrolls the screen and adds new objects (from the world,
+     * if there is one).
+     */
+    protected void step()
+    {
+        // Key presses come first; the controller sees the board as it was
+        // left by the last step.
+        if ( direction == 0 )
+            direction = input.poll();
+        if ( direction == 0 && controller != null )
+            direction = controller.nextDirection( this );
+        // Whole step is drawn as one coalesced repaint.
+        board.beginUpdate();
+        board.setImage( userRow, 1, null );
+        if ( inputLog != null )
+            inputLog.record( direction );
+        PhaseEvent phase = PhaseEvent.start( PhaseEvent.MOVE );
+        move();
+        PhaseEvent.end( phase );
+        direction = 0;
+        // Any entity the user moved onto has been dealt with by move().
+        if ( entities.size() > 0 )
+            entities.removeAt( userRow, 1 );
+        board.setImage( userRow, 1, userImg );
+        if ( msElapsed >= nextScrollTime )
+        {
+            // Entities stay where they are; only their images would scroll.
+            entities.erase( board );
+            phase = PhaseEvent.start( PhaseEvent.SCROLL_LEFT );
+            scrollLeft();
+            PhaseEvent.end( phase );
+            phase = PhaseEvent.start( PhaseEvent.POPULATE_RIGHT_EDGE );
+            if ( world != null )
+                world.fillColumn( board, board.getNumCols() - 1 );
+            else
+                populateRightEdge();
+            PhaseEvent.end( phase );
+            nextScrollTime += waitTime;
+        }
+        // Run even with no entities left, to take away the images of any
+        // removed since the last step.
+        phase = PhaseEvent.start( PhaseEvent.MOVE_ENTITIES );
+        moveEntities();
+        PhaseEvent.end( phase );
+        board.commitUpdate();
+        msElapsed += STEP_TIME;
+    }
+    
+    /*
+     * Utility method: moves every entity and draws it on the grid; an entity
+     * that reaches the user is a collision, and is used up.
+     */
+    private void moveEntities()
+    {
+        entities.update();
+        entities.render( board );
+        if ( entities.findAt( userRow, 1 ) >= 0 )
+        {
+            checkCollision( userRow, 1 );
+            entities.removeAt( userRow, 1 );
+            board.setImage( userRow, 1, userImg );
+        }
+    }
+    
+    /* Utility method: adds the session just ended to the score store, if any. */
+    private void recordSession( long seed, long durationNanos )
+    {
+        if ( scoreStore != null )
+            scoreStore.add( new SessionRecord( getScore(), timesGet, timesAvoid, msElapsed, seed,
+                                               durationNanos, System.currentTimeMillis(),
+                                               isGameOver() ) );
+    }
+    
+    /* Utility method: draws a frame, recording how long it took. */
+    private void renderFrame( double alpha )
+    {
+        long start = System.nanoTime();
+        render( alpha );
+        renderStats.record( System.nanoTime() - start );
+    }
+    
+    /**
+     * Scrolls every object on the board except the user left one cell, using
+     * Board.shiftLeft() so that the cost does not depend on the number of
+     * columns. Objects in column 0 drop off, and the last column is left
+     * empty for populateRightEdge(). The user's icon stays where it is,
+     * unless an object has just moved onto it (as when scrolling one object
+     * at a time). Descendants may call this from scrollLeft().
+     */
+    protected void scrollBoard()
+    {
+        board.setImage( userRow, 1, null );
+        board.shiftLeft();
+        if ( board.getSprite( userRow, 1 ) == SpriteTable.NONE )
+            board.setImage( userRow, 1, userImg );
+    }
+    
+    /**
+     * Calls handleCollision( row, col ), timing it as the HANDLE_COLLISION
+     * phase of the step (see PhaseEvent). Descendants should call this
+     * rather than handleCollision() itself, so that every collision check
+     * shows up in a Flight Recorder session.
+     *
+     * @param row Row of Cell the user is entering.
+     * @param col Column of Cell the user is entering.
+     */
+    protected final void checkCollision( int row, int col )
+    {
+        PhaseEvent phase = PhaseEvent.start( PhaseEvent.HANDLE_COLLISION );
+        handleCollision( row, col );
+        PhaseEvent.end( phase );
     }
     
     // displays game score in title bar of window
+    // (followed by the live figures, if they are shown there); called every
+    // frame, so the board is only told when the text changes
     public void updateTitle()
     {
-        grid.setTitle( "Game Score:  " + getScore() );
+        String text;
+        if ( stats != null && stats.isShownInTitle() )
+            text = "Game Score:  " + getScore() + "  |  " + stats.getText();
+        else
+            text = "Game Score:  " + getScore();
+        if ( !text.equals( title ) )
+        {
+            title = text;
+            board.setTitle( text );
+        }
     }
     
     // Moves the user-icon up and down
@@ -106,7 +649,8 @@ public abstract class AbstractGame
     // and updates timesGet or timesAvoid counter depending upon what that
     // object is; should be called whenever the user enters a square in grid
     // already containing some object, or when such an object moves left into
-    // the user's current location (must be over-ridden in descendant).
+    // the user's current location (must be over-ridden in descendant;
+    // call it through checkCollision() so that it is timed).
     public abstract void handleCollision( int row, int col );
     
     // Calculates and returns score based on game parameters
@@ -0,0 +1,315 @@
+/**
+ * Runs large batches of games for the Scrolling Game project, spread over
+ * all processor cores, to see how settings such as waitTime, the odds of
+ * each kind of object appearing and the number of hits allowed change the
+ * scores. Every game runs on its own HeadlessBoard (so no window is ever
+ * opened) with its own GameRandom, seeded from the batch seed and the game's
+ * number, so nothing is shared between threads and a batch gives the same
+ * results however many threads run it.
+ *
+ * Games can also be played by LookAheadBots (one search thread each, as
+ * the games themselves fill the cores), as a load and soak test of the
+ * engine; with a time budget, bots' scores depend on the machine.
+ *
+ * Every game's session may also be kept in a ScoreStore shared by all the
+ * threads (see setScoreStore()).
+ *
+ * Run from the command line as:
+ * java BatchSimulator [-bot budgetMicros] [-scores file] [games [waitTime [avoidOdds [getOdds [maxTimesAvoid]]]]]
+ */
+import java.util.concurrent.*;
+
+public class BatchSimulator
+{
+    // Most steps of a game played by bots from the command line.
+    private static final long BOT_MAX_STEPS = 2000;
+
+    private int numRows;
+    private int numCols;
+    private int waitTime;
+    private int avoidOdds;
+    private int getOdds;
+    private int maxTimesAvoid;
+    private long maxSteps;
+    private long seed;
+    private int parallelism;
+    // Time budget of each bot's move, in nanoseconds (-1 if no bots).
+    private long botBudget;
+    // Where every game's session is kept (null if not kept).
+    private ScoreStore scoreStore;
+    private long lastRunNanos;
+    private long lastRunGames;
+
+    /**
+     * Basic constructor; games are set up just as a new Game is.
+     */
+    public BatchSimulator()
+    {
+        numRows = 10;
+        numCols = 15;
+        waitTime = 400;
+        avoidOdds = 4;
+        getOdds = 2;
+        maxTimesAvoid = 3;
+        maxSteps = 1000000;
+        seed = 0;
+        parallelism = Runtime.getRuntime().availableProcessors();
+        botBudget = -1;
+        scoreStore = null;
+        lastRunNanos = 0;
+        lastRunGames = 0;
+    }
+
+    /**
+     * Sets size of each game's board.
+     *
+     * @param numRows Number of rows.
+     * @param numCols Number of columns.
+     */
+    public void setBoardSize( int numRows, int numCols )
+    {
+        this.numRows = numRows;
+        this.numCols = numCols;
+    }
+
+    /**
+     * @param waitTime Milliseconds (of game time) between scrolls.
+     */
+    public void setWaitTime( int waitTime )
+    {
+        this.waitTime = waitTime;
+    }
+
+    /**
+     * Sets chances (out of 10) that each new object is one to avoid or one to
+     * get.
+     *
+     * @param avoidOdds Chance of an object to avoid.
+     * @param getOdds Chance of an object to get.
+     */
+    public void setOdds( int avoidOdds, int getOdds )
+    {
+        if ( avoidOdds < 0 || getOdds < 0 || avoidOdds + getOdds > 10 )
+            throw new RuntimeException( "invalid odds:  " + avoidOdds + ", " + getOdds );
+        this.avoidOdds = avoidOdds;
+        this.getOdds = getOdds;
+    }
+
+    /**
+     * @param maxTimesAvoid Number of hits on objects to avoid that ends a
+     *            game.
+     */
+    public void setMaxTimesAvoid( int maxTimesAvoid )
+    {
+        this.maxTimesAvoid = maxTimesAvoid;
+    }
+
+    /**
+     * @param maxSteps Most steps any game may run before it is stopped.
+     */
+    public void setMaxSteps( long maxSteps )
+    {
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * @param seed Seed from which every game's seed is worked out.
+     */
+    public void setSeed( long seed )
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * @param parallelism Number of threads to run games on.
+     */
+    public void setParallelism( int parallelism )
+    {
+        if ( parallelism < 1 )
+            throw new RuntimeException( "invalid parallelism:  " + parallelism );
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Has every game played by a LookAheadBot, rather than staying put.
+     *
+     * @param budgetNanos Most time each bot may spend on a move, in
+     *            nanoseconds (0 for no limit, -1 for no bots).
+     */
+    public void setBotBudget( long budgetNanos )
+    {
+        if ( budgetNanos < -1 )
+            throw new RuntimeException( "invalid time budget:  " + budgetNanos );
+        botBudget = budgetNanos;
+    }
+
+    /**
+     * Keeps every game's session in a store (see AbstractGame.setScoreStore()).
+     *
+     * @param store Store shared by all games (null to keep none).
+     */
+    public void setScoreStore( ScoreStore store )
+    {
+        scoreStore = store;
+    }
+
+    /**
+     * Runs a batch of games.
+     *
+     * @param games Number of games to run.
+     *
+     * @return Distribution of the games' final scores.
+     */
+    public ScoreDistribution run( int games )
+    {
+        ForkJoinPool pool = new ForkJoinPool( parallelism );
+        long start = System.nanoTime();
+        try
+        {
+            int chunk = Math.max( 1, games / ( parallelism * 16 ) );
+            return pool.invoke( new Batch( 0, games, chunk ) );
+        }
+        finally
+        {
+            lastRunNanos = System.nanoTime() - start;
+            lastRunGames = games;
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return Games per second of real time achieved by the last run().
+     */
+    public double getGamesPerSecond()
+    {
+        return lastRunNanos == 0 ? 0 : lastRunGames * 1e9 / lastRunNanos;
+    }
+
+    /**
+     * @return Real time taken by the last run(), in nanoseconds.
+     */
+    public long getLastRunNanos()
+    {
+        return lastRunNanos;
+    }
+
+    /**
+     * Sets up (without playing) the game with a given number in the batch.
+     *
+     * @param index Number of game in batch.
+     *
+     * @return New game, ready to simulate.
+     */
+    public Game createGame( int index )
+    {
+        Game game = createBoardGame();
+        game.setSeed( new GameRandom( seed + index ).nextLong() );
+        if ( botBudget >= 0 )
+            game.setController( new LookAheadBot( this::createBoardGame, 1, botBudget ) );
+        game.setScoreStore( scoreStore );
+        return game;
+    }
+
+    /* Utility method: creates a game with this batch's settings. */
+    private Game createBoardGame()
+    {
+        Game game = new Game( new HeadlessBoard( numRows, numCols ) );
+        game.waitTime = waitTime;
+        game.avoidOdds = avoidOdds;
+        game.getOdds = getOdds;
+        game.maxTimesAvoid = maxTimesAvoid;
+        return game;
+    }
+
+    /* Utility method: plays games [from, to) one after another. */
+    private ScoreDistribution runGames( int from, int to )
+    {
+        ScoreDistribution scores = new ScoreDistribution();
+        for ( int i = from; i < to; i++ )
+        {
+            Game game = createGame( i );
+            long steps = game.simulate( maxSteps );
+            scores.add( game.getScore(), steps, game.isGameOver() );
+        }
+        return scores;
+    }
+
+    /*
+     * Part of a batch: splits in half until small enough to play, then
+     * merges the halves' results (each half has its own distribution, so
+     * threads never update the same one).
+     */
+    @SuppressWarnings( "serial" )
+    private class Batch extends RecursiveTask<ScoreDistribution>
+    {
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        Batch( int from, int to, int chunk )
+        {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        protected ScoreDistribution compute()
+        {
+            if ( to - from <= chunk )
+                return runGames( from, to );
+            int middle = ( from + to ) >>> 1;
+            Batch left = new Batch( from, middle, chunk );
+            left.fork();
+            ScoreDistribution scores = new Batch( middle, to, chunk ).compute();
+            scores.merge( left.join() );
+            return scores;
+        }
+    }
+
+    /**
+     * Runs a batch from the command line and prints the score distribution.
+     *
+     * @param args [-bot budgetMicros] [-scores file] [games [waitTime
+     *            [avoidOdds [getOdds [maxTimesAvoid]]]]]
+     */
+    public static void main( String[] args )
+    {
+        BatchSimulator simulator = new BatchSimulator();
+        ScoreStore store = null;
+        if ( args.length > 1 && args[0].equals( "-bot" ) )
+        {
+            // Bots may play for ever, so games are cut short.
+            simulator.setBotBudget( Long.parseLong( args[1] ) * 1000 );
+            simulator.setMaxSteps( BOT_MAX_STEPS );
+            args = java.util.Arrays.copyOfRange( args, 2, args.length );
+        }
+        if ( args.length > 1 && args[0].equals( "-scores" ) )
+        {
+            store = new ScoreStore( args[1] );
+            simulator.setScoreStore( store );
+            args = java.util.Arrays.copyOfRange( args, 2, args.length );
+        }
+        int games = args.length > 0 ? Integer.parseInt( args[0] ) : 100000;
+        if ( args.length > 1 )
+            simulator.setWaitTime( Integer.parseInt( args[1] ) );
+        if ( args.length > 3 )
+            simulator.setOdds( Integer.parseInt( args[2] ), Integer.parseInt( args[3] ) );
+        if ( args.length > 4 )
+            simulator.setMaxTimesAvoid( Integer.parseInt( args[4] ) );
+
+        ScoreDistribution scores = simulator.run( games );
+        System.out.print( scores );
+        System.out.printf( "%d games in %.3f s on %d threads: %.0f games/s%n", games,
+                           simulator.getLastRunNanos() / 1e9, simulator.parallelism,
+                           simulator.getGamesPerSecond() );
+        if ( store != null )
+        {
+            store.close();
+            System.out.printf( "%d sessions kept; median %d, 99th percentile %d; best:%n",
+                               store.getCount(), store.getPercentile( 50 ),
+                               store.getPercentile( 99 ) );
+            for ( SessionRecord session : store.getTop( 5 ) )
+                System.out.println( "  " + session );
+        }
+    }
+}
\ No newline at end of file
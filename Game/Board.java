@@ -0,0 +1,192 @@
+/**
+ * The game-board used by the Scrolling Game project: a grid of Cells, each
+ * with a background color and an optional image. Grid implements this on
+ * screen; HeadlessBoard implements it with no window at all, for running
+ * games on machines without a display.
+ */
+import java.awt.Color;
+import java.awt.event.KeyListener;
+
+public interface Board extends CellSource
+{
+    /**
+     * @return Number of rows in board.
+     */
+    int getNumRows();
+
+    /**
+     * @return Number of columns in board.
+     */
+    int getNumCols();
+
+    /**
+     * Sets window title (ignored if there is no window).
+     *
+     * @param title Title for window.
+     */
+    void setTitle( String title );
+
+    /**
+     * Sets background of Cell at a given location.
+     *
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     * @param color Color to set Cell at position (row,col).
+     */
+    void setColor( int row, int col, Color color );
+
+    /**
+     * Gets background of Cell at a given location.
+     *
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     *
+     * @return Color of Cell at position (row,col).
+     */
+    Color getColor( int row, int col );
+
+    /**
+     * Sets background of Cell at a given location, as a packed color.
+     *
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     * @param argb Packed ARGB color (see BoardPlanes.toRGB()).
+     */
+    void setRGB( int row, int col, int argb );
+
+    /**
+     * Gets background of Cell at a given location, as a packed color
+     * (without creating a Color).
+     *
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     *
+     * @return Packed ARGB color of Cell at position (row,col).
+     */
+    int getRGB( int row, int col );
+
+    /**
+     * Sets background of all Cells at once.
+     *
+     * @param color Background color for all Cells.
+     */
+    void setBackground( Color color );
+
+    /**
+     * Sets foreground image of Cell at given location.
+     *
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     * @param imageFileName Name of image-file to place in Cell at position
+     *            (row, col). Cell will be empty if name == null.
+     */
+    void setImage( int row, int col, String imageFileName );
+
+    /**
+     * Returns name of image-file displayed at given location.
+     *
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     *
+     * @return Name of image-file for image at location (row, col).
+     *         Will be null if Cell is empty.
+     */
+    String getImage( int row, int col );
+
+    /**
+     * @return Table giving the sprite id used on this board for each
+     *         image-file name.
+     */
+    SpriteTable getSpriteTable();
+
+    /**
+     * Returns sprite id of image displayed at given location; cheaper than
+     * getImage() when many Cells must be checked.
+     *
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     *
+     * @return Sprite id for image at (row, col) (SpriteTable.NONE if empty).
+     */
+    int getSprite( int row, int col );
+
+    /**
+     * Sets foreground image of Cell at given location by sprite id.
+     *
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     * @param id Sprite id (from getSpriteTable()) of image to place in Cell,
+     *            or SpriteTable.NONE to empty it.
+     */
+    void setSprite( int row, int col, int id );
+
+    /**
+     * @return Index of where each kind of object (sprite id) is on this
+     *         board, used for checking collisions.
+     */
+    CollisionIndex getCollisionIndex();
+
+    /**
+     * Moves every image left one column: images in column 0 drop off the
+     * board and the last column is left empty. Background colors stay put.
+     * Cheaper than moving each image with setImage().
+     */
+    void shiftLeft();
+
+    /**
+     * Starts keeping track of which Cells change, for something that needs
+     * only those (such as a DeltaEncoder): every later change to a Cell,
+     * scrolling included, is marked in the region returned, until its user
+     * clears it.
+     *
+     * @return Region changed Cells are marked in (empty to begin with).
+     */
+    DirtyRegion trackChanges();
+
+    /**
+     * Returns a view of the Cell at given location; changes made through the
+     * view are made to this board.
+     *
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     *
+     * @return Cell at position (row, col).
+     */
+    default Cell getCell( int row, int col )
+    {
+        return new Cell( this, row, col );
+    }
+
+    /**
+     * Starts a batch of changes; see Grid.beginUpdate().
+     */
+    void beginUpdate();
+
+    /**
+     * Ends a batch of changes; see Grid.commitUpdate().
+     */
+    void commitUpdate();
+
+    /**
+     * Loads a file as background to the board (pixelation will depend upon
+     * size of image and size of board).
+     *
+     * @param imageFileName Name of accessible image-file.
+     */
+    void load( String imageFileName );
+
+    /**
+     * Saves an image of the board.
+     *
+     * @param imageFileName Name of the file to save.
+     */
+    void save( String imageFileName );
+
+    /**
+     * Directs KeyEvents from the user to the given listener (ignored if there
+     * is no window to receive them).
+     *
+     * @param listener Object that handles user input (usually the game).
+     */
+    void addKeyListener( KeyListener listener );
+}
\ No newline at end of file
@@ -0,0 +1,468 @@
+/**
+ * Compact storage for the Cells of a game-board, for the Scrolling Game
+ * project. Instead of one Cell object (with a Color and a String) per
+ * location, the board is kept as two flat arrays: one byte per Cell holding
+ * the id of its image (see SpriteTable), and one int per Cell holding its
+ * packed ARGB background color. Cell (row, col) is stored at index
+ * row * numCols + col.
+ *
+ * The sprite plane scrolls: its columns form a ring whose first column
+ * moves along by one on each call to shiftLeft(), so scrolling every image
+ * left costs one cleared column rather than a copy of the whole board.
+ * Background colors do not scroll.
+ *
+ * A CollisionIndex of where each sprite is kept is updated along with the
+ * sprite plane.
+ *
+ * On very big boards, work on every row (scrolling, filling the background,
+ * copying) is split into bands of rows run on all cores (see RowBands).
+ *
+ * Planes that are copied for drawing can also keep track of which Cells
+ * have changed as stored (see trackStoredChanges()), so that a copy need
+ * only take those: after a scroll, that is just the Cells of the one
+ * column cleared.
+ */
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.*;
+
+public class BoardPlanes
+{
+    // Packed ARGB value of opaque black, the color of a new Cell.
+    public static final int BLACK = 0xff000000;
+
+    private final int numRows;
+    private final int numCols;
+    private final byte[] sprites;
+    // Number of Cells of each row with an image.
+    private final int[] rowSprites;
+    private final int[] colors;
+    private final SpriteTable spriteTable;
+    // Column of the sprite plane currently shown as column 0.
+    private int origin;
+    // Bumped whenever any background color changes.
+    private long colorVersion;
+    private final CollisionIndex collisionIndex;
+    // Cells changed as stored (sprites by column of the ring) since this was
+    // last cleared; null unless trackStoredChanges() was called.
+    private DirtyRegion storedChanges;
+    // Regions from trackChanges(), each marked with every Cell changed.
+    private DirtyRegion[] changeTrackers;
+
+    /**
+     * Constructor for planes of given size; all Cells start black and empty.
+     *
+     * @param numRows Number of rows in board.
+     * @param numCols Number of columns in board.
+     */
+    public BoardPlanes( int numRows, int numCols )
+    {
+        if ( numRows < 1 || numCols < 1 )
+            throw new RuntimeException( "invalid board size:  " + numRows + " x " + numCols );
+        this.numRows = numRows;
+        this.numCols = numCols;
+        sprites = new byte[numRows * numCols];
+        rowSprites = new int[numRows];
+        colors = new int[numRows * numCols];
+        Arrays.fill( colors, BLACK );
+        spriteTable = new SpriteTable();
+        origin = 0;
+        colorVersion = 0;
+        collisionIndex = new CollisionIndex( this );
+        storedChanges = null;
+        changeTrackers = new DirtyRegion[0];
+    }
+
+    /**
+     * @return Number of rows in board.
+     */
+    public int getNumRows()
+    {
+        return numRows;
+    }
+
+    /**
+     * @return Number of columns in board.
+     */
+    public int getNumCols()
+    {
+        return numCols;
+    }
+
+    /**
+     * @return Table giving the image-file name for each sprite id.
+     */
+    public SpriteTable getSpriteTable()
+    {
+        return spriteTable;
+    }
+
+    /**
+     * @return Index of where each sprite is on the board.
+     */
+    public CollisionIndex getCollisionIndex()
+    {
+        return collisionIndex;
+    }
+
+    /**
+     * Checks whether or not a location is on the board.
+     *
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     *
+     * @return true if (row, col) is a valid location.
+     */
+    public boolean isValid( int row, int col )
+    {
+        return 0 <= row && row < numRows && 0 <= col && col < numCols;
+    }
+
+    /**
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     *
+     * @return Sprite id of image at (row, col) (SpriteTable.NONE if empty).
+     */
+    public int getSprite( int row, int col )
+    {
+        return sprites[spriteIndex( row, col )] & 0xff;
+    }
+
+    /**
+     * Sets sprite id of image at a given location.
+     *
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     * @param id Sprite id (SpriteTable.NONE to empty the Cell); must have
+     *            been given out by getSpriteTable().
+     *
+     * @return true if the Cell changed.
+     */
+    public boolean setSprite( int row, int col, int id )
+    {
+        if ( !spriteTable.isValid( id ) )
+            throw new RuntimeException( "invalid sprite id:  " + id );
+        int index = spriteIndex( row, col );
+        int old = sprites[index] & 0xff;
+        if ( old == id )
+            return false;
+        sprites[index] = (byte) id;
+        if ( old == SpriteTable.NONE )
+            rowSprites[row]++;
+        else if ( id == SpriteTable.NONE )
+            rowSprites[row]--;
+        int physicalCol = index - row * numCols;
+        if ( storedChanges != null )
+            storedChanges.mark( row, physicalCol );
+        for ( DirtyRegion region : changeTrackers )
+            region.mark( row, col );
+        if ( old != SpriteTable.NONE )
+            collisionIndex.remove( old, row, physicalCol );
+        if ( id != SpriteTable.NONE )
+            collisionIndex.add( id, row, physicalCol );
+        return true;
+    }
+
+    /**
+     * Moves every image left one column: images in column 0 are dropped, and
+     * column getNumCols() - 1 is left empty. Takes time proportional to the
+     * number of rows only.
+     */
+    public void shiftLeft()
+    {
+        if ( changeTrackers.length > 0 )
+            markShifted();
+        // The old column 0 becomes the new (empty) last column.
+        int col = origin;
+        int[] rows = RowBands.reduce( numRows, 1, ( fromRow, toRow ) ->
+        {
+            int[] cleared = { Integer.MAX_VALUE, -1 };
+            for ( int row = fromRow, index = row * numCols + col; row < toRow;
+                  row++, index += numCols )
+            {
+                int old = sprites[index] & 0xff;
+                if ( old != SpriteTable.NONE )
+                {
+                    sprites[index] = SpriteTable.NONE;
+                    rowSprites[row]--;
+                    collisionIndex.removeFromRow( old, row, col );
+                    if ( storedChanges != null )
+                        storedChanges.markSpan( row, col, col );
+                    cleared[0] = Math.min( cleared[0], row );
+                    cleared[1] = row;
+                }
+            }
+            return cleared;
+        }, BoardPlanes::mergeRows );
+        if ( storedChanges != null && rows[1] >= 0 )
+            storedChanges.markRows( rows[0], rows[1] );
+        collisionIndex.clearColumn( col );
+        origin++;
+        if ( origin == numCols )
+            origin = 0;
+    }
+
+    /**
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     *
+     * @return Name of image-file at (row, col) (null if empty).
+     */
+    public String getImage( int row, int col )
+    {
+        return spriteTable.getName( getSprite( row, col ) );
+    }
+
+    /**
+     * Sets image at a given location.
+     *
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     * @param imageFileName Name of image-file (null to empty the Cell).
+     *
+     * @return true if the Cell changed.
+     */
+    public boolean setImage( int row, int col, String imageFileName )
+    {
+        return setSprite( row, col, spriteTable.getId( imageFileName ) );
+    }
+
+    /**
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     *
+     * @return Packed ARGB background color of Cell at (row, col).
+     */
+    public int getRGB( int row, int col )
+    {
+        return colors[row * numCols + col];
+    }
+
+    /**
+     * Sets background color of Cell at a given location.
+     *
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     * @param argb Packed ARGB color.
+     *
+     * @return true if the Cell changed.
+     */
+    public boolean setRGB( int row, int col, int argb )
+    {
+        int index = row * numCols + col;
+        if ( colors[index] == argb )
+            return false;
+        colors[index] = argb;
+        colorVersion++;
+        if ( storedChanges != null )
+            storedChanges.mark( row, col );
+        for ( DirtyRegion region : changeTrackers )
+            region.mark( row, col );
+        return true;
+    }
+
+    /**
+     * Sets background color of every Cell.
+     *
+     * @param argb Packed ARGB color.
+     */
+    public void fillRGB( int argb )
+    {
+        RowBands.forEach( numRows, numCols, ( fromRow, toRow ) ->
+            Arrays.fill( colors, fromRow * numCols, toRow * numCols, argb ) );
+        colorVersion++;
+        if ( storedChanges != null )
+            storedChanges.markAll();
+        for ( DirtyRegion region : changeTrackers )
+            region.markAll();
+    }
+
+    /**
+     * Sets background color of every Cell from a picture, scaled to fit the
+     * board (pixelation will depend upon size of picture and of board).
+     *
+     * @param image Picture to sample (see ImageSampler).
+     */
+    public void sampleImage( BufferedImage image )
+    {
+        ImageSampler.sample( image, numRows, numCols, colors );
+        colorVersion++;
+        if ( storedChanges != null )
+            storedChanges.markAll();
+        for ( DirtyRegion region : changeTrackers )
+            region.markAll();
+    }
+
+    /**
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     *
+     * @return Background color of Cell at (row, col), as a new Color.
+     */
+    public Color getColor( int row, int col )
+    {
+        return new Color( getRGB( row, col ), true );
+    }
+
+    /*
+     * Copies both planes, as stored (sprites still as a ring starting at
+     * physicalColumn( 0 )), into arrays of the same size.
+     */
+    void copyTo( byte[] spriteCopy, int[] colorCopy )
+    {
+        RowBands.forEach( numRows, numCols, ( fromRow, toRow ) ->
+        {
+            int from = fromRow * numCols;
+            int length = ( toRow - fromRow ) * numCols;
+            System.arraycopy( sprites, from, spriteCopy, from, length );
+            System.arraycopy( colors, from, colorCopy, from, length );
+        } );
+    }
+
+    /*
+     * Copies the Cells of a region of the planes as stored (sprites by
+     * column of the ring; see getStoredChanges()) into arrays of the same
+     * size, taking time proportional to the size of the region.
+     */
+    void copyTo( byte[] spriteCopy, int[] colorCopy, DirtyRegion region )
+    {
+        int firstRow = region.getMinRow();
+        int rows = region.getMaxRow() - firstRow + 1;
+        if ( rows <= 0 )
+            return;
+        long cells = 0;
+        for ( int row = firstRow; row < firstRow + rows; row++ )
+            if ( region.getMaxCol( row ) >= 0 )
+                cells += region.getMaxCol( row ) - region.getMinCol( row ) + 1;
+        RowBands.forEach( rows, (int) ( cells / rows ), ( fromRow, toRow ) ->
+        {
+            for ( int row = firstRow + fromRow; row < firstRow + toRow; row++ )
+            {
+                int last = region.getMaxCol( row );
+                if ( last < 0 )
+                    continue;
+                int from = row * numCols + region.getMinCol( row );
+                int length = row * numCols + last + 1 - from;
+                System.arraycopy( sprites, from, spriteCopy, from, length );
+                System.arraycopy( colors, from, colorCopy, from, length );
+            }
+        } );
+    }
+
+    /*
+     * Starts keeping track of which Cells change as stored; until then,
+     * getStoredChanges() returns null. Every Cell counts as changed to begin
+     * with.
+     */
+    void trackStoredChanges()
+    {
+        storedChanges = new DirtyRegion( numRows, numCols );
+        storedChanges.markAll();
+    }
+
+    /**
+     * Starts keeping track of which Cells change (see Board.trackChanges()).
+     *
+     * @return Region every later change is marked in, until its user
+     *         clears it.
+     */
+    public DirtyRegion trackChanges()
+    {
+        DirtyRegion region = new DirtyRegion( numRows, numCols );
+        changeTrackers = Arrays.copyOf( changeTrackers, changeTrackers.length + 1 );
+        changeTrackers[changeTrackers.length - 1] = region;
+        return region;
+    }
+
+    /*
+     * Cells changed as stored since this region was last cleared (by
+     * whoever copies them); sprites are marked by column of the ring, not of
+     * the board, as that is how they are copied.
+     */
+    DirtyRegion getStoredChanges()
+    {
+        return storedChanges;
+    }
+
+    /*
+     * Number that changes whenever any background color does (so that
+     * anything worked out from the colors knows when to work it out again).
+     */
+    long getColorVersion()
+    {
+        return colorVersion;
+    }
+
+    /*
+     * Utility method: marks the Cells shiftLeft() is about to change in
+     * every region from trackChanges(): the whole of each row with an
+     * image, as one span, found from the count of images in the row rather
+     * than by looking at its Cells.
+     */
+    private void markShifted()
+    {
+        int first = -1;
+        int last = -1;
+        for ( int row = 0; row < numRows; row++ )
+        {
+            if ( rowSprites[row] == 0 )
+                continue;
+            for ( DirtyRegion region : changeTrackers )
+                region.markSpan( row, 0, numCols - 1 );
+            if ( first < 0 )
+                first = row;
+            last = row;
+        }
+        if ( last >= 0 )
+        {
+            for ( DirtyRegion region : changeTrackers )
+                region.markRows( first, last );
+        }
+    }
+
+    /*
+     * Utility method: merges the first and last rows ({ first, last }, last
+     * -1 if none) found by two neighbouring bands.
+     */
+    private static int[] mergeRows( int[] upper, int[] lower )
+    {
+        return lower[1] < 0 ? upper : new int[] { Math.min( upper[0], lower[0] ), lower[1] };
+    }
+
+    /* Utility method: index into sprite plane of Cell (row, col). */
+    private int spriteIndex( int row, int col )
+    {
+        return row * numCols + physicalColumn( col );
+    }
+
+    /*
+     * Column of the sprite plane holding a given column of the board.
+     */
+    int physicalColumn( int col )
+    {
+        col += origin;
+        return col >= numCols ? col - numCols : col;
+    }
+
+    /*
+     * Column of the board held by a given column of the sprite plane.
+     */
+    int logicalColumn( int physicalCol )
+    {
+        physicalCol -= origin;
+        return physicalCol < 0 ? physicalCol + numCols : physicalCol;
+    }
+
+    /**
+     * Packs a Color for storage in the planes.
+     *
+     * @param color Color to pack (null is stored as black).
+     *
+     * @return Packed ARGB value of color.
+     */
+    public static int toRGB( Color color )
+    {
+        return color == null ? BLACK : color.getRGB();
+    }
+}
\ No newline at end of file
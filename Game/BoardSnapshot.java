@@ -0,0 +1,194 @@
+/**
+ * Copy of a game-board's Cells as they were at the end of one batch of
+ * changes, for the Scrolling Game project. Snapshots are filled by the game
+ * thread and handed to whichever thread draws the board through a
+ * SnapshotBuffer; once handed over, a snapshot is only read, so drawing
+ * never sees a half-finished step. A snapshot takes no room for its Cells
+ * until first filled.
+ */
+public class BoardSnapshot implements CellSource
+{
+    private final int numRows;
+    private final int numCols;
+    // Copies of the planes (the sprite plane still as a ring; see origin);
+    // null until first needed.
+    private byte[] sprites;
+    private int[] colors;
+    private int origin;
+    // Image-file names by sprite id, as they were when copied.
+    private String[] names;
+    private long sequence;
+    private long colorVersion;
+    // Cells changed since the snapshot before it that was acquired.
+    private final DirtyRegion changes;
+
+    /*
+     * Creates an empty (black) snapshot of a board of given size.
+     */
+    BoardSnapshot( int numRows, int numCols )
+    {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        sprites = null;
+        colors = null;
+        origin = 0;
+        names = new String[] { null };
+        sequence = 0;
+        colorVersion = 0;
+        changes = new DirtyRegion( numRows, numCols );
+    }
+
+    /**
+     * @return Number of rows in board.
+     */
+    public int getNumRows()
+    {
+        return numRows;
+    }
+
+    /**
+     * @return Number of columns in board.
+     */
+    public int getNumCols()
+    {
+        return numCols;
+    }
+
+    /**
+     * @return Number of the batch of changes this snapshot shows; later
+     *         snapshots of the same board have larger numbers (an empty
+     *         board is 0).
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     *
+     * @return Sprite id of image at (row, col) (SpriteTable.NONE if empty).
+     */
+    public int getSprite( int row, int col )
+    {
+        if ( sprites == null )
+            return SpriteTable.NONE;
+        col += origin;
+        if ( col >= numCols )
+            col -= numCols;
+        return sprites[row * numCols + col] & 0xff;
+    }
+
+    /**
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     *
+     * @return Name of image-file at (row, col) (null if empty).
+     */
+    public String getImage( int row, int col )
+    {
+        return getName( getSprite( row, col ) );
+    }
+
+    /**
+     * @param sprite Sprite id found in this snapshot.
+     *
+     * @return Name of image-file with that id (null for SpriteTable.NONE).
+     */
+    public String getName( int sprite )
+    {
+        return names[sprite];
+    }
+
+    /**
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     *
+     * @return Packed ARGB background color of Cell at (row, col).
+     */
+    public int getRGB( int row, int col )
+    {
+        if ( colors == null )
+            return BoardPlanes.BLACK;
+        return colors[row * numCols + col];
+    }
+
+    /*
+     * Image-file names by sprite id (entries for ids not given out are
+     * null); not to be changed.
+     */
+    String[] names()
+    {
+        return names;
+    }
+
+    /*
+     * Background colors, one per Cell at index row * numCols + col; not to
+     * be changed.
+     */
+    int[] colors()
+    {
+        allocate();
+        return colors;
+    }
+
+    /*
+     * Color version (see BoardPlanes.getColorVersion()) of the planes
+     * copied.
+     */
+    long colorVersion()
+    {
+        return colorVersion;
+    }
+
+    /*
+     * Cells (by column of the board) that changed between the snapshot
+     * acquired before this one and this one; not to be changed. Drawing only
+     * these brings a picture of the earlier snapshot up to date.
+     */
+    DirtyRegion changes()
+    {
+        return changes;
+    }
+
+    /*
+     * Makes this snapshot a copy of the given planes (of the same size),
+     * copying only the Cells that differ from it (as stored) and noting
+     * which Cells changed since the last snapshot acquired.
+     */
+    void copy( BoardPlanes planes, long sequence, DirtyRegion missing, DirtyRegion changed )
+    {
+        allocate();
+        planes.copyTo( sprites, colors, missing );
+        origin = planes.physicalColumn( 0 );
+        names = planes.getSpriteTable().names();
+        this.sequence = sequence;
+        colorVersion = planes.getColorVersion();
+        changes.clear();
+        changes.add( changed );
+    }
+
+    /*
+     * Makes this snapshot a copy of the given planes (of the same size).
+     */
+    void copy( BoardPlanes planes, long sequence )
+    {
+        allocate();
+        planes.copyTo( sprites, colors );
+        origin = planes.physicalColumn( 0 );
+        names = planes.getSpriteTable().names();
+        this.sequence = sequence;
+        colorVersion = planes.getColorVersion();
+    }
+
+    /* Utility method: makes room for the Cells (all empty and black) if not yet made. */
+    private void allocate()
+    {
+        if ( sprites != null )
+            return;
+        sprites = new byte[numRows * numCols];
+        colors = new int[numRows * numCols];
+        java.util.Arrays.fill( colors, BoardPlanes.BLACK );
+    }
+}
\ No newline at end of file
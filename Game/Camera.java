@@ -0,0 +1,253 @@
+/**
+ * View onto part of a Grid, for the Scrolling Game project, so that boards
+ * far bigger than the window can be panned around and zoomed. A camera
+ * shows the Cells from a top-left Cell (getRow(), getCol()) on, at one of
+ * two kinds of scale: zoomed in, each Cell is getCellSize() pixels square;
+ * zoomed out past one Cell per pixel, each pixel stands for a square of
+ * 2^getLevel() by 2^getLevel() Cells, drawn in their averaged background
+ * color (see ColorPyramid).
+ *
+ * Only the Cells in view are ever drawn, so the time a frame takes depends
+ * on the size of the window, not of the board. A Grid given a camera (see
+ * Grid.setCamera()) can be dragged with the mouse to pan, and zoomed with
+ * the mouse-wheel; after changing a camera directly, call the grid's
+ * repaint().
+ */
+public class Camera
+{
+    // Largest Cell drawn when zooming in, in pixels.
+    public static final int MAX_CELL_SIZE = 64;
+    // Furthest zoomed out: one pixel per 2^MAX_LEVEL Cells each way.
+    public static final int MAX_LEVEL = 16;
+
+    private int row;
+    private int col;
+    private int cellSize;
+    private int level;
+
+    /**
+     * Constructor for a camera zoomed in: Cells of a given size, the top-left
+     * one shown being (row, col).
+     *
+     * @param row Row of top-left Cell shown.
+     * @param col Column of top-left Cell shown.
+     * @param cellSize Width and height of each Cell, in pixels.
+     */
+    public Camera( int row, int col, int cellSize )
+    {
+        if ( cellSize < 1 || cellSize > MAX_CELL_SIZE )
+            throw new RuntimeException( "invalid cell size:  " + cellSize );
+        this.row = row;
+        this.col = col;
+        this.cellSize = cellSize;
+        level = 0;
+    }
+
+    /**
+     * Copy constructor: a camera showing just what another shows now.
+     *
+     * @param other Camera to copy.
+     */
+    public Camera( Camera other )
+    {
+        row = other.row;
+        col = other.col;
+        cellSize = other.cellSize;
+        level = other.level;
+    }
+
+    /**
+     * Creates a camera showing all of a board in (about) the given space:
+     * Cells are as large as fit, or, if the board has more Cells than
+     * pixels, each pixel shows as few Cells as fit.
+     *
+     * @param numRows Number of rows in board.
+     * @param numCols Number of columns in board.
+     * @param width Width of space, in pixels.
+     * @param height Height of space, in pixels.
+     *
+     * @return New camera.
+     */
+    public static Camera fit( int numRows, int numCols, int width, int height )
+    {
+        int size = Math.min( width / numCols, height / numRows );
+        Camera camera = new Camera( 0, 0, Math.max( 1, Math.min( size, MAX_CELL_SIZE ) ) );
+        while ( camera.level < MAX_LEVEL &&
+                ( ( numCols - 1 ) >> camera.level >= width ||
+                  ( numRows - 1 ) >> camera.level >= height ) )
+            camera.level++;
+        return camera;
+    }
+
+    /**
+     * @return Row of top-left Cell shown.
+     */
+    public int getRow()
+    {
+        return row;
+    }
+
+    /**
+     * @return Column of top-left Cell shown.
+     */
+    public int getCol()
+    {
+        return col;
+    }
+
+    /**
+     * @return Width and height of each Cell, in pixels (1 when zoomed out
+     *         past one Cell per pixel).
+     */
+    public int getCellSize()
+    {
+        return cellSize;
+    }
+
+    /**
+     * @return Level of detail: each pixel shows 2^level by 2^level Cells (0
+     *         when each Cell has one pixel or more).
+     */
+    public int getLevel()
+    {
+        return level;
+    }
+
+    /**
+     * Moves the view so that the top-left Cell shown is (row, col).
+     *
+     * @param row Row of Cell.
+     * @param col Column of Cell.
+     */
+    public void setPosition( int row, int col )
+    {
+        this.row = row;
+        this.col = col;
+    }
+
+    /**
+     * Moves the view by a number of Cells.
+     *
+     * @param rows Rows to move down (negative to move up).
+     * @param cols Columns to move right (negative to move left).
+     */
+    public void pan( int rows, int cols )
+    {
+        row += rows;
+        col += cols;
+    }
+
+    /**
+     * Shows Cells twice the size (or, zoomed out, half as many to a pixel),
+     * keeping the Cell at pixel (x, y) where it is.
+     *
+     * @param x Left of pixel to zoom about.
+     * @param y Top of pixel to zoom about.
+     *
+     * @return false if already zoomed in as far as possible.
+     */
+    public boolean zoomIn( int x, int y )
+    {
+        if ( level == 0 && cellSize == MAX_CELL_SIZE )
+            return false;
+        int centerRow = rowAt( y );
+        int centerCol = columnAt( x );
+        if ( level > 0 )
+            level--;
+        else
+            cellSize = Math.min( cellSize * 2, MAX_CELL_SIZE );
+        row = centerRow - rowAt( y ) + row;
+        col = centerCol - columnAt( x ) + col;
+        return true;
+    }
+
+    /**
+     * Shows Cells half the size (or, zoomed out, twice as many to a pixel),
+     * keeping the Cell at pixel (x, y) where it is.
+     *
+     * @param x Left of pixel to zoom about.
+     * @param y Top of pixel to zoom about.
+     *
+     * @return false if already zoomed out as far as possible.
+     */
+    public boolean zoomOut( int x, int y )
+    {
+        if ( level == MAX_LEVEL )
+            return false;
+        int centerRow = rowAt( y );
+        int centerCol = columnAt( x );
+        if ( cellSize > 1 )
+            cellSize /= 2;
+        else
+            level++;
+        row = centerRow - rowAt( y ) + row;
+        col = centerCol - columnAt( x ) + col;
+        return true;
+    }
+
+    /**
+     * @param y Pixel down from top of view.
+     *
+     * @return Row of Cell shown at that pixel (maybe off the board).
+     */
+    public int rowAt( int y )
+    {
+        return row + Math.floorDiv( y << level, cellSize );
+    }
+
+    /**
+     * @param x Pixel across from left of view.
+     *
+     * @return Column of Cell shown at that pixel (maybe off the board).
+     */
+    public int columnAt( int x )
+    {
+        return col + Math.floorDiv( x << level, cellSize );
+    }
+
+    /**
+     * @param row Row of Cell.
+     *
+     * @return Pixel down from top of view of the top of that row.
+     */
+    public int toY( int row )
+    {
+        return ( ( row - this.row ) * cellSize ) >> level;
+    }
+
+    /**
+     * @param col Column of Cell.
+     *
+     * @return Pixel across from left of view of the left of that column.
+     */
+    public int toX( int col )
+    {
+        return ( ( col - this.col ) * cellSize ) >> level;
+    }
+
+    /**
+     * Moves the view back over a board if it has moved off it (a board
+     * smaller than the view is kept at its top-left), and, zoomed out, onto
+     * a whole pixel's worth of Cells.
+     *
+     * @param numRows Number of rows in board.
+     * @param numCols Number of columns in board.
+     * @param width Width of view, in pixels.
+     * @param height Height of view, in pixels.
+     */
+    public void keepInside( int numRows, int numCols, int width, int height )
+    {
+        int mask = ~( ( 1 << level ) - 1 );
+        row = Math.max( 0, Math.min( row, numRows - ( ( height << level ) / cellSize ) ) ) & mask;
+        col = Math.max( 0, Math.min( col, numCols - ( ( width << level ) / cellSize ) ) ) & mask;
+    }
+
+    /**
+     * @return Description of view.
+     */
+    public String toString()
+    {
+        return "Camera at (" + row + ", " + col + "), " +
+               ( level == 0 ? cellSize + " px per Cell" : ( 1 << level ) + " Cells per px" );
+    }
+}
\ No newline at end of file
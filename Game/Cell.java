@@ -1,6 +1,8 @@
-
 /**
  * Creates the basic data cell for the Scrolling Game project.
+ * A Cell is now a view of one location on a Board (which stores its Cells
+ * compactly, see BoardPlanes); changes made through the Cell are made to
+ * the Board.
  *
  * @author Dave Feinberg
  * @author M. Allen
@@ -9,16 +11,30 @@ import java.awt.Color;
 
 public class Cell
 {
-    private Color color;
-    private String imageFileName;
+    private final Board board;
+    private final int row;
+    private final int col;
     
     /**
      * Basic constructor; creates a black cell, with no image.
      */
     public Cell()
     {
-        color = Color.black;
-        imageFileName = null;
+        this( new HeadlessBoard( 1, 1 ), 0, 0 );
+    }
+    
+    /**
+     * Creates a view of the Cell at a given location on a board.
+     *
+     * @param board Board holding the Cell.
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     */
+    public Cell( Board board, int row, int col )
+    {
+        this.board = board;
+        this.row = row;
+        this.col = col;
     }
     
     /**
@@ -28,7 +44,7 @@ public class Cell
      */
     public void setColor( Color c )
     {
-        color = c;
+        board.setColor( row, col, c );
     }
     
     /**
@@ -36,7 +52,7 @@ public class Cell
      */
     public Color getColor()
     {
-        return color;
+        return board.getColor( row, col );
     }
     
     /**
@@ -44,7 +60,7 @@ public class Cell
      */
     public String getImageFileName()
     {
-        return imageFileName;
+        return board.getImage( row, col );
     }
     
     /**
@@ -55,6 +71,6 @@ public class Cell
      */
     public void setImageFileName( String fileName )
     {
-        imageFileName = fileName;
+        board.setImage( row, col, fileName );
     }
 }
\ No newline at end of file
@@ -0,0 +1,238 @@
+/**
+ * Writes and reads the Cells that changed from one frame of a game-board to
+ * the next, for the Scrolling Game project, in the form both FrameLog and
+ * DeltaEncoder use: the number of Cells changed, then for each (in order of
+ * row, then column) the gap from the last changed Cell, a byte of flags
+ * saying what changed, and its new sprite and/or color. Numbers are written
+ * 7 bits per byte, as most are small.
+ *
+ * A codec remembers the Cells as of the last frame it wrote (black and
+ * empty at first), so that each frame holds only what differs. If told
+ * which Cells may have changed, it looks at only those.
+ */
+import java.io.*;
+import java.util.Arrays;
+
+public class CellCodec
+{
+    // Flags saying what changed in a Cell.
+    static final int SPRITE_CHANGED = 1;
+    static final int COLOR_CHANGED = 2;
+
+    private final int numRows;
+    private final int numCols;
+    // Cells as of the last frame written.
+    private final byte[] sprites;
+    private final int[] colors;
+    // Cells found changed while writing a frame, and what changed in each.
+    private int[] found;
+    private byte[] foundFlags;
+    private int numFound;
+
+    /**
+     * Basic constructor.
+     *
+     * @param numRows Number of rows in board.
+     * @param numCols Number of columns in board.
+     */
+    public CellCodec( int numRows, int numCols )
+    {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        sprites = new byte[numRows * numCols];
+        colors = new int[numRows * numCols];
+        Arrays.fill( colors, BoardPlanes.BLACK );
+        found = new int[64];
+        foundFlags = new byte[64];
+        numFound = 0;
+    }
+
+    /**
+     * Writes the Cells that differ from the last frame written, and
+     * remembers them for the next.
+     *
+     * @param out Stream to write to.
+     * @param cells Cells of the frame (of the size given when this codec was
+     *            created).
+     * @param region Cells that may have changed since the last frame written
+     *            (null to look at every Cell); Cells outside it are taken
+     *            to be unchanged.
+     *
+     * @throws IOException if out cannot be written to.
+     */
+    public void writeChanges( DataOutput out, CellSource cells, DirtyRegion region )
+        throws IOException
+    {
+        numFound = 0;
+        int firstRow = region == null ? 0 : region.getMinRow();
+        int lastRow = region == null ? numRows - 1 : region.getMaxRow();
+        for ( int row = firstRow; row <= lastRow; row++ )
+        {
+            int last = region == null ? numCols - 1 : region.getMaxCol( row );
+            if ( last < 0 )
+                continue;
+            int first = region == null ? 0 : region.getMinCol( row );
+            for ( int col = first, index = row * numCols + first; col <= last; col++, index++ )
+            {
+                byte sprite = (byte) cells.getSprite( row, col );
+                int rgb = cells.getRGB( row, col );
+                int flags = ( sprites[index] != sprite ? SPRITE_CHANGED : 0 ) |
+                            ( colors[index] != rgb ? COLOR_CHANGED : 0 );
+                if ( flags == 0 )
+                    continue;
+                sprites[index] = sprite;
+                colors[index] = rgb;
+                addFound( index, flags );
+            }
+        }
+        writeFound( out );
+    }
+
+    /**
+     * Writes every Cell that is not black and empty, as the changes from a
+     * new board, for a reader starting from nothing. The Cells remembered
+     * for the next writeChanges() are left as they are.
+     *
+     * @param out Stream to write to.
+     * @param cells Cells of the frame (of the size given when this codec was
+     *            created).
+     *
+     * @throws IOException if out cannot be written to.
+     */
+    public void writeAll( DataOutput out, CellSource cells ) throws IOException
+    {
+        // Count first, then the Cells.
+        long count = 0;
+        for ( int row = 0; row < numRows; row++ )
+            for ( int col = 0; col < numCols; col++ )
+                if ( cells.getSprite( row, col ) != SpriteTable.NONE ||
+                     cells.getRGB( row, col ) != BoardPlanes.BLACK )
+                    count++;
+        writeNumber( out, count );
+        int last = -1;
+        for ( int row = 0, index = 0; row < numRows; row++ )
+        {
+            for ( int col = 0; col < numCols; col++, index++ )
+            {
+                int sprite = cells.getSprite( row, col );
+                int rgb = cells.getRGB( row, col );
+                int flags = ( sprite != SpriteTable.NONE ? SPRITE_CHANGED : 0 ) |
+                            ( rgb != BoardPlanes.BLACK ? COLOR_CHANGED : 0 );
+                if ( flags == 0 )
+                    continue;
+                writeNumber( out, index - last - 1 );
+                last = index;
+                writeCell( out, flags, sprite, rgb );
+            }
+        }
+    }
+
+    /**
+     * Reads the changes written by writeChanges() or writeAll() and makes
+     * them to a board.
+     *
+     * @param in Stream to read from.
+     * @param board Board to change (of the size written).
+     * @param boardIds Sprite id on board of each sprite id written.
+     *
+     * @throws IOException if in cannot be read, or ends first.
+     */
+    public static void readChanges( DataInput in, Board board, int[] boardIds ) throws IOException
+    {
+        int numCols = board.getNumCols();
+        long cells = (long) board.getNumRows() * numCols;
+        long changes = readNumber( in );
+        long index = -1;
+        for ( long i = 0; i < changes; i++ )
+        {
+            index += readNumber( in ) + 1;
+            if ( index >= cells )
+                throw new IOException( "Cell " + index + " is off the board" );
+            int row = (int) ( index / numCols );
+            int col = (int) ( index % numCols );
+            int flags = in.readUnsignedByte();
+            if ( ( flags & SPRITE_CHANGED ) != 0 )
+                board.setSprite( row, col, boardIds[in.readUnsignedByte()] );
+            if ( ( flags & COLOR_CHANGED ) != 0 )
+                board.setRGB( row, col, in.readInt() );
+        }
+    }
+
+    /**
+     * Writes a non-negative number, 7 bits per byte.
+     *
+     * @param out Stream to write to.
+     * @param value Number to write.
+     *
+     * @throws IOException if out cannot be written to.
+     */
+    public static void writeNumber( DataOutput out, long value ) throws IOException
+    {
+        while ( ( value & ~0x7fL ) != 0 )
+        {
+            out.writeByte( (int) ( value & 0x7f ) | 0x80 );
+            value >>>= 7;
+        }
+        out.writeByte( (int) value );
+    }
+
+    /**
+     * Reads a number written by writeNumber().
+     *
+     * @param in Stream to read from.
+     *
+     * @return Number read.
+     *
+     * @throws IOException if in cannot be read, or ends first.
+     */
+    public static long readNumber( DataInput in ) throws IOException
+    {
+        long value = 0;
+        for ( int shift = 0; shift < 64; shift += 7 )
+        {
+            int b = in.readUnsignedByte();
+            value |= (long) ( b & 0x7f ) << shift;
+            if ( ( b & 0x80 ) == 0 )
+                return value;
+        }
+        throw new IOException( "number too long" );
+    }
+
+    /* Utility method: notes a changed Cell, and what changed in it. */
+    private void addFound( int index, int flags )
+    {
+        if ( numFound == found.length )
+        {
+            found = Arrays.copyOf( found, numFound * 2 );
+            foundFlags = Arrays.copyOf( foundFlags, numFound * 2 );
+        }
+        found[numFound] = index;
+        foundFlags[numFound] = (byte) flags;
+        numFound++;
+    }
+
+    /* Utility method: writes the Cells found, with their new contents. */
+    private void writeFound( DataOutput out ) throws IOException
+    {
+        writeNumber( out, numFound );
+        int last = -1;
+        for ( int i = 0; i < numFound; i++ )
+        {
+            int index = found[i];
+            writeNumber( out, index - last - 1 );
+            last = index;
+            writeCell( out, foundFlags[i], sprites[index], colors[index] );
+        }
+    }
+
+    /* Utility method: writes what changed in one Cell. */
+    private static void writeCell( DataOutput out, int flags, int sprite, int rgb )
+        throws IOException
+    {
+        out.writeByte( flags );
+        if ( ( flags & SPRITE_CHANGED ) != 0 )
+            out.writeByte( sprite );
+        if ( ( flags & COLOR_CHANGED ) != 0 )
+            out.writeInt( rgb );
+    }
+}
\ No newline at end of file
@@ -0,0 +1,32 @@
+/**
+ * Cells that can be read, for the Scrolling Game project: a game-board, or
+ * a snapshot of one. Frames are written from any of them (see CellCodec).
+ */
+public interface CellSource
+{
+    /**
+     * @return Number of rows of Cells.
+     */
+    int getNumRows();
+
+    /**
+     * @return Number of columns of Cells.
+     */
+    int getNumCols();
+
+    /**
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     *
+     * @return Sprite id of image at (row, col) (SpriteTable.NONE if empty).
+     */
+    int getSprite( int row, int col );
+
+    /**
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     *
+     * @return Packed ARGB background color of Cell at (row, col).
+     */
+    int getRGB( int row, int col );
+}
\ No newline at end of file
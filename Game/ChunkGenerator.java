@@ -0,0 +1,19 @@
+/**
+ * Fills in the objects of a game's world, one chunk of columns at a time,
+ * for the Scrolling Game project (see ChunkedWorld). Generators run on a
+ * background thread, so they must not touch the board (look up any sprite
+ * ids needed beforehand) and should use only the GameRandom they are given,
+ * so that the same seed always makes the same world.
+ */
+public interface ChunkGenerator
+{
+    /**
+     * Fills in a chunk (which starts empty).
+     *
+     * @param chunk Chunk to fill; its getIndex() says where it is in the
+     *            world.
+     * @param random Random numbers for this chunk, seeded from the world's
+     *            seed and the chunk's index.
+     */
+    void generate( WorldChunk chunk, GameRandom random );
+}
\ No newline at end of file
@@ -0,0 +1,296 @@
+/**
+ * An endless world for a scrolling game, for the Scrolling Game project.
+ * The world is cut into chunks of a fixed number of columns, made by a
+ * ChunkGenerator on a background thread ahead of the board and streamed
+ * onto the board's right edge one column at a time by fillColumn().
+ *
+ * Only a fixed window of chunks is ever held: a chunk's slot is handed back
+ * to the generator as soon as all of its columns are on the board (which
+ * keeps them from then on), so memory stays the same however long the game
+ * runs. The generator works up to a window ahead; if it ever falls that far
+ * behind, the game thread makes the chunk it needs itself rather than wait.
+ * Each chunk's random numbers come from the world's seed and the chunk's
+ * index only, so a world is the same whichever thread makes each chunk.
+ * Moving to another column (seek()) keeps the chunks already held that are
+ * still needed, and has the same background thread make the rest.
+ */
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+public class ChunkedWorld
+{
+    private final int numRows;
+    private final int chunkCols;
+    private final long seed;
+    private final ChunkGenerator generator;
+    private final WorldChunk[] chunks;
+    // Per slot: index of the chunk last claimed for, and last made in, it.
+    private final AtomicLongArray claimed;
+    private final AtomicLongArray ready;
+    private final GameRandom[] randoms;
+
+    // Chunks before this one have been streamed, freeing their slots.
+    private volatile long released;
+    private volatile boolean closed;
+    private volatile RuntimeException failure;
+    private Thread thread;
+    // Held by the background thread while it claims a slot, and by seek()
+    // while it hands slots back; seeks counts the times seek() has.
+    private final Object claimLock = new Object();
+    private long seeks;
+
+    // Next column of the world to stream (game thread only).
+    private long column;
+
+    /**
+     * Basic constructor; starts making chunks in the background.
+     *
+     * @param numRows Number of rows in board.
+     * @param chunkCols Number of columns in each chunk.
+     * @param window Number of chunks held at once (at least 2).
+     * @param seed Seed the world is made from.
+     * @param generator Makes each chunk.
+     */
+    public ChunkedWorld( int numRows, int chunkCols, int window, long seed,
+                         ChunkGenerator generator )
+    {
+        if ( numRows < 1 || chunkCols < 1 || window < 2 )
+            throw new RuntimeException( "invalid world:  " + numRows + " rows, chunks of " +
+                                       chunkCols + " columns, window of " + window );
+        this.numRows = numRows;
+        this.chunkCols = chunkCols;
+        this.seed = seed;
+        this.generator = generator;
+        chunks = new WorldChunk[window];
+        randoms = new GameRandom[window];
+        claimed = new AtomicLongArray( window );
+        ready = new AtomicLongArray( window );
+        for ( int slot = 0; slot < window; slot++ )
+        {
+            chunks[slot] = new WorldChunk( numRows, chunkCols );
+            randoms[slot] = new GameRandom( 0 );
+        }
+        column = 0;
+        start( 0 );
+    }
+
+    /**
+     * @return Number of rows in the world.
+     */
+    public int getNumRows()
+    {
+        return numRows;
+    }
+
+    /**
+     * @return Number of the next column of the world fillColumn() will
+     *         stream (the number of columns streamed so far).
+     */
+    public long getColumn()
+    {
+        return column;
+    }
+
+    /**
+     * Streams the next column of the world onto a board: places each of its
+     * objects in the given column (Cells with no object are left as they
+     * are).
+     *
+     * @param board Board with as many rows as the world.
+     * @param col Column of board to fill (usually the last one).
+     */
+    public void fillColumn( Board board, int col )
+    {
+        long index = column / chunkCols;
+        int offset = (int) ( column % chunkCols );
+        if ( offset == 0 && index > 0 )
+        {
+            // The previous chunk is all on the board now; free its slot.
+            released = index;
+            LockSupport.unpark( thread );
+        }
+        WorldChunk chunk = obtain( index );
+        for ( int row = 0; row < numRows; row++ )
+        {
+            int sprite = chunk.getSprite( row, offset );
+            if ( sprite != SpriteTable.NONE )
+                board.setSprite( row, col, sprite );
+        }
+        column++;
+    }
+
+    /**
+     * Moves to any column of the world, so that fillColumn() streams that
+     * column next (for instance, when a SaveState is restored). Chunks
+     * already held that are still needed are kept, and the others are made
+     * again from the seed (by the background thread, or by fillColumn()
+     * if it gets to them first), so the world is the same as before.
+     *
+     * @param column Number of the next column to stream.
+     */
+    public void seek( long column )
+    {
+        if ( column < 0 )
+            throw new RuntimeException( "invalid world column:  " + column );
+        if ( column == this.column )
+            return;
+        long first = column / chunkCols;
+        this.column = column;
+        if ( closed || failure != null )
+        {
+            // No background thread to reuse.
+            restart( first );
+            return;
+        }
+
+        int window = chunks.length;
+        synchronized ( claimLock )
+        {
+            for ( long index = first; index < first + window; index++ )
+            {
+                int slot = (int) ( index % window );
+                // A chunk being made cannot be stopped; it will not be long.
+                while ( claimed.get( slot ) != ready.get( slot ) )
+                {
+                    RuntimeException e = failure;
+                    if ( e != null )
+                        throw e;
+                    Thread.onSpinWait();
+                }
+                // A slot handed back is marked ready for a chunk it does not hold.
+                if ( ready.get( slot ) != index || chunks[slot].getIndex() != index )
+                {
+                    // As if chunk index - window had been there already.
+                    claimed.set( slot, index - window );
+                    ready.set( slot, index - window );
+                }
+            }
+            released = first;
+            seeks++;
+        }
+        LockSupport.unpark( thread );
+    }
+
+    /**
+     * Stops the background thread.
+     */
+    public void close()
+    {
+        closed = true;
+        LockSupport.unpark( thread );
+    }
+
+    /* Utility method: stops the background thread, then starts one from chunk first. */
+    private void restart( long first )
+    {
+        close();
+        try
+        {
+            thread.join();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "interrupted while moving world" );
+        }
+        start( first );
+    }
+
+    /* Utility method: starts making chunks from chunk index first onwards. */
+    private void start( long first )
+    {
+        int window = chunks.length;
+        for ( long index = first; index < first + window; index++ )
+        {
+            // As if chunk index - window had been there already.
+            int slot = (int) ( index % window );
+            claimed.set( slot, index - window );
+            ready.set( slot, index - window );
+        }
+        released = first;
+        closed = false;
+        failure = null;
+        thread = new Thread( () -> generateAhead( first ), "world-generator" );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    /* Utility method: returns chunk index, made by whichever thread gets to it first. */
+    private WorldChunk obtain( long index )
+    {
+        int slot = (int) ( index % chunks.length );
+        if ( ready.get( slot ) != index )
+        {
+            if ( claimed.compareAndSet( slot, index - chunks.length, index ) )
+                generate( slot, index );
+            else
+            {
+                // Being made in the background right now; it will not be long.
+                while ( ready.get( slot ) != index )
+                {
+                    RuntimeException e = failure;
+                    if ( e != null )
+                        throw e;
+                    Thread.onSpinWait();
+                }
+            }
+        }
+        return chunks[slot];
+    }
+
+    /* Utility method: makes chunk index in its slot (already claimed). */
+    private void generate( int slot, long index )
+    {
+        WorldChunk chunk = chunks[slot];
+        GameRandom random = randoms[slot];
+        chunk.reset( index );
+        random.setState( seed + index );
+        random.setState( random.nextLong() );
+        generator.generate( chunk, random );
+        ready.set( slot, index );
+    }
+
+    /* Body of the background thread: keeps the window full of chunks. */
+    private void generateAhead( long next )
+    {
+        long seen;
+        synchronized ( claimLock )
+        {
+            seen = seeks;
+        }
+        try
+        {
+            while ( !closed )
+            {
+                long index;
+                boolean claim;
+                synchronized ( claimLock )
+                {
+                    if ( seeks != seen )
+                    {
+                        // Moved by seek(): carry on from the first chunk needed.
+                        seen = seeks;
+                        next = released;
+                    }
+                    index = next;
+                    if ( index >= released + chunks.length )
+                        claim = false;
+                    else
+                    {
+                        claim = claimed.compareAndSet( (int) ( index % chunks.length ),
+                                                       index - chunks.length, index );
+                        next++;
+                    }
+                }
+                if ( claim )
+                    generate( (int) ( index % chunks.length ), index );
+                else if ( index >= released + chunks.length )
+                    LockSupport.park( this );
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            failure = e;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,243 @@
+/**
+ * Index of where each kind of object is on a game-board, for the Scrolling
+ * Game project. For each sprite id in use, it keeps one bitset per row
+ * (marking the columns holding that sprite) and a count of objects in each
+ * row and column, all kept up to date as the board changes. So "how many
+ * asteroids are in this row?" is answered without looking at any Cells.
+ *
+ * Collisions are checked with check(), which tells the CollisionListeners
+ * registered for the kind of object found, instead of each game comparing
+ * image-file names itself.
+ */
+import java.util.*;
+
+public class CollisionIndex
+{
+    private final BoardPlanes planes;
+    private final int numRows;
+    private final int numCols;
+    // Number of longs in each row's bitset.
+    private final int words;
+
+    // All indexed by sprite id; created when that sprite is first placed.
+    // Columns here are columns of the (scrolling) sprite plane.
+    private final long[][] rowBits;
+    private final int[][] rowCounts;
+    private final int[][] colCounts;
+    private final CollisionListener[][] listeners;
+
+    /*
+     * Creates an empty index for the given planes (which keep it updated).
+     */
+    CollisionIndex( BoardPlanes planes )
+    {
+        this.planes = planes;
+        numRows = planes.getNumRows();
+        numCols = planes.getNumCols();
+        words = ( numCols + 63 ) >>> 6;
+        rowBits = new long[SpriteTable.MAX_SPRITES + 1][];
+        rowCounts = new int[SpriteTable.MAX_SPRITES + 1][];
+        colCounts = new int[SpriteTable.MAX_SPRITES + 1][];
+        listeners = new CollisionListener[SpriteTable.MAX_SPRITES + 1][];
+    }
+
+    /**
+     * @param sprite Sprite id of a kind of object.
+     * @param row Row of board.
+     *
+     * @return Number of objects of that kind in the row.
+     */
+    public int countInRow( int sprite, int row )
+    {
+        int[] counts = rowCounts[sprite];
+        return counts == null ? 0 : counts[row];
+    }
+
+    /**
+     * @param sprite Sprite id of a kind of object.
+     * @param col Column of board.
+     *
+     * @return Number of objects of that kind in the column.
+     */
+    public int countInColumn( int sprite, int col )
+    {
+        int[] counts = colCounts[sprite];
+        return counts == null ? 0 : counts[planes.physicalColumn( col )];
+    }
+
+    /**
+     * Finds the next object of a given kind in a row, for stepping through
+     * all of them:
+     * for ( int col = index.nextInRow( id, row, 0 ); col >= 0;
+     * col = index.nextInRow( id, row, col + 1 ) ) ...
+     *
+     * @param sprite Sprite id of a kind of object.
+     * @param row Row of board.
+     * @param fromCol First column to look at.
+     *
+     * @return Column of first object of that kind at or after fromCol, or -1
+     *         if there is none.
+     */
+    public int nextInRow( int sprite, int row, int fromCol )
+    {
+        long[] bits = rowBits[sprite];
+        if ( bits == null || fromCol >= numCols || rowCounts[sprite][row] == 0 )
+            return -1;
+        if ( fromCol < 0 )
+            fromCol = 0;
+
+        // Columns fromCol.. end of board are one or two runs of the ring.
+        int origin = planes.physicalColumn( 0 );
+        int start = planes.physicalColumn( fromCol );
+        int found;
+        if ( start >= origin )
+        {
+            found = nextSetBit( bits, row, start, numCols );
+            if ( found < 0 )
+                found = nextSetBit( bits, row, 0, origin );
+        }
+        else
+            found = nextSetBit( bits, row, start, origin );
+        return found < 0 ? -1 : planes.logicalColumn( found );
+    }
+
+    /**
+     * Registers a listener to be told about collisions with one kind of
+     * object.
+     *
+     * @param sprite Sprite id of the kind of object.
+     * @param listener Listener to call from check().
+     */
+    public void addListener( int sprite, CollisionListener listener )
+    {
+        if ( sprite == SpriteTable.NONE )
+            throw new RuntimeException( "cannot listen for collisions with empty cells" );
+        CollisionListener[] list = listeners[sprite];
+        if ( list == null )
+            list = new CollisionListener[] { listener };
+        else
+        {
+            list = Arrays.copyOf( list, list.length + 1 );
+            list[list.length - 1] = listener;
+        }
+        listeners[sprite] = list;
+    }
+
+    /**
+     * Removes a listener registered with addListener().
+     *
+     * @param sprite Sprite id the listener was registered for.
+     * @param listener Listener to remove.
+     */
+    public void removeListener( int sprite, CollisionListener listener )
+    {
+        CollisionListener[] list = listeners[sprite];
+        if ( list == null )
+            return;
+        for ( int i = 0; i < list.length; i++ )
+        {
+            if ( list[i] == listener )
+            {
+                CollisionListener[] shorter = new CollisionListener[list.length - 1];
+                System.arraycopy( list, 0, shorter, 0, i );
+                System.arraycopy( list, i + 1, shorter, i, shorter.length - i );
+                listeners[sprite] = shorter.length == 0 ? null : shorter;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks for a collision at a given location: if it holds an object, the
+     * listeners registered for that kind of object are told about it.
+     *
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     *
+     * @return Sprite id of object at (row, col) (SpriteTable.NONE if empty).
+     */
+    public int check( int row, int col )
+    {
+        int sprite = planes.getSprite( row, col );
+        if ( sprite != SpriteTable.NONE )
+        {
+            CollisionListener[] list = listeners[sprite];
+            if ( list != null )
+            {
+                for ( int i = 0; i < list.length; i++ )
+                    list[i].collision( row, col, sprite );
+            }
+        }
+        return sprite;
+    }
+
+    /*
+     * Records an object placed at (row, col) of the sprite plane.
+     */
+    void add( int sprite, int row, int physicalCol )
+    {
+        if ( rowBits[sprite] == null )
+        {
+            rowBits[sprite] = new long[numRows * words];
+            rowCounts[sprite] = new int[numRows];
+            colCounts[sprite] = new int[numCols];
+        }
+        rowBits[sprite][row * words + ( physicalCol >>> 6 )] |= 1L << physicalCol;
+        rowCounts[sprite][row]++;
+        colCounts[sprite][physicalCol]++;
+    }
+
+    /*
+     * Records an object removed from (row, col) of the sprite plane.
+     */
+    void remove( int sprite, int row, int physicalCol )
+    {
+        removeFromRow( sprite, row, physicalCol );
+        colCounts[sprite][physicalCol]--;
+    }
+
+    /*
+     * Records an object removed from (row, col) of the sprite plane, but
+     * leaves the column's counts alone (for clearing a whole column, a band
+     * of rows at a time; see clearColumn()).
+     */
+    void removeFromRow( int sprite, int row, int physicalCol )
+    {
+        rowBits[sprite][row * words + ( physicalCol >>> 6 )] &= ~( 1L << physicalCol );
+        rowCounts[sprite][row]--;
+    }
+
+    /*
+     * Records that a column of the sprite plane has been emptied, once
+     * removeFromRow() has been called for every object in it.
+     */
+    void clearColumn( int physicalCol )
+    {
+        for ( int sprite = 1; sprite < colCounts.length; sprite++ )
+        {
+            if ( colCounts[sprite] != null )
+                colCounts[sprite][physicalCol] = 0;
+        }
+    }
+
+    /* Utility method: first set bit in [from, to) of a row's bitset, or -1. */
+    private int nextSetBit( long[] bits, int row, int from, int to )
+    {
+        if ( from >= to )
+            return -1;
+        int base = row * words;
+        int word = from >>> 6;
+        long w = bits[base + word] & ( -1L << from );
+        while ( true )
+        {
+            if ( w != 0 )
+            {
+                int bit = ( word << 6 ) + Long.numberOfTrailingZeros( w );
+                return bit < to ? bit : -1;
+            }
+            if ( ++word > ( to - 1 ) >>> 6 )
+                return -1;
+            w = bits[base + word];
+        }
+    }
+}
\ No newline at end of file
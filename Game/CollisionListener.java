@@ -0,0 +1,17 @@
+/**
+ * Receives collision events from a CollisionIndex, for the Scrolling Game
+ * project. A listener is registered for one kind of object (one sprite id),
+ * so it is only told about collisions with that kind.
+ */
+public interface CollisionListener
+{
+    /**
+     * Called when a checked location holds an object of the kind this
+     * listener was registered for.
+     *
+     * @param row Row of Cell location.
+     * @param col Column of Cell location.
+     * @param sprite Sprite id of the object collided with.
+     */
+    void collision( int row, int col, int sprite );
+}
\ No newline at end of file
@@ -0,0 +1,184 @@
+/**
+ * Background colors of a board at smaller and smaller scales, for drawing a
+ * Grid zoomed out past one Cell per pixel (see Camera), for the Scrolling
+ * Game project. Level k holds one pixel for each square of 2^k by 2^k Cells,
+ * in their averaged color, each level worked out from the one below.
+ *
+ * Levels are only worked out when first drawn, and then kept: when told
+ * (by invalidate()) that Cells have changed, only the pixels over those
+ * Cells are worked out again, at each level, the next time one is drawn.
+ * So a frame zoomed out costs one copy of the part of one level in view,
+ * plus work in proportion to the Cells changed, however big the board.
+ */
+import java.awt.*;
+import java.awt.image.*;
+
+public class ColorPyramid
+{
+    private final int numRows;
+    private final int numCols;
+    // Level images, by level (entry 0 unused: level 0 is the Cells themselves).
+    private final BufferedImage[] levels;
+    // Cells whose colors may have changed since the levels were worked out.
+    private final DirtyRegion stale;
+
+    /**
+     * Basic constructor; no level is worked out until drawn.
+     *
+     * @param numRows Number of rows in board.
+     * @param numCols Number of columns in board.
+     */
+    public ColorPyramid( int numRows, int numCols )
+    {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        levels = new BufferedImage[Camera.MAX_LEVEL + 1];
+        stale = new DirtyRegion( numRows, numCols );
+    }
+
+    /**
+     * Notes Cells whose background colors may have changed since the
+     * snapshot last drawn; the levels are brought up to date over them when
+     * next drawn.
+     *
+     * @param changed Cells changed.
+     */
+    public void invalidate( DirtyRegion changed )
+    {
+        stale.add( changed );
+    }
+
+    /**
+     * Draws the part of one level in view.
+     *
+     * @param g Graphics to draw with (its clip limits what is drawn).
+     * @param snapshot Cells of board.
+     * @param camera View of board (zoomed out: getLevel() > 0).
+     * @param clip Area to draw, in pixels of the view.
+     */
+    public void draw( Graphics g, BoardSnapshot snapshot, Camera camera, Rectangle clip )
+    {
+        int level = camera.getLevel();
+        BufferedImage image = getLevel( snapshot, level );
+        int x0 = camera.getCol() >> level;
+        int y0 = camera.getRow() >> level;
+        int left = Math.max( clip.x, -x0 );
+        int top = Math.max( clip.y, -y0 );
+        int right = Math.min( clip.x + clip.width, image.getWidth() - x0 );
+        int bottom = Math.min( clip.y + clip.height, image.getHeight() - y0 );
+        if ( left >= right || top >= bottom )
+            return;
+        g.drawImage( image, left, top, right, bottom, x0 + left, y0 + top, x0 + right,
+                     y0 + bottom, null );
+    }
+
+    /**
+     * Returns one level, working it out (and any below it) if not yet made,
+     * and bringing every level made up to date over the Cells given to
+     * invalidate() since.
+     *
+     * @param snapshot Cells of board (the snapshot last drawn, or a later
+     *            one with its changes given to invalidate()).
+     * @param level Level wanted (1 to Camera.MAX_LEVEL).
+     *
+     * @return Image of level, one pixel per 2^level by 2^level Cells.
+     */
+    public BufferedImage getLevel( BoardSnapshot snapshot, int level )
+    {
+        if ( level < 1 || level > Camera.MAX_LEVEL )
+            throw new RuntimeException( "invalid level of detail:  " + level );
+        if ( !stale.isEmpty() )
+            update( snapshot );
+        if ( levels[level] == null )
+        {
+            int below = level - 1;
+            while ( below > 0 && levels[below] == null )
+                below--;
+            int[] from = below == 0 ? snapshot.colors() : pixels( levels[below] );
+            int width = below == 0 ? numCols : levels[below].getWidth();
+            int height = below == 0 ? numRows : levels[below].getHeight();
+            for ( int k = below + 1; k <= level; k++ )
+            {
+                levels[k] = halve( from, width, height );
+                from = pixels( levels[k] );
+                width = levels[k].getWidth();
+                height = levels[k].getHeight();
+            }
+        }
+        return levels[level];
+    }
+
+    /*
+     * Utility method: works out again the pixels of every level made that
+     * lie over stale Cells (levels are always made from level 1 up).
+     */
+    private void update( BoardSnapshot snapshot )
+    {
+        for ( Rectangle r : stale.drain() )
+        {
+            int[] from = snapshot.colors();
+            int width = numCols;
+            int height = numRows;
+            for ( int k = 1; k < levels.length && levels[k] != null; k++ )
+            {
+                int[] to = pixels( levels[k] );
+                average( from, width, height, to, r.x >> k, r.y >> k,
+                         ( r.x + r.width - 1 ) >> k, ( r.y + r.height - 1 ) >> k );
+                from = to;
+                width = levels[k].getWidth();
+                height = levels[k].getHeight();
+            }
+        }
+    }
+
+    /*
+     * Utility method: returns an image of half the size, each pixel the
+     * average of (up to) four.
+     */
+    private static BufferedImage halve( int[] from, int width, int height )
+    {
+        int halfWidth = ( width + 1 ) / 2;
+        int halfHeight = ( height + 1 ) / 2;
+        BufferedImage image = new BufferedImage( halfWidth, halfHeight,
+                                                 BufferedImage.TYPE_INT_ARGB );
+        average( from, width, height, pixels( image ), 0, 0, halfWidth - 1, halfHeight - 1 );
+        return image;
+    }
+
+    /*
+     * Utility method: works out pixels (x0, y0) to (x1, y1) of the image of
+     * half the size, each the average of (up to) four.
+     */
+    private static void average( int[] from, int width, int height, int[] to, int x0, int y0,
+                                 int x1, int y1 )
+    {
+        int halfWidth = ( width + 1 ) / 2;
+        for ( int y = y0; y <= y1; y++ )
+        {
+            for ( int x = x0; x <= x1; x++ )
+            {
+                int a = 0, r = 0, g = 0, b = 0, count = 0;
+                for ( int row = 2 * y; row < Math.min( 2 * y + 2, height ); row++ )
+                {
+                    for ( int col = 2 * x; col < Math.min( 2 * x + 2, width ); col++ )
+                    {
+                        int argb = from[row * width + col];
+                        a += argb >>> 24;
+                        r += ( argb >> 16 ) & 0xff;
+                        g += ( argb >> 8 ) & 0xff;
+                        b += argb & 0xff;
+                        count++;
+                    }
+                }
+                to[y * halfWidth + x] = ( a / count ) << 24 | ( r / count ) << 16 |
+                                        ( g / count ) << 8 | b / count;
+            }
+        }
+    }
+
+    /* Utility method: pixels of an image made by halve(). */
+    private static int[] pixels( BufferedImage image )
+    {
+        return ( (DataBufferInt) image.getRaster().getDataBuffer() ).getData();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,19 @@
+/**
+ * Something that plays a game instead of (or as well as) the keyboard, for
+ * the Scrolling Game project: a bot, a replay, or a network player. Once
+ * set with AbstractGame.setController(), it is asked for a direction at the
+ * start of every step of game-play that has no key press waiting.
+ */
+public interface Controller
+{
+    /**
+     * Chooses which way the user moves in the step about to run. Called on
+     * the game thread, between steps, so the game may be looked at (but not
+     * changed) freely.
+     *
+     * @param game Game being played.
+     *
+     * @return AbstractGame.UP, AbstractGame.DOWN, or 0 to stay put.
+     */
+    int nextDirection( AbstractGame game );
+}
\ No newline at end of file
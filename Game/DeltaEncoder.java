@@ -0,0 +1,262 @@
+/**
+ * Encodes the state of a MultiplayerGame as compact binary messages for
+ * GameClients, for the Scrolling Game project. Each frame holds only what
+ * changed since the frame before: image-file names used for the first time,
+ * the Cells that differ (written by a CellCodec, as in a FrameLog), and the
+ * players whose row, counts or status changed. Only the Cells the board
+ * has marked as changed since the last frame (see Board.trackChanges()) are
+ * looked at, so a quiet tick costs little however big the board. A
+ * keyframe holds everything instead, for a client that has just joined, or
+ * has fallen too far behind and had frames dropped; frames after it carry
+ * on from it.
+ *
+ * Every message is an int giving its length, then a type byte, then its
+ * contents; numbers are written 7 bits per byte, as most are small.
+ * Clients send the server one byte per move: -1 for up, 1 for down.
+ */
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class DeltaEncoder
+{
+    public static final int VERSION = 1;
+
+    // Message types.
+    static final byte WELCOME = 1;
+    static final byte FRAME = 2;
+    static final byte KEYFRAME = 3;
+    static final byte FULL = 4;
+
+    // Flags giving a player's status.
+    static final int PLAYER_OUT = 1;
+    static final int PLAYER_GONE = 2;
+
+    private final Board board;
+    // Cells changed since the last frame encoded, and the Cells and players
+    // as of that frame (black and empty, and none, at first), and the number
+    // of sprite ids named so far.
+    private final DirtyRegion changes;
+    private final CellCodec cells;
+    private int namesSent;
+    private final Map<Integer, int[]> sentPlayers;
+    private final Set<Integer> seen;
+    // Message being encoded.
+    private final ByteArrayOutputStream bytes;
+    private final DataOutputStream out;
+
+    /**
+     * Basic constructor; starts keeping track of the Cells of the board
+     * that change.
+     *
+     * @param board Board of the game, as it is before the first frame.
+     */
+    public DeltaEncoder( Board board )
+    {
+        this.board = board;
+        changes = board.trackChanges();
+        changes.markAll();
+        cells = new CellCodec( board.getNumRows(), board.getNumCols() );
+        namesSent = 1;
+        sentPlayers = new HashMap<Integer, int[]>();
+        seen = new HashSet<Integer>();
+        bytes = new ByteArrayOutputStream( 4096 );
+        out = new DataOutputStream( bytes );
+    }
+
+    /**
+     * Encodes the first message sent to a client: the protocol version, the
+     * client's player number and the board size.
+     *
+     * @param playerId Number of the client's player.
+     *
+     * @return Message, ready to send (read-only; share it with duplicate()).
+     */
+    public ByteBuffer encodeWelcome( int playerId )
+    {
+        try
+        {
+            begin( WELCOME );
+            CellCodec.writeNumber( out, VERSION );
+            CellCodec.writeNumber( out, playerId );
+            CellCodec.writeNumber( out, board.getNumRows() );
+            CellCodec.writeNumber( out, board.getNumCols() );
+            return end();
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to encode welcome:  " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Encodes the message sent instead of a welcome to a client that cannot
+     * join, as the game is full (see MultiplayerGame.isFull()).
+     *
+     * @return Message, ready to send (read-only; share it with duplicate()).
+     */
+    public ByteBuffer encodeFull()
+    {
+        try
+        {
+            begin( FULL );
+            return end();
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to encode message:  " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Encodes what changed since the last frame encoded.
+     *
+     * @param tick Number of game step.
+     * @param players Players in the game now.
+     *
+     * @return Message, ready to send (read-only; share it with duplicate()).
+     */
+    public ByteBuffer encodeFrame( long tick, List<MultiplayerGame.Player> players )
+    {
+        return encode( FRAME, tick, players );
+    }
+
+    /**
+     * Encodes the whole of the game as it is now, for a client starting from
+     * nothing. Should be made just after encodeFrame() for the same tick,
+     * so that the frames encoded after it carry on from it.
+     *
+     * @param tick Number of game step.
+     * @param players Players in the game now.
+     *
+     * @return Message, ready to send (read-only; share it with duplicate()).
+     */
+    public ByteBuffer encodeKeyframe( long tick, List<MultiplayerGame.Player> players )
+    {
+        return encode( KEYFRAME, tick, players );
+    }
+
+    /* Utility method: encodes a frame, or a keyframe (from an empty board). */
+    private ByteBuffer encode( byte type, long tick, List<MultiplayerGame.Player> players )
+    {
+        boolean key = type == KEYFRAME;
+        try
+        {
+            begin( type );
+            CellCodec.writeNumber( out, tick );
+
+            SpriteTable table = board.getSpriteTable();
+            int firstName = key ? 1 : namesSent;
+            CellCodec.writeNumber( out, table.size() - firstName );
+            for ( int id = firstName; id < table.size(); id++ )
+            {
+                byte[] name = table.getName( id ).getBytes( StandardCharsets.UTF_8 );
+                CellCodec.writeNumber( out, name.length );
+                out.write( name );
+            }
+
+            if ( key )
+                cells.writeAll( out, board );
+            else
+            {
+                namesSent = table.size();
+                cells.writeChanges( out, board, changes );
+                changes.clear();
+            }
+
+            encodePlayers( key, players );
+            return end();
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to encode frame:  " + e.getMessage() );
+        }
+    }
+
+    /*
+     * Utility method: writes the players that changed (all of them, for a
+     * keyframe), then those that have gone.
+     */
+    private void encodePlayers( boolean key, List<MultiplayerGame.Player> players )
+        throws IOException
+    {
+        int count = 0;
+        seen.clear();
+        for ( MultiplayerGame.Player player : players )
+        {
+            seen.add( player.getId() );
+            if ( key || hasChanged( player ) )
+                count++;
+        }
+        if ( !key )
+        {
+            for ( int id : sentPlayers.keySet() )
+            {
+                if ( !seen.contains( id ) )
+                    count++;
+            }
+        }
+        CellCodec.writeNumber( out, count );
+
+        for ( MultiplayerGame.Player player : players )
+        {
+            if ( !key && !hasChanged( player ) )
+                continue;
+            int status = player.isOut() ? PLAYER_OUT : 0;
+            putPlayer( player.getId(), status, player.getRow(), player.getTimesGet(),
+                       player.getTimesAvoid() );
+            if ( !key )
+                sentPlayers.put( player.getId(), new int[] { player.getRow(), player.getTimesGet(),
+                                                             player.getTimesAvoid(), status } );
+        }
+        if ( !key )
+        {
+            Iterator<Integer> ids = sentPlayers.keySet().iterator();
+            while ( ids.hasNext() )
+            {
+                int id = ids.next();
+                if ( !seen.contains( id ) )
+                {
+                    putPlayer( id, PLAYER_GONE, 0, 0, 0 );
+                    ids.remove();
+                }
+            }
+        }
+    }
+
+    /* Utility method: true if a player differs from the last frame encoded. */
+    private boolean hasChanged( MultiplayerGame.Player player )
+    {
+        int[] sent = sentPlayers.get( player.getId() );
+        return sent == null || sent[0] != player.getRow() || sent[1] != player.getTimesGet() ||
+               sent[2] != player.getTimesAvoid() || sent[3] != ( player.isOut() ? PLAYER_OUT : 0 );
+    }
+
+    /* Utility method: writes one player's state. */
+    private void putPlayer( int id, int status, int row, int timesGet, int timesAvoid )
+        throws IOException
+    {
+        CellCodec.writeNumber( out, id );
+        CellCodec.writeNumber( out, status );
+        CellCodec.writeNumber( out, row );
+        CellCodec.writeNumber( out, timesGet );
+        CellCodec.writeNumber( out, timesAvoid );
+    }
+
+    /* Utility method: starts a message of a given type. */
+    private void begin( byte type ) throws IOException
+    {
+        bytes.reset();
+        out.writeInt( 0 );
+        out.writeByte( type );
+    }
+
+    /* Utility method: finishes a message, returning a copy of it. */
+    private ByteBuffer end()
+    {
+        ByteBuffer message = ByteBuffer.wrap( bytes.toByteArray() );
+        message.putInt( 0, message.limit() - 4 );
+        return message.asReadOnlyBuffer();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,196 @@
+/**
+ * Keeps track of which grid-Cells have changed since the screen was last
+ * updated, for the Scrolling Game project. Changed Cells are remembered as a
+ * span of columns per row, and merged into rectangles (in Cell units) when
+ * the region is drained.
+ */
+import java.awt.Rectangle;
+import java.util.*;
+
+public class DirtyRegion
+{
+    private final int[] minCol;
+    private final int[] maxCol;
+    private final int numCols;
+    private int minRow;
+    private int maxRow;
+
+    /**
+     * Basic constructor; creates an empty region for a grid of given size.
+     *
+     * @param numRows Number of rows in grid.
+     * @param numCols Number of columns in grid.
+     */
+    public DirtyRegion( int numRows, int numCols )
+    {
+        minCol = new int[numRows];
+        maxCol = new int[numRows];
+        this.numCols = numCols;
+        Arrays.fill( minCol, Integer.MAX_VALUE );
+        Arrays.fill( maxCol, -1 );
+        minRow = Integer.MAX_VALUE;
+        maxRow = -1;
+    }
+
+    /**
+     * Marks a single Cell as changed.
+     *
+     * @param row Row of grid-Cell location.
+     * @param col Column of grid-Cell location.
+     */
+    public void mark( int row, int col )
+    {
+        if ( col < minCol[row] )
+            minCol[row] = col;
+        if ( col > maxCol[row] )
+            maxCol[row] = col;
+        if ( row < minRow )
+            minRow = row;
+        if ( row > maxRow )
+            maxRow = row;
+    }
+
+    /*
+     * Marks columns [fromCol, toCol] of a row as changed, without taking
+     * note of the row itself; different threads may mark different rows at
+     * once, as long as markRows() is called for them all afterwards.
+     */
+    void markSpan( int row, int fromCol, int toCol )
+    {
+        if ( fromCol < minCol[row] )
+            minCol[row] = fromCol;
+        if ( toCol > maxCol[row] )
+            maxCol[row] = toCol;
+    }
+
+    /*
+     * Takes note of rows [fromRow, toRow] whose spans were marked by
+     * markSpan().
+     */
+    void markRows( int fromRow, int toRow )
+    {
+        if ( fromRow < minRow )
+            minRow = fromRow;
+        if ( toRow > maxRow )
+            maxRow = toRow;
+    }
+
+    /*
+     * Marks every Cell marked in another region (of the same size) as
+     * changed too; takes time proportional to the rows it spans.
+     */
+    void add( DirtyRegion other )
+    {
+        for ( int row = other.minRow; row <= other.maxRow; row++ )
+            if ( other.maxCol[row] >= 0 )
+                markSpan( row, other.minCol[row], other.maxCol[row] );
+        if ( !other.isEmpty() )
+            markRows( other.minRow, other.maxRow );
+    }
+
+    /**
+     * Marks every Cell as changed.
+     */
+    public void markAll()
+    {
+        Arrays.fill( minCol, 0 );
+        Arrays.fill( maxCol, numCols - 1 );
+        minRow = 0;
+        maxRow = minCol.length - 1;
+    }
+
+    /**
+     * @return true if no Cell has changed since region was last drained.
+     */
+    public boolean isEmpty()
+    {
+        return minRow > maxRow;
+    }
+
+    /**
+     * Forgets all changed Cells.
+     */
+    public void clear()
+    {
+        if ( minRow <= maxRow )
+        {
+            Arrays.fill( minCol, minRow, maxRow + 1, Integer.MAX_VALUE );
+            Arrays.fill( maxCol, minRow, maxRow + 1, -1 );
+        }
+        minRow = Integer.MAX_VALUE;
+        maxRow = -1;
+    }
+
+    /*
+     * First row with changed Cells (Integer.MAX_VALUE if none).
+     */
+    int getMinRow()
+    {
+        return minRow;
+    }
+
+    /*
+     * Last row with changed Cells (-1 if none).
+     */
+    int getMaxRow()
+    {
+        return maxRow;
+    }
+
+    /*
+     * First changed column of a row (Integer.MAX_VALUE if none).
+     */
+    int getMinCol( int row )
+    {
+        return minCol[row];
+    }
+
+    /*
+     * Last changed column of a row (-1 if none).
+     */
+    int getMaxCol( int row )
+    {
+        return maxCol[row];
+    }
+
+    /**
+     * Returns changed Cells as a list of rectangles (x == column, y == row,
+     * in Cell units), then clears the region. Consecutive rows whose changed
+     * spans overlap or touch are merged into a single rectangle.
+     *
+     * @return Rectangles covering every changed Cell (empty if none).
+     */
+    public List<Rectangle> drain()
+    {
+        List<Rectangle> rectangles = new ArrayList<Rectangle>();
+        Rectangle current = null;
+        for ( int row = minRow; row <= maxRow; row++ )
+        {
+            int left = minCol[row];
+            int right = maxCol[row] + 1;
+            minCol[row] = Integer.MAX_VALUE;
+            maxCol[row] = -1;
+            if ( right <= 0 )
+            {
+                current = null;
+                continue;
+            }
+
+            if ( current != null && left <= current.x + current.width && right >= current.x )
+            {
+                int x = Math.min( current.x, left );
+                current.width = Math.max( current.x + current.width, right ) - x;
+                current.x = x;
+                current.height++;
+            }
+            else
+            {
+                current = new Rectangle( left, row, right - left, 1 );
+                rectangles.add( current );
+            }
+        }
+        minRow = Integer.MAX_VALUE;
+        maxRow = -1;
+        return rectangles;
+    }
+}
\ No newline at end of file
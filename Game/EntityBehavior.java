@@ -0,0 +1,19 @@
+/**
+ * What one kind of entity does on each step of game-play, for the Scrolling
+ * Game project (see EntityPool.defineKind()). Behaviors are shared by every
+ * entity of their kind, so any state of their own belongs in the pool.
+ */
+public interface EntityBehavior
+{
+    /**
+     * Called once per step for each entity of the kind, after it has moved
+     * by its velocity. May change the entity's position or velocity, and
+     * spawn or remove other entities.
+     *
+     * @param pool Pool holding the entity.
+     * @param entity Handle of the entity.
+     *
+     * @return false to remove the entity (its slot is recycled).
+     */
+    boolean update( EntityPool pool, int entity );
+}
\ No newline at end of file
@@ -0,0 +1,623 @@
+/**
+ * Moving objects of a game, for the Scrolling Game project. Each entity has
+ * a kind (which gives its image and its EntityBehavior), a position and a
+ * velocity. Entities live in parallel arrays of ints rather than as objects:
+ * an entity is just the index of its slot (its handle), and removed
+ * entities' slots are recycled, so once the arrays are big enough,
+ * spawning, moving and removing any number of entities allocates nothing.
+ *
+ * Positions and velocities are in fixed point, CELL units to a Cell, so
+ * entities may move at any fraction of a Cell per step. Each step,
+ * update() moves every entity and runs its behavior, and render() draws
+ * them onto a board (which holds no entities of its own, only their
+ * images). Entities that leave the board are removed.
+ *
+ * Handles are reused once an entity is removed, so they should not be kept
+ * after that.
+ */
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class EntityPool
+{
+    // Position units in one Cell.
+    public static final int CELL = 256;
+    private static final int CELL_BITS = 8;
+
+    private final int numRows;
+    private final int numCols;
+
+    // Indexed by handle.
+    private int[] kinds;
+    private int[] xs;
+    private int[] ys;
+    private int[] vxs;
+    private int[] vys;
+    // Cell (row * numCols + col) where last drawn by render(), or -1.
+    private int[] drawn;
+    // Position in active, or -1 if the slot is free.
+    private int[] slots;
+    private boolean[] dying;
+
+    // Handles of live entities, in no particular order.
+    private int[] active;
+    private int count;
+    // Handles of free slots.
+    private int[] free;
+    private int freeCount;
+
+    private int[] kindSprites;
+    private EntityBehavior[] behaviors;
+    private int numKinds;
+
+    // Cells to be emptied by the next render() (of entities removed).
+    private int[] clearCells;
+    private int[] clearSprites;
+    private int numCleared;
+
+    // Removals asked for during update() wait until it has finished.
+    private boolean updating;
+    private int numDying;
+
+    /**
+     * Basic constructor; creates an empty pool.
+     *
+     * @param numRows Number of rows in board.
+     * @param numCols Number of columns in board.
+     * @param capacity Number of entities to make room for at first (more
+     *            room is made when needed).
+     */
+    public EntityPool( int numRows, int numCols, int capacity )
+    {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        capacity = Math.max( capacity, 1 );
+        kinds = new int[capacity];
+        xs = new int[capacity];
+        ys = new int[capacity];
+        vxs = new int[capacity];
+        vys = new int[capacity];
+        drawn = new int[capacity];
+        slots = new int[capacity];
+        dying = new boolean[capacity];
+        active = new int[capacity];
+        free = new int[capacity];
+        Arrays.fill( slots, -1 );
+        for ( int i = 0; i < capacity; i++ )
+            free[i] = capacity - 1 - i;
+        freeCount = capacity;
+        count = 0;
+        kindSprites = new int[8];
+        behaviors = new EntityBehavior[8];
+        numKinds = 0;
+        clearCells = new int[capacity];
+        clearSprites = new int[capacity];
+        numCleared = 0;
+        updating = false;
+        numDying = 0;
+    }
+
+    /**
+     * Defines a kind of entity.
+     *
+     * @param sprite Sprite id (in the board's SpriteTable) of the image
+     *            entities of this kind are drawn with.
+     * @param behavior What entities of this kind do each step (null for
+     *            nothing but moving).
+     *
+     * @return Kind, for spawn().
+     */
+    public int defineKind( int sprite, EntityBehavior behavior )
+    {
+        if ( sprite == SpriteTable.NONE )
+            throw new RuntimeException( "entities must have an image" );
+        if ( numKinds == kindSprites.length )
+        {
+            kindSprites = Arrays.copyOf( kindSprites, numKinds * 2 );
+            behaviors = Arrays.copyOf( behaviors, numKinds * 2 );
+        }
+        kindSprites[numKinds] = sprite;
+        behaviors[numKinds] = behavior;
+        return numKinds++;
+    }
+
+    /**
+     * Adds an entity to the board (drawn by the next render()).
+     *
+     * @param kind Kind from defineKind().
+     * @param row Row of Cell to start in.
+     * @param col Column of Cell to start in.
+     * @param vx Columns moved per step, in CELL units (negative for left).
+     * @param vy Rows moved per step, in CELL units (negative for up).
+     *
+     * @return Handle of new entity.
+     */
+    public int spawn( int kind, int row, int col, int vx, int vy )
+    {
+        if ( kind < 0 || kind >= numKinds )
+            throw new RuntimeException( "no such kind of entity:  " + kind );
+        if ( row < 0 || row >= numRows || col < 0 || col >= numCols )
+            throw new RuntimeException( "cannot spawn entity off the board at " + row + ", " + col );
+        if ( freeCount == 0 )
+            grow();
+        int entity = free[--freeCount];
+        kinds[entity] = kind;
+        xs[entity] = col << CELL_BITS;
+        ys[entity] = row << CELL_BITS;
+        vxs[entity] = vx;
+        vys[entity] = vy;
+        drawn[entity] = -1;
+        dying[entity] = false;
+        slots[entity] = count;
+        active[count++] = entity;
+        return entity;
+    }
+
+    /**
+     * Removes an entity, recycling its slot; its image goes at the next
+     * render(). During update() the entity is only removed once all
+     * entities have been updated.
+     *
+     * @param entity Handle of entity.
+     */
+    public void remove( int entity )
+    {
+        checkEntity( entity );
+        if ( dying[entity] )
+            return;
+        if ( updating )
+        {
+            dying[entity] = true;
+            numDying++;
+            return;
+        }
+        recycle( entity );
+    }
+
+    /**
+     * Removes every entity in a given Cell.
+     *
+     * @param row Row of Cell.
+     * @param col Column of Cell.
+     *
+     * @return Number of entities removed.
+     */
+    public int removeAt( int row, int col )
+    {
+        int removed = 0;
+        for ( int i = count - 1; i >= 0; i-- )
+        {
+            int entity = active[i];
+            if ( !dying[entity] && getRow( entity ) == row && getCol( entity ) == col )
+            {
+                remove( entity );
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes every entity.
+     */
+    public void clear()
+    {
+        for ( int i = count - 1; i >= 0; i-- )
+            remove( active[i] );
+    }
+
+    /**
+     * Finds an entity in a given Cell.
+     *
+     * @param row Row of Cell.
+     * @param col Column of Cell.
+     *
+     * @return Handle of an entity in that Cell, or -1 if there is none.
+     */
+    public int findAt( int row, int col )
+    {
+        for ( int i = 0; i < count; i++ )
+        {
+            int entity = active[i];
+            if ( !dying[entity] && getRow( entity ) == row && getCol( entity ) == col )
+                return entity;
+        }
+        return -1;
+    }
+
+    /**
+     * @return Number of entities (including any removed during the current
+     *         update()).
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * Gives the entities one by one, for stepping through all of them:
+     * for ( int i = 0; i < pool.size(); i++ ) ... pool.get( i ) ...
+     *
+     * @param index Number from 0 to size() - 1.
+     *
+     * @return Handle of an entity.
+     */
+    public int get( int index )
+    {
+        if ( index < 0 || index >= count )
+            throw new RuntimeException( "no entity number " + index + " of " + count );
+        return active[index];
+    }
+
+    /**
+     * @param entity Handle of entity.
+     *
+     * @return Kind of entity.
+     */
+    public int getKind( int entity )
+    {
+        return kinds[entity];
+    }
+
+    /**
+     * @param entity Handle of entity.
+     *
+     * @return Row of Cell the entity is in.
+     */
+    public int getRow( int entity )
+    {
+        return ys[entity] >> CELL_BITS;
+    }
+
+    /**
+     * @param entity Handle of entity.
+     *
+     * @return Column of Cell the entity is in.
+     */
+    public int getCol( int entity )
+    {
+        return xs[entity] >> CELL_BITS;
+    }
+
+    /**
+     * @param entity Handle of entity.
+     *
+     * @return Horizontal position, in CELL units.
+     */
+    public int getX( int entity )
+    {
+        return xs[entity];
+    }
+
+    /**
+     * @param entity Handle of entity.
+     *
+     * @return Vertical position, in CELL units.
+     */
+    public int getY( int entity )
+    {
+        return ys[entity];
+    }
+
+    /**
+     * @param entity Handle of entity.
+     *
+     * @return Columns moved per step, in CELL units.
+     */
+    public int getVelocityX( int entity )
+    {
+        return vxs[entity];
+    }
+
+    /**
+     * @param entity Handle of entity.
+     *
+     * @return Rows moved per step, in CELL units.
+     */
+    public int getVelocityY( int entity )
+    {
+        return vys[entity];
+    }
+
+    /**
+     * Moves an entity.
+     *
+     * @param entity Handle of entity.
+     * @param x Horizontal position, in CELL units.
+     * @param y Vertical position, in CELL units.
+     */
+    public void setPosition( int entity, int x, int y )
+    {
+        xs[entity] = x;
+        ys[entity] = y;
+    }
+
+    /**
+     * Changes an entity's speed and direction.
+     *
+     * @param entity Handle of entity.
+     * @param vx Columns moved per step, in CELL units.
+     * @param vy Rows moved per step, in CELL units.
+     */
+    public void setVelocity( int entity, int vx, int vy )
+    {
+        vxs[entity] = vx;
+        vys[entity] = vy;
+    }
+
+    /**
+     * Runs one step for every entity: moves it by its velocity, then runs
+     * the behavior of its kind. Entities that end up off the board are
+     * removed.
+     */
+    public void update()
+    {
+        updating = true;
+        try
+        {
+            // Entities spawned by behaviors wait until the next step.
+            int n = count;
+            for ( int i = 0; i < n; i++ )
+            {
+                int entity = active[i];
+                if ( dying[entity] )
+                    continue;
+                xs[entity] += vxs[entity];
+                ys[entity] += vys[entity];
+                EntityBehavior behavior = behaviors[kinds[entity]];
+                if ( behavior != null && !behavior.update( this, entity ) )
+                    remove( entity );
+                else if ( !isOnBoard( entity ) )
+                    remove( entity );
+            }
+        }
+        finally
+        {
+            updating = false;
+        }
+
+        if ( numDying > 0 )
+        {
+            for ( int i = count - 1; i >= 0; i-- )
+            {
+                int entity = active[i];
+                if ( dying[entity] )
+                    recycle( entity );
+            }
+            numDying = 0;
+        }
+    }
+
+    /**
+     * Draws every entity onto a board, and takes away the images of
+     * entities that have moved or been removed since the last call (unless
+     * something else has since been drawn over them).
+     *
+     * @param board Board of the size given when the pool was created.
+     */
+    public void render( Board board )
+    {
+        for ( int i = 0; i < numCleared; i++ )
+            clearCell( board, clearCells[i], clearSprites[i] );
+        numCleared = 0;
+
+        for ( int i = 0; i < count; i++ )
+        {
+            int entity = active[i];
+            int cell = getRow( entity ) * numCols + getCol( entity );
+            if ( drawn[entity] >= 0 && drawn[entity] != cell )
+                clearCell( board, drawn[entity], kindSprites[kinds[entity]] );
+        }
+
+        // Drawn after all clearing, in case entities share a Cell.
+        for ( int i = 0; i < count; i++ )
+        {
+            int entity = active[i];
+            int row = getRow( entity );
+            int col = getCol( entity );
+            if ( row < 0 || row >= numRows || col < 0 || col >= numCols )
+                continue;
+            board.setSprite( row, col, kindSprites[kinds[entity]] );
+            drawn[entity] = row * numCols + col;
+        }
+    }
+
+    /**
+     * Takes the images of every entity off a board, along with those of
+     * entities removed since the last render(); the entities are drawn
+     * again by the next render(). Called before the board's images are
+     * moved some other way (as by scrolling, which moves images but not
+     * entities), so that no image is left behind where an entity was.
+     *
+     * @param board Board of the size given when the pool was created.
+     */
+    public void erase( Board board )
+    {
+        for ( int i = 0; i < numCleared; i++ )
+            clearCell( board, clearCells[i], clearSprites[i] );
+        numCleared = 0;
+
+        for ( int i = 0; i < count; i++ )
+        {
+            int entity = active[i];
+            if ( drawn[entity] >= 0 )
+            {
+                clearCell( board, drawn[entity], kindSprites[kinds[entity]] );
+                drawn[entity] = -1;
+            }
+        }
+    }
+
+    /*
+     * Number of bytes writeState() will write.
+     */
+    int stateSize()
+    {
+        return 4 * ( 4 + count * 7 + freeCount + numCleared * 2 );
+    }
+
+    /*
+     * Writes every entity, with its handle, and the Cells waiting to be
+     * emptied, for a SaveState. Kinds are written as numbers only, since
+     * behaviors are code; the pool read into must define the same kinds.
+     */
+    void writeState( ByteBuffer out )
+    {
+        if ( updating )
+            throw new RuntimeException( "cannot save entities during update()" );
+        out.putInt( kinds.length );
+        out.putInt( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            int entity = active[i];
+            out.putInt( entity );
+            out.putInt( kinds[entity] );
+            out.putInt( xs[entity] );
+            out.putInt( ys[entity] );
+            out.putInt( vxs[entity] );
+            out.putInt( vys[entity] );
+            out.putInt( drawn[entity] );
+        }
+        out.putInt( freeCount );
+        for ( int i = 0; i < freeCount; i++ )
+            out.putInt( free[i] );
+        out.putInt( numCleared );
+        for ( int i = 0; i < numCleared; i++ )
+        {
+            out.putInt( clearCells[i] );
+            out.putInt( clearSprites[i] );
+        }
+    }
+
+    /*
+     * Replaces every entity with those written by writeState(), keeping
+     * their handles and order, so play goes on exactly as it would have.
+     * spriteMap gives the sprite id on this pool's board of each sprite id
+     * that was saved.
+     */
+    void readState( ByteBuffer in, int[] spriteMap )
+    {
+        if ( updating )
+            throw new RuntimeException( "cannot restore entities during update()" );
+        int capacity = in.getInt();
+        if ( capacity < 1 || capacity > in.remaining() )
+            throw new RuntimeException( "corrupt entity state" );
+        while ( kinds.length < capacity )
+            grow();
+
+        Arrays.fill( slots, -1 );
+        count = in.getInt();
+        if ( count < 0 || count > capacity )
+            throw new RuntimeException( "corrupt entity state" );
+        for ( int i = 0; i < count; i++ )
+        {
+            int entity = in.getInt();
+            int kind = in.getInt();
+            if ( entity < 0 || entity >= capacity || slots[entity] >= 0 )
+                throw new RuntimeException( "corrupt entity state" );
+            if ( kind < 0 || kind >= numKinds )
+                throw new RuntimeException( "no such kind of entity:  " + kind );
+            kinds[entity] = kind;
+            xs[entity] = in.getInt();
+            ys[entity] = in.getInt();
+            vxs[entity] = in.getInt();
+            vys[entity] = in.getInt();
+            drawn[entity] = in.getInt();
+            dying[entity] = false;
+            slots[entity] = i;
+            active[i] = entity;
+        }
+
+        // Slots beyond the saved capacity go under the saved free ones.
+        int saved = in.getInt();
+        if ( saved != capacity - count )
+            throw new RuntimeException( "corrupt entity state" );
+        freeCount = 0;
+        for ( int entity = kinds.length - 1; entity >= capacity; entity-- )
+            free[freeCount++] = entity;
+        for ( int i = 0; i < saved; i++ )
+            free[freeCount++] = in.getInt();
+        numDying = 0;
+
+        numCleared = in.getInt();
+        if ( numCleared < 0 || numCleared > in.remaining() / 8 )
+            throw new RuntimeException( "corrupt entity state" );
+        if ( numCleared > clearCells.length )
+        {
+            clearCells = Arrays.copyOf( clearCells, numCleared );
+            clearSprites = Arrays.copyOf( clearSprites, numCleared );
+        }
+        for ( int i = 0; i < numCleared; i++ )
+        {
+            clearCells[i] = in.getInt();
+            clearSprites[i] = spriteMap[in.getInt() & SpriteTable.MAX_SPRITES];
+        }
+    }
+
+    /* Utility method: empties a Cell if it still shows the given sprite. */
+    private void clearCell( Board board, int cell, int sprite )
+    {
+        int row = cell / numCols;
+        int col = cell - row * numCols;
+        if ( board.getSprite( row, col ) == sprite )
+            board.setSprite( row, col, SpriteTable.NONE );
+    }
+
+    /* Utility method: true if an entity's Cell is on the board. */
+    private boolean isOnBoard( int entity )
+    {
+        int row = getRow( entity );
+        int col = getCol( entity );
+        return row >= 0 && row < numRows && col >= 0 && col < numCols;
+    }
+
+    /* Utility method: checks that a handle belongs to a live entity. */
+    private void checkEntity( int entity )
+    {
+        if ( entity < 0 || entity >= slots.length || slots[entity] < 0 )
+            throw new RuntimeException( "no such entity:  " + entity );
+    }
+
+    /* Utility method: takes an entity out of the active list, freeing its slot. */
+    private void recycle( int entity )
+    {
+        if ( drawn[entity] >= 0 )
+        {
+            if ( numCleared == clearCells.length )
+            {
+                clearCells = Arrays.copyOf( clearCells, numCleared * 2 );
+                clearSprites = Arrays.copyOf( clearSprites, numCleared * 2 );
+            }
+            clearCells[numCleared] = drawn[entity];
+            clearSprites[numCleared] = kindSprites[kinds[entity]];
+            numCleared++;
+        }
+        int slot = slots[entity];
+        int last = active[--count];
+        active[slot] = last;
+        slots[last] = slot;
+        slots[entity] = -1;
+        dying[entity] = false;
+        free[freeCount++] = entity;
+    }
+
+    /* Utility method: doubles the number of slots. */
+    private void grow()
+    {
+        int capacity = kinds.length;
+        int bigger = capacity * 2;
+        kinds = Arrays.copyOf( kinds, bigger );
+        xs = Arrays.copyOf( xs, bigger );
+        ys = Arrays.copyOf( ys, bigger );
+        vxs = Arrays.copyOf( vxs, bigger );
+        vys = Arrays.copyOf( vys, bigger );
+        drawn = Arrays.copyOf( drawn, bigger );
+        slots = Arrays.copyOf( slots, bigger );
+        dying = Arrays.copyOf( dying, bigger );
+        active = Arrays.copyOf( active, bigger );
+        free = Arrays.copyOf( free, bigger );
+        Arrays.fill( slots, capacity, bigger, -1 );
+        for ( int i = bigger - 1; i >= capacity; i-- )
+            free[freeCount++] = i;
+    }
+}
\ No newline at end of file
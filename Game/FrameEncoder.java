@@ -0,0 +1,271 @@
+/**
+ * Background thread that writes screenshots and recorded frames for the
+ * Scrolling Game project, so that encoding (PNG, GIF, ...) never holds up
+ * game-play. Frames are copied into buffers taken from a pool, queued, and
+ * written in order by the encoder thread, which then returns the buffers to
+ * the pool. The queue is bounded: if the encoder falls behind, the game
+ * thread waits for room rather than dropping frames (or using ever more
+ * memory).
+ *
+ * A failure to write is reported (as a RuntimeException) by the next call
+ * made from the game thread. Anything still queued when the program exits
+ * is written before it stops.
+ */
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.concurrent.*;
+import javax.imageio.ImageIO;
+
+public class FrameEncoder
+{
+    // Number of frames that may be waiting to be written by default.
+    public static final int DEFAULT_CAPACITY = 8;
+
+    private final BlockingQueue<Runnable> queue;
+    private final ConcurrentLinkedQueue<BufferedImage> freeImages;
+    private final ConcurrentLinkedQueue<BoardSnapshot> freeSnapshots;
+    private final Thread thread;
+    private final Thread shutdownHook;
+    private volatile RuntimeException failure;
+    private boolean closed;
+
+    /**
+     * Basic constructor; starts the encoder thread.
+     *
+     * @param capacity Number of frames that may be waiting to be written
+     *            before the game thread has to wait.
+     */
+    public FrameEncoder( int capacity )
+    {
+        if ( capacity < 1 )
+            throw new RuntimeException( "invalid encoder queue size:  " + capacity );
+        queue = new ArrayBlockingQueue<Runnable>( capacity );
+        freeImages = new ConcurrentLinkedQueue<BufferedImage>();
+        freeSnapshots = new ConcurrentLinkedQueue<BoardSnapshot>();
+        failure = null;
+        closed = false;
+        thread = new Thread( this::encode, "frame-encoder" );
+        thread.setDaemon( true );
+        thread.start();
+        shutdownHook = new Thread( this::finish, "frame-encoder-shutdown" );
+        Runtime.getRuntime().addShutdownHook( shutdownHook );
+    }
+
+    /**
+     * Takes an image from the pool (or makes one) to copy a frame into.
+     *
+     * @param width Width of frame, in pixels.
+     * @param height Height of frame, in pixels.
+     *
+     * @return Image of that size (with old contents), to be handed to
+     *         writeImage().
+     */
+    public BufferedImage obtainImage( int width, int height )
+    {
+        BufferedImage image = freeImages.poll();
+        if ( image == null || image.getWidth() != width || image.getHeight() != height )
+            image = new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB );
+        return image;
+    }
+
+    /**
+     * Queues an image to be written to a file (in the format given by the
+     * file's extension), waiting for room in the queue if it is full. The
+     * image must not be used again by the caller.
+     *
+     * @param image Image from obtainImage().
+     * @param imageFileName Name of the file to write.
+     */
+    public void writeImage( BufferedImage image, String imageFileName )
+    {
+        submit( () ->
+        {
+            try
+            {
+                encode( image, imageFileName );
+            }
+            finally
+            {
+                freeImages.offer( image );
+            }
+        } );
+    }
+
+    /*
+     * Takes a snapshot from the pool (or makes one) to copy a frame into.
+     */
+    BoardSnapshot obtainSnapshot( int numRows, int numCols )
+    {
+        BoardSnapshot snapshot = freeSnapshots.poll();
+        if ( snapshot == null || snapshot.getNumRows() != numRows ||
+             snapshot.getNumCols() != numCols )
+            snapshot = new BoardSnapshot( numRows, numCols );
+        return snapshot;
+    }
+
+    /*
+     * Queues a snapshot from obtainSnapshot() to be added to a frame log.
+     */
+    void appendFrame( FrameLog log, BoardSnapshot snapshot )
+    {
+        submit( () ->
+        {
+            try
+            {
+                log.append( snapshot );
+            }
+            finally
+            {
+                freeSnapshots.offer( snapshot );
+            }
+        } );
+    }
+
+    /**
+     * Queues a frame log to be closed once the frames already queued for it
+     * are written.
+     *
+     * @param log Log to close.
+     */
+    public void closeLog( FrameLog log )
+    {
+        submit( log::close );
+    }
+
+    /**
+     * Waits until everything queued so far has been written.
+     */
+    public void flush()
+    {
+        CountDownLatch done = new CountDownLatch( 1 );
+        submit( done::countDown );
+        try
+        {
+            done.await();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "interrupted while waiting for frames to be written" );
+        }
+        checkFailure();
+    }
+
+    /**
+     * Writes everything queued so far, then stops the encoder thread (even
+     * if a failure to write is reported).
+     */
+    public void close()
+    {
+        if ( closed )
+            return;
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            closed = true;
+            thread.interrupt();
+            try
+            {
+                Runtime.getRuntime().removeShutdownHook( shutdownHook );
+            }
+            catch ( IllegalStateException e )
+            {
+                // Already shutting down.
+            }
+        }
+    }
+
+    /**
+     * Writes an image to a file right away, on the calling thread.
+     *
+     * @param image Image to write.
+     * @param imageFileName Name of the file; its extension gives the format.
+     */
+    public static void encode( BufferedImage image, String imageFileName )
+    {
+        int index = imageFileName.lastIndexOf( '.' );
+        if ( index == -1 )
+            throw new RuntimeException( "invalid image file name:  " + imageFileName );
+        try
+        {
+            ImageIO.write( image, imageFileName.substring( index + 1 ), new File( imageFileName ) );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to save image to file:  " + imageFileName );
+        }
+    }
+
+    /* Utility method: queues a job, waiting for room if the queue is full. */
+    private void submit( Runnable job )
+    {
+        if ( closed )
+            throw new RuntimeException( "frame encoder has been closed" );
+        checkFailure();
+        try
+        {
+            queue.put( job );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "interrupted while queueing a frame" );
+        }
+    }
+
+    /* Utility method: reports (once) a failure of the encoder thread. */
+    private void checkFailure()
+    {
+        RuntimeException e = failure;
+        if ( e != null )
+        {
+            failure = null;
+            throw e;
+        }
+    }
+
+    /* Body of the encoder thread: runs queued jobs until interrupted. */
+    private void encode()
+    {
+        try
+        {
+            while ( true )
+            {
+                Runnable job = queue.take();
+                try
+                {
+                    job.run();
+                }
+                catch ( RuntimeException e )
+                {
+                    if ( failure == null )
+                        failure = e;
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            // Closed.
+        }
+    }
+
+    /* Body of the shutdown hook: gives queued frames a chance to be written. */
+    private void finish()
+    {
+        CountDownLatch done = new CountDownLatch( 1 );
+        if ( queue.offer( done::countDown ) )
+        {
+            try
+            {
+                done.await( 10, TimeUnit.SECONDS );
+            }
+            catch ( InterruptedException e )
+            {
+                // Give up; the program is stopping anyway.
+            }
+        }
+    }
+}
\ No newline at end of file
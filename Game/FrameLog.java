@@ -0,0 +1,248 @@
+/**
+ * Compact recording of what a game-board showed, frame by frame, for the
+ * Scrolling Game project. Only Cells that changed since the previous
+ * recorded frame are stored (as the gap from the last changed Cell, then
+ * its new sprite and/or color), so a long session takes little space and
+ * can be played back onto any board of the same size with readFrame().
+ *
+ * Files hold a magic number, a version and the board size, then one record
+ * per frame: its frame number, any image-file names used for the first
+ * time, and the changed Cells (written by a CellCodec, as GameServer sends
+ * them). Numbers are written in a variable-length form (7 bits per byte),
+ * as most are small.
+ */
+import java.io.*;
+
+public class FrameLog
+{
+    // "GFRM": start of every frame log.
+    private static final int MAGIC = 0x4746524d;
+    private static final int VERSION = 1;
+
+    private final String fileName;
+    private final int numRows;
+    private final int numCols;
+    private DataOutputStream out;
+    private DataInputStream in;
+    // Cells as of the last frame written.
+    private final CellCodec cells;
+    // Names for the sprite ids used in the log, in order (index 0 unused).
+    private String[] names;
+    private int namesUsed;
+    // Sprite ids on the board being played back to, by id in the log.
+    private int[] boardIds;
+    private int frames;
+
+    /* Creates a log with no stream open yet. */
+    private FrameLog( String fileName, int numRows, int numCols )
+    {
+        if ( numRows < 1 || numCols < 1 )
+            throw new RuntimeException( "invalid board size:  " + numRows + " x " + numCols );
+        this.fileName = fileName;
+        this.numRows = numRows;
+        this.numCols = numCols;
+        cells = new CellCodec( numRows, numCols );
+        names = new String[SpriteTable.MAX_SPRITES + 1];
+        namesUsed = 1;
+        boardIds = new int[SpriteTable.MAX_SPRITES + 1];
+        frames = 0;
+    }
+
+    /**
+     * Creates a new log file to record frames into.
+     *
+     * @param fileName Name of file to write.
+     * @param numRows Number of rows in board.
+     * @param numCols Number of columns in board.
+     *
+     * @return Log to append() frames to.
+     */
+    public static FrameLog create( String fileName, int numRows, int numCols )
+    {
+        FrameLog log = new FrameLog( fileName, numRows, numCols );
+        try
+        {
+            log.out = new DataOutputStream(
+                new BufferedOutputStream( new FileOutputStream( fileName ), 1 << 16 ) );
+            log.out.writeInt( MAGIC );
+            log.out.writeInt( VERSION );
+            log.out.writeInt( numRows );
+            log.out.writeInt( numCols );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to create frame log:  " + fileName );
+        }
+        return log;
+    }
+
+    /**
+     * Opens a log written by create() and append(), to play it back.
+     *
+     * @param fileName Name of file to read.
+     *
+     * @return Log to readFrame() from.
+     */
+    public static FrameLog open( String fileName )
+    {
+        try
+        {
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream( new FileInputStream( fileName ), 1 << 16 ) );
+            if ( in.readInt() != MAGIC )
+            {
+                in.close();
+                throw new RuntimeException( "not a frame log:  " + fileName );
+            }
+            int version = in.readInt();
+            if ( version != VERSION )
+            {
+                in.close();
+                throw new RuntimeException( "unsupported frame log version " + version + ":  " +
+                                           fileName );
+            }
+            FrameLog log = new FrameLog( fileName, in.readInt(), in.readInt() );
+            log.in = in;
+            return log;
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to read frame log from file:  " + fileName );
+        }
+    }
+
+    /**
+     * @return Number of rows in the recorded board.
+     */
+    public int getNumRows()
+    {
+        return numRows;
+    }
+
+    /**
+     * @return Number of columns in the recorded board.
+     */
+    public int getNumCols()
+    {
+        return numCols;
+    }
+
+    /**
+     * @return Number of frames written or read so far.
+     */
+    public int getFrameCount()
+    {
+        return frames;
+    }
+
+    /**
+     * Adds a frame to the log: the Cells of the snapshot that differ from the
+     * previous frame appended. The snapshot's sequence number is stored as
+     * the frame number.
+     *
+     * @param snapshot Board as shown in this frame.
+     */
+    public void append( BoardSnapshot snapshot )
+    {
+        if ( out == null )
+            throw new RuntimeException( "frame log is not open for writing:  " + fileName );
+        if ( snapshot.getNumRows() != numRows || snapshot.getNumCols() != numCols )
+            throw new RuntimeException( "snapshot does not match size of frame log:  " + fileName );
+        try
+        {
+            CellCodec.writeNumber( out, snapshot.getSequence() );
+
+            // Image-file names used for the first time in this frame.
+            int firstNew = namesUsed;
+            for ( int row = 0; row < numRows; row++ )
+            {
+                for ( int col = 0; col < numCols; col++ )
+                {
+                    int sprite = snapshot.getSprite( row, col );
+                    while ( sprite >= namesUsed )
+                    {
+                        names[namesUsed] = snapshot.getName( namesUsed );
+                        namesUsed++;
+                    }
+                }
+            }
+            CellCodec.writeNumber( out, namesUsed - firstNew );
+            for ( int id = firstNew; id < namesUsed; id++ )
+                out.writeUTF( names[id] == null ? "" : names[id] );
+
+            cells.writeChanges( out, snapshot, null );
+            frames++;
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to write to frame log:  " + fileName );
+        }
+    }
+
+    /**
+     * Plays back the next frame: makes the changes it recorded to a board.
+     * The board should start out as a new board of the same size (or as
+     * left by the previous call).
+     *
+     * @param board Board to change.
+     *
+     * @return Frame number of the frame read, or -1 at the end of the log.
+     */
+    public long readFrame( Board board )
+    {
+        if ( in == null )
+            throw new RuntimeException( "frame log is not open for reading:  " + fileName );
+        try
+        {
+            long frame;
+            try
+            {
+                frame = CellCodec.readNumber( in );
+            }
+            catch ( EOFException e )
+            {
+                return -1;
+            }
+
+            int newNames = (int) CellCodec.readNumber( in );
+            for ( int i = 0; i < newNames; i++ )
+            {
+                String name = in.readUTF();
+                names[namesUsed] = name.isEmpty() ? null : name;
+                boardIds[namesUsed] = board.getSpriteTable().getId( names[namesUsed] );
+                namesUsed++;
+            }
+
+            CellCodec.readChanges( in, board, boardIds );
+            frames++;
+            return frame;
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "corrupt frame log:  " + fileName );
+        }
+    }
+
+    /**
+     * Finishes writing (or reading) the log and closes its file.
+     */
+    public void close()
+    {
+        try
+        {
+            if ( out != null )
+                out.close();
+            if ( in != null )
+                in.close();
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to close frame log:  " + fileName );
+        }
+        finally
+        {
+            out = null;
+            in = null;
+        }
+    }
+}
\ No newline at end of file
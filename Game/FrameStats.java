@@ -0,0 +1,144 @@
+/**
+ * Histogram of frame (or step) times for the Scrolling Game project.
+ * Times are recorded in nanoseconds into buckets that grow with the value
+ * (16 buckets for each power of two, so within about 6%), which keeps
+ * recording cheap and lets percentiles be asked for at any time, from any
+ * thread, while the game is running.
+ */
+public class FrameStats
+{
+    // Buckets per power of two (as a number of bits).
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = ( 64 - SUB_BITS ) * SUB_COUNT;
+
+    private final String name;
+    private final long[] counts;
+    private long count;
+    private long total;
+    private long max;
+
+    /**
+     * Basic constructor; creates an empty histogram.
+     *
+     * @param name Name shown when the statistics are printed.
+     */
+    public FrameStats( String name )
+    {
+        this.name = name;
+        counts = new long[BUCKETS];
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    /**
+     * Records one time.
+     *
+     * @param nanos Time taken, in nanoseconds (negative times count as 0).
+     */
+    public synchronized void record( long nanos )
+    {
+        if ( nanos < 0 )
+            nanos = 0;
+        counts[bucket( nanos )]++;
+        count++;
+        total += nanos;
+        if ( nanos > max )
+            max = nanos;
+    }
+
+    /**
+     * @return Number of times recorded.
+     */
+    public synchronized long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return Average of times recorded, in nanoseconds (0 if none).
+     */
+    public synchronized double getMean()
+    {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * @return Largest time recorded, in nanoseconds.
+     */
+    public synchronized long getMax()
+    {
+        return max;
+    }
+
+    /**
+     * Returns (approximately) the time that the given percentage of recorded
+     * times did not exceed; for instance getPercentile( 99 ) is the 99th
+     * percentile.
+     *
+     * @param percent Percentage, from 0 to 100.
+     *
+     * @return Time at that percentile, in nanoseconds (0 if none recorded).
+     */
+    public synchronized long getPercentile( double percent )
+    {
+        if ( percent < 0 || percent > 100 )
+            throw new RuntimeException( "invalid percentile:  " + percent );
+        if ( count == 0 )
+            return 0;
+
+        long target = Math.max( 1, (long) Math.ceil( percent / 100 * count ) );
+        long seen = 0;
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            seen += counts[i];
+            if ( seen >= target )
+                return Math.min( lowestValue( i + 1 ) - 1, max );
+        }
+        return max;
+    }
+
+    /**
+     * Forgets all recorded times.
+     */
+    public synchronized void reset()
+    {
+        java.util.Arrays.fill( counts, 0 );
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    /**
+     * @return One-line summary, with times in milliseconds.
+     */
+    public synchronized String toString()
+    {
+        return String.format( "%s: n=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms",
+                              name, count, getMean() / 1e6, getPercentile( 50 ) / 1e6,
+                              getPercentile( 90 ) / 1e6, getPercentile( 99 ) / 1e6, max / 1e6 );
+    }
+
+    /* Utility method: index of bucket holding a (non-negative) value. */
+    private static int bucket( long value )
+    {
+        if ( value < SUB_COUNT )
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros( value );
+        int sub = (int) ( value >>> ( exponent - SUB_BITS ) ) & ( SUB_COUNT - 1 );
+        return ( exponent - SUB_BITS + 1 ) * SUB_COUNT + sub;
+    }
+
+    /* Utility method: smallest value held in a given bucket. */
+    private static long lowestValue( int bucket )
+    {
+        if ( bucket < SUB_COUNT )
+            return bucket;
+        int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+        if ( exponent >= 63 )
+            return Long.MAX_VALUE;
+        long sub = bucket % SUB_COUNT;
+        return ( SUB_COUNT + sub ) << ( exponent - SUB_BITS );
+    }
+}
\ No newline at end of file
@@ -6,72 +6,138 @@
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 public class Game extends AbstractGame implements KeyListener {
+    //chances (out of 10) that a new object is an "avoid" or a "get" image
+    protected int avoidOdds = 4;
+    protected int getOdds = 2;
+    //number of "avoid" hits that ends the game
+    protected int maxTimesAvoid = 3;
+    //count hits on the "get" and "avoid" images, registered for the image names below
+    private final CollisionListener getListener = (row, col, sprite) -> timesGet++;
+    private final CollisionListener avoidListener = (row, col, sprite) -> timesAvoid++;
+    private String listenedGetImg, listenedAvoidImg;
     //main method
+    //use "-record file" to save the game's input, or "-replay file" to replay it with no window
+    //use "-world seed" to play in an endless world made ahead of time from the seed
+    //use "-scores file" to keep every game's score in a file and show the best ones
     public static void main(String[] args) {
+        if(args.length == 2 && args[0].equals("-replay")) {
+            InputLog log = InputLog.load(args[1]);
+            Game game = new Game(new HeadlessBoard(log.getNumRows(), log.getNumCols()));
+            long steps = game.replay(log);
+            System.out.println("Replayed " + steps + " steps, score " + game.getScore());
+            return;
+        }
         Game game = new Game();
-        game.play();
+        if(args.length == 2 && args[0].equals("-world")) {
+            game.setWorld(game.createWorld(Long.parseLong(args[1])));
+            game.play();
+        } else if(args.length == 2 && args[0].equals("-record")) {
+            game.startRecording();
+            game.play();
+            game.getInputLog().save(args[1]);
+        } else if(args.length == 2 && args[0].equals("-scores")) {
+            ScoreStore store = new ScoreStore(args[1]);
+            game.setScoreStore(store);
+            game.play();
+            store.close();
+            System.out.printf("Score %d beats %.1f%% of %d games; best:%n", game.getScore(),
+                              store.getPercentBelow(game.getScore()), store.getCount());
+            for(SessionRecord session : store.getTop(5)) {
+                System.out.println("  " + session);
+            }
+        } else {
+            game.play();
+        }
     }
     //constructor
     public Game() {
         super(10, 15);
-        grid.addKeyListener(this);
+        board.addKeyListener(this);
+        listenForCollisions();
+    }
+    //constructor for a game played on a given board (e.g. a HeadlessBoard)
+    public Game(Board board) {
+        super(board);
+        board.addKeyListener(this);
+        listenForCollisions();
+    }
+    //counts hits on the "get" and "avoid" images as the board reports them,
+    //listening again if a subclass has since changed getImg or avoidImg
+    private void listenForCollisions() {
+        if(getImg == listenedGetImg && avoidImg == listenedAvoidImg) {
+            return;
+        }
+        CollisionIndex collisions = board.getCollisionIndex();
+        SpriteTable sprites = board.getSpriteTable();
+        if(listenedGetImg != null) {
+            collisions.removeListener(sprites.getId(listenedGetImg), getListener);
+        }
+        if(listenedAvoidImg != null) {
+            collisions.removeListener(sprites.getId(listenedAvoidImg), avoidListener);
+        }
+        if(getImg != null) {
+            collisions.addListener(sprites.getId(getImg), getListener);
+        }
+        if(avoidImg != null) {
+            collisions.addListener(sprites.getId(avoidImg), avoidListener);
+        }
+        listenedGetImg = getImg;
+        listenedAvoidImg = avoidImg;
     }
     //moves the image up or down depending on the direction
     public void move() {
         if(direction == 1) {
-            if(userRow < grid.getNumRows() - 1) {
+            if(userRow < board.getNumRows() - 1) {
                 userRow++;
-                handleCollision(userRow, 1);
+                checkCollision(userRow, 1);
             }
         } else if(direction == -1) {
             if(userRow > 0) {
                 userRow--;
-                handleCollision(userRow, 1);
+                checkCollision(userRow, 1);
             }
         }
     }
     //randomly spawns an object in the right edge
     public void populateRightEdge() {
-        int row = (int)(Math.random() * grid.getNumRows());
-        int obj = (int)(Math.random() * 10);
+        int row = random.nextInt(board.getNumRows());
+        int obj = random.nextInt(10);
         
-        if(obj < 4) {
-            grid.setImage(row, grid.getNumCols() - 1, avoidImg);
-        } else if(obj > 3 && obj < 6) {
-            grid.setImage(row, grid.getNumCols() - 1, getImg);
+        if(obj < avoidOdds) {
+            board.setImage(row, board.getNumCols() - 1, avoidImg);
+        } else if(obj < avoidOdds + getOdds) {
+            board.setImage(row, board.getNumCols() - 1, getImg);
         }
     }
-    //moves all images on the screen left, except for the user's character
-    public void scrollLeft() {
-        for(int i = 0; i < grid.getNumRows(); i++) {
-            for(int j = 0; j < grid.getNumCols(); j++) {
-                if(grid.getImage(i, j) == avoidImg) {
-                    if(j != 0) {
-                        grid.setImage(i, j, null);
-                        grid.setImage(i, j - 1, avoidImg);
-                    } else {
-                        grid.setImage(i, j, null);
-                    }
-                } else if(grid.getImage(i, j) == getImg) {
-                    if(j != 0) {
-                        grid.setImage(i, j, null);
-                        grid.setImage(i, j - 1, getImg);
-                    } else {
-                        grid.setImage(i, j, null);
-                    }
+    //makes an endless world with the same odds as populateRightEdge, in chunks of 16 columns
+    public ChunkedWorld createWorld(long seed) {
+        SpriteTable sprites = board.getSpriteTable();
+        int avoid = sprites.getId(avoidImg);
+        int get = sprites.getId(getImg);
+        int avoidChance = avoidOdds;
+        int getChance = getOdds;
+        return new ChunkedWorld(board.getNumRows(), 16, 4, seed, (chunk, rand) -> {
+            for(int col = 0; col < chunk.getNumCols(); col++) {
+                int row = rand.nextInt(chunk.getNumRows());
+                int obj = rand.nextInt(10);
+                
+                if(obj < avoidChance) {
+                    chunk.setSprite(row, col, avoid);
+                } else if(obj < avoidChance + getChance) {
+                    chunk.setSprite(row, col, get);
                 }
             }
-        }
-        
-        handleCollision(userRow, 1);
+        });
+    }
+    //moves all images on the screen left, except for the user's character
+    public void scrollLeft() {
+        scrollBoard();
+        checkCollision(userRow, 1);
     }
     //determines what happens when the user collides with the "avoid" or "get" images
     public void handleCollision(int row, int col) {
-        if(grid.getImage(row, col) == getImg) {
-            timesGet++;
-        } else if(grid.getImage(row, col) == avoidImg) {
-            timesAvoid++;
-        }
+        listenForCollisions();
+        board.getCollisionIndex().check(row, col);
     }
     //returns the score
     public int getScore() {
@@ -79,20 +145,20 @@ public class Game extends AbstractGame implements KeyListener {
     }
     //ends the game when certain criteria are met
     public boolean isGameOver() {
-        if(timesAvoid == 3) {
+        if(timesAvoid >= maxTimesAvoid) {
             return true;
         } else {
             return false;
         }
     }
-    //sets the direction based on keyboard input from the user
+    //queues the direction based on keyboard input from the user (called on the GUI thread)
     public void keyPressed(KeyEvent e) {
         int key = e.getKeyCode();
         
         if(key == KeyEvent.VK_UP) {
-            direction = UP;
+            queueDirection(UP);
         } else if(key == KeyEvent.VK_DOWN) {
-            direction = DOWN;
+            queueDirection(DOWN);
         }
     }
     //blank method
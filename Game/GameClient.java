@@ -0,0 +1,425 @@
+/**
+ * Thin client for a game run by a GameServer, for the Scrolling Game
+ * project. It runs no game of its own: it shows on a local board the frames
+ * the server sends (see DeltaEncoder), each as one batch of changes, and
+ * sends the player's moves back, one byte each.
+ *
+ * Run from the command line as:
+ * java GameClient [host [port]]
+ */
+import java.awt.event.*;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.*;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class GameClient
+{
+    private final SocketChannel channel;
+    private final int playerId;
+    private final int numRows;
+    private final int numCols;
+    private ByteBuffer input;
+    private final ByteBuffer move;
+
+    private Board board;
+    private Thread reader;
+    // Sprite id on the local board of each sprite id sent by the server, and
+    // the number of ids the server has named so far.
+    private final int[] boardIds;
+    private int namesKnown;
+    // Row, objects got, objects hit and status of each player, by number.
+    private final Map<Integer, int[]> players;
+    // Last tick shown (guarded by this).
+    private long tick;
+    private volatile boolean closed;
+
+    /**
+     * Connects to a server and waits to be let into its game; fails if the
+     * game is full.
+     *
+     * @param host Name or address of server.
+     * @param port Port server is listening on.
+     */
+    public GameClient( String host, int port )
+    {
+        try
+        {
+            channel = SocketChannel.open( new InetSocketAddress( host, port ) );
+            channel.socket().setTcpNoDelay( true );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to connect to " + host + ":" + port + ":  " +
+                                       e.getMessage() );
+        }
+        input = ByteBuffer.allocate( 4096 );
+        input.flip();
+        move = ByteBuffer.allocate( 1 );
+        boardIds = new int[SpriteTable.MAX_SPRITES + 1];
+        namesKnown = 1;
+        players = new HashMap<Integer, int[]>();
+        tick = 0;
+        closed = false;
+
+        ByteBuffer message = readMessage();
+        byte type = message == null ? 0 : message.get();
+        if ( type != DeltaEncoder.WELCOME )
+        {
+            close();
+            if ( type == DeltaEncoder.FULL )
+                throw new RuntimeException( "game is full:  " + host + ":" + port );
+            throw new RuntimeException( "not a game server:  " + host + ":" + port );
+        }
+        try
+        {
+            DataInput welcome = reader( message );
+            int version = (int) CellCodec.readNumber( welcome );
+            if ( version != DeltaEncoder.VERSION )
+                throw new RuntimeException( "unsupported server version " + version );
+            playerId = (int) CellCodec.readNumber( welcome );
+            numRows = (int) CellCodec.readNumber( welcome );
+            numCols = (int) CellCodec.readNumber( welcome );
+        }
+        catch ( IOException e )
+        {
+            close();
+            throw new RuntimeException( "corrupt message from server" );
+        }
+    }
+
+    /**
+     * @return Number of rows in the server's board.
+     */
+    public int getNumRows()
+    {
+        return numRows;
+    }
+
+    /**
+     * @return Number of columns in the server's board.
+     */
+    public int getNumCols()
+    {
+        return numCols;
+    }
+
+    /**
+     * @return Number of this client's player.
+     */
+    public int getPlayerId()
+    {
+        return playerId;
+    }
+
+    /**
+     * Starts showing the game: a thread reads frames from the server and
+     * makes their changes to the board until the connection closes.
+     *
+     * @param board Board of getNumRows() by getNumCols() Cells to show the
+     *            game on.
+     */
+    public void start( Board board )
+    {
+        if ( board.getNumRows() != numRows || board.getNumCols() != numCols )
+            throw new RuntimeException( "board is not " + numRows + " x " + numCols );
+        this.board = board;
+        reader = new Thread( this::runReader, "game-client" );
+        reader.setDaemon( true );
+        reader.start();
+    }
+
+    /**
+     * Sends a move to the server, to be made in the next tick with no move
+     * yet (moves are made one per tick, in order).
+     *
+     * @param direction AbstractGame.UP or AbstractGame.DOWN.
+     */
+    public void sendDirection( int direction )
+    {
+        synchronized ( move )
+        {
+            move.clear();
+            move.put( (byte) direction );
+            move.flip();
+            try
+            {
+                while ( move.hasRemaining() )
+                    channel.write( move );
+            }
+            catch ( IOException e )
+            {
+                close();
+            }
+        }
+    }
+
+    /**
+     * @return Number of the last tick shown (0 if none yet).
+     */
+    public synchronized long getTick()
+    {
+        return tick;
+    }
+
+    /**
+     * Waits until a given tick has been shown.
+     *
+     * @param tick Number of tick.
+     * @param timeoutMillis Most time to wait, in milliseconds.
+     *
+     * @return true if the tick was shown, false if time ran out or the
+     *         connection closed first.
+     */
+    public synchronized boolean waitForTick( long tick, long timeoutMillis )
+    {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while ( this.tick < tick && !closed )
+        {
+            long wait = deadline - System.currentTimeMillis();
+            if ( wait <= 0 )
+                return false;
+            try
+            {
+                wait( wait );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return this.tick >= tick;
+    }
+
+    /**
+     * @return Number of objects to get this client's player has got.
+     */
+    public synchronized int getTimesGet()
+    {
+        int[] player = players.get( playerId );
+        return player == null ? 0 : player[1];
+    }
+
+    /**
+     * @return Number of objects to avoid this client's player has hit.
+     */
+    public synchronized int getTimesAvoid()
+    {
+        int[] player = players.get( playerId );
+        return player == null ? 0 : player[2];
+    }
+
+    /**
+     * @return true if this client's player is out of the game.
+     */
+    public synchronized boolean isOut()
+    {
+        int[] player = players.get( playerId );
+        return player != null && ( player[3] & DeltaEncoder.PLAYER_OUT ) != 0;
+    }
+
+    /**
+     * @return Number of players in the game.
+     */
+    public synchronized int getPlayerCount()
+    {
+        return players.size();
+    }
+
+    /**
+     * Leaves the game, closing the connection.
+     */
+    public void close()
+    {
+        closed = true;
+        try
+        {
+            channel.close();
+        }
+        catch ( IOException e )
+        {
+            // Closed either way.
+        }
+        synchronized ( this )
+        {
+            notifyAll();
+        }
+    }
+
+    /* Utility method: body of the reader thread. */
+    private void runReader()
+    {
+        try
+        {
+            ByteBuffer message;
+            while ( !closed && ( message = readMessage() ) != null )
+                apply( message );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "corrupt message from server" );
+        }
+        finally
+        {
+            close();
+        }
+    }
+
+    /* Utility method: shows one frame or keyframe on the board. */
+    private void apply( ByteBuffer message ) throws IOException
+    {
+        DataInput in = reader( message );
+        byte type = in.readByte();
+        if ( type != DeltaEncoder.FRAME && type != DeltaEncoder.KEYFRAME )
+            throw new RuntimeException( "unexpected message from server:  " + type );
+        boolean key = type == DeltaEncoder.KEYFRAME;
+        long frame = CellCodec.readNumber( in );
+
+        board.beginUpdate();
+        try
+        {
+            // Names sent with a keyframe start again from the first sprite id.
+            int newNames = (int) CellCodec.readNumber( in );
+            int id = key ? 1 : namesKnown;
+            for ( int i = 0; i < newNames; i++, id++ )
+            {
+                byte[] name = new byte[(int) CellCodec.readNumber( in )];
+                in.readFully( name );
+                boardIds[id] = board.getSpriteTable().getId( new String( name,
+                                                                         StandardCharsets.UTF_8 ) );
+            }
+            namesKnown = id;
+
+            if ( key )
+            {
+                for ( int row = 0; row < numRows; row++ )
+                {
+                    for ( int col = 0; col < numCols; col++ )
+                    {
+                        board.setSprite( row, col, SpriteTable.NONE );
+                        board.setRGB( row, col, BoardPlanes.BLACK );
+                    }
+                }
+            }
+            CellCodec.readChanges( in, board, boardIds );
+        }
+        finally
+        {
+            board.commitUpdate();
+        }
+
+        synchronized ( this )
+        {
+            if ( key )
+                players.clear();
+            int count = (int) CellCodec.readNumber( in );
+            for ( int i = 0; i < count; i++ )
+            {
+                int id = (int) CellCodec.readNumber( in );
+                int status = (int) CellCodec.readNumber( in );
+                int[] player = { (int) CellCodec.readNumber( in ), (int) CellCodec.readNumber( in ),
+                                 (int) CellCodec.readNumber( in ), status };
+                if ( ( status & DeltaEncoder.PLAYER_GONE ) != 0 )
+                    players.remove( id );
+                else
+                    players.put( id, player );
+            }
+            tick = frame;
+            notifyAll();
+        }
+        board.setTitle( "Player " + playerId + "  |  Score:  " + getTimesGet() + "  |  Hits:  " +
+                        getTimesAvoid() + ( isOut() ? " (out)" : "" ) + "  |  Players:  " +
+                        getPlayerCount() );
+    }
+
+    /* Utility method: reads the contents of a message (after its type, if read). */
+    private static DataInput reader( ByteBuffer message )
+    {
+        return new DataInputStream( new ByteArrayInputStream( message.array(),
+                                                              message.arrayOffset() +
+                                                                  message.position(),
+                                                              message.remaining() ) );
+    }
+
+    /*
+     * Utility method: reads one whole message (without its length), or
+     * returns null if the connection closed.
+     */
+    private ByteBuffer readMessage()
+    {
+        try
+        {
+            if ( !fill( 4 ) )
+                return null;
+            int length = input.getInt();
+            if ( length < 1 )
+                throw new RuntimeException( "corrupt message from server" );
+            if ( length > input.capacity() )
+            {
+                ByteBuffer bigger = ByteBuffer.allocate( Math.max( length, input.capacity() * 2 ) );
+                bigger.put( input );
+                bigger.flip();
+                input = bigger;
+            }
+            if ( !fill( length ) )
+                return null;
+            ByteBuffer message = input.slice();
+            message.limit( length );
+            input.position( input.position() + length );
+            return message;
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+    }
+
+    /*
+     * Utility method: reads until at least bytes bytes are waiting in input;
+     * returns false if the connection closed first.
+     */
+    private boolean fill( int bytes ) throws IOException
+    {
+        if ( input.remaining() >= bytes )
+            return true;
+        input.compact();
+        while ( input.position() < bytes )
+        {
+            if ( channel.read( input ) < 0 )
+            {
+                input.flip();
+                return false;
+            }
+        }
+        input.flip();
+        return true;
+    }
+
+    /**
+     * Joins a game from the command line, in a window of its own; the up
+     * and down arrow keys move.
+     *
+     * @param args [host [port]]
+     */
+    public static void main( String[] args )
+    {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt( args[1] ) : GameServer.DEFAULT_PORT;
+        GameClient client = new GameClient( host, port );
+        Grid grid = new Grid( client.getNumRows(), client.getNumCols() );
+        grid.addKeyListener( new KeyAdapter()
+        {
+            public void keyPressed( KeyEvent e )
+            {
+                if ( e.getKeyCode() == KeyEvent.VK_UP )
+                    client.sendDirection( AbstractGame.UP );
+                else if ( e.getKeyCode() == KeyEvent.VK_DOWN )
+                    client.sendDirection( AbstractGame.DOWN );
+            }
+        } );
+        client.start( grid );
+    }
+}
\ No newline at end of file
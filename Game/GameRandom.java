@@ -0,0 +1,117 @@
+/**
+ * Random-number generator for the Scrolling Game project. Each game owns its
+ * own generator (so games running side by side never share or lock one), and
+ * all of its state is a single long that can be read and set, so a game can
+ * be started again from a known seed and play out exactly the same way.
+ * Uses the SplitMix64 algorithm (as java.util.SplittableRandom does).
+ * Descendants may override nextLong() to plug in a different algorithm.
+ */
+import java.util.concurrent.atomic.AtomicLong;
+
+public class GameRandom
+{
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    // Source of seeds for generators created without one.
+    private static final AtomicLong SEEDS = new AtomicLong( System.nanoTime() );
+
+    private long state;
+
+    /**
+     * Basic constructor; creates a generator with a seed that differs from
+     * run to run.
+     */
+    public GameRandom()
+    {
+        this( mix64( SEEDS.getAndAdd( GOLDEN_GAMMA ) ^ System.nanoTime() ) );
+    }
+
+    /**
+     * Creates a generator starting from a given seed; generators with the
+     * same seed produce the same numbers.
+     *
+     * @param seed Initial state of generator.
+     */
+    public GameRandom( long seed )
+    {
+        state = seed;
+    }
+
+    /**
+     * @return Current state of generator; a generator given this state with
+     *         setState() produces the same numbers from then on.
+     */
+    public long getState()
+    {
+        return state;
+    }
+
+    /**
+     * Sets state of generator (for instance, to a seed or to a value returned
+     * by getState()).
+     *
+     * @param state New state of generator.
+     */
+    public void setState( long state )
+    {
+        this.state = state;
+    }
+
+    /**
+     * @return Next random long (any value equally likely).
+     */
+    public long nextLong()
+    {
+        state += GOLDEN_GAMMA;
+        return mix64( state );
+    }
+
+    /**
+     * Returns a random int from 0 up to (but not including) bound, with
+     * every value equally likely.
+     *
+     * @param bound Number of possible values (must be positive).
+     *
+     * @return Random int in [0, bound).
+     */
+    public int nextInt( int bound )
+    {
+        if ( bound <= 0 )
+            throw new RuntimeException( "bound must be positive:  " + bound );
+        int r = (int) ( nextLong() >>> 33 );
+        int m = bound - 1;
+        if ( ( bound & m ) == 0 )
+            return r & m;
+        // Reject the few values that would make low results more likely.
+        for ( int u = r; u - ( r = u % bound ) + m < 0; u = (int) ( nextLong() >>> 33 ) )
+            ;
+        return r;
+    }
+
+    /**
+     * @return Random double in [0, 1).
+     */
+    public double nextDouble()
+    {
+        return ( nextLong() >>> 11 ) * 0x1.0p-53;
+    }
+
+    /**
+     * Creates a new, independent generator seeded from this one; useful for
+     * handing separate generators to games run side by side.
+     *
+     * @return New generator.
+     */
+    public GameRandom split()
+    {
+        return new GameRandom( mix64( nextLong() ) );
+    }
+
+    /* Utility method: SplitMix64 output function. */
+    private static long mix64( long z )
+    {
+        z = ( z ^ ( z >>> 30 ) ) * 0xbf58476d1ce4e5b9L;
+        z = ( z ^ ( z >>> 27 ) ) * 0x94d049bb133111ebL;
+        return z ^ ( z >>> 31 );
+    }
+}
\ No newline at end of file
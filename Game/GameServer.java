@@ -0,0 +1,454 @@
+/**
+ * Runs a MultiplayerGame for players connected over the network, for the
+ * Scrolling Game project. The server is the only one to run the game: each
+ * tick it takes one queued move per player, steps the game, and sends every
+ * client a frame of only what changed (see DeltaEncoder); clients just show
+ * what they are sent (see GameClient).
+ *
+ * However many clients connect, the server uses two threads: one steps the
+ * game at its update rate and encodes each frame once, for all clients, and
+ * the other does all the network input and output, through one Selector
+ * and non-blocking channels. A client whose frames back up past
+ * MAX_PENDING bytes (a slow or stalled connection) has them dropped, and is
+ * sent a keyframe to start again from. A client that connects while every
+ * row of the board has a player is turned away.
+ *
+ * Run from the command line as:
+ * java GameServer [port [rows cols]]
+ */
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+
+public class GameServer
+{
+    // Most bytes of frames waiting to go to one client before they are dropped.
+    public static final int MAX_PENDING = 1 << 20;
+    // Port the server listens on by default.
+    public static final int DEFAULT_PORT = 7341;
+
+    private final MultiplayerGame game;
+    private final int maxPending;
+    private final DeltaEncoder encoder;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread io;
+    private Thread ticker;
+    private volatile boolean running;
+    private long tick;
+    // Frames dropped for clients too far behind (only touched by the game thread).
+    private long framesDropped;
+
+    // Clients that have connected or gone since the last tick, handed from
+    // the network thread to the game thread.
+    private final Queue<Connection> joining;
+    private final Queue<Connection> leaving;
+    // Clients in the game (only touched by the game thread).
+    private final List<Connection> connections;
+    // Set when a tick has queued frames for the network thread to send.
+    private final AtomicBoolean framesQueued;
+
+    /**
+     * Starts listening for clients; the game only starts once start() is
+     * called (or as tick() is called).
+     *
+     * @param game Game to run (with no players yet).
+     * @param port Port to listen on (0 for any free port; see getPort()).
+     */
+    public GameServer( MultiplayerGame game, int port )
+    {
+        this( game, port, MAX_PENDING );
+    }
+
+    /*
+     * Starts listening for clients, dropping frames for a client once more
+     * than maxPending bytes of them are waiting (so that tests can stall a
+     * client without filling megabytes of socket buffers).
+     */
+    GameServer( MultiplayerGame game, int port, int maxPending )
+    {
+        this.game = game;
+        this.maxPending = maxPending;
+        encoder = new DeltaEncoder( game.board );
+        joining = new ConcurrentLinkedQueue<Connection>();
+        leaving = new ConcurrentLinkedQueue<Connection>();
+        connections = new ArrayList<Connection>();
+        framesQueued = new AtomicBoolean();
+        tick = 0;
+        framesDropped = 0;
+        try
+        {
+            server = ServerSocketChannel.open();
+            server.bind( new InetSocketAddress( port ) );
+            server.configureBlocking( false );
+            selector = Selector.open();
+            server.register( selector, SelectionKey.OP_ACCEPT );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to listen on port " + port + ":  " + e.getMessage() );
+        }
+        running = true;
+        io = new Thread( this::runNetwork, "game-server-io" );
+        io.setDaemon( true );
+        io.start();
+    }
+
+    /**
+     * @return Port the server is listening on.
+     */
+    public int getPort()
+    {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * @return Game being run.
+     */
+    public MultiplayerGame getGame()
+    {
+        return game;
+    }
+
+    /**
+     * @return Number of ticks run so far.
+     */
+    public long getTick()
+    {
+        return tick;
+    }
+
+    /*
+     * Number of frames dropped so far for clients too far behind; read by
+     * the thread that calls tick().
+     */
+    long getFramesDropped()
+    {
+        return framesDropped;
+    }
+
+    /**
+     * Starts a thread that runs tick() at the game's update rate until
+     * close() is called.
+     */
+    public void start()
+    {
+        if ( ticker != null )
+            throw new RuntimeException( "server already started" );
+        ticker = new Thread( this::runTicks, "game-server-tick" );
+        ticker.start();
+    }
+
+    /**
+     * Runs one tick: lets in clients that have connected and takes out those
+     * that have gone, steps the game, and queues a frame for every client.
+     * Called by the thread started by start(), or instead of it (for
+     * instance by tests, to step the game one tick at a time).
+     */
+    public void tick()
+    {
+        Connection connection;
+        while ( ( connection = leaving.poll() ) != null )
+        {
+            if ( connection.player != null )
+                game.removePlayer( connection.player );
+            connections.remove( connection );
+        }
+        while ( ( connection = joining.poll() ) != null )
+        {
+            if ( connection.closed )
+                continue;
+            if ( game.isFull() )
+            {
+                // Sent nothing else; the client hangs up once it has read this.
+                connection.send( encoder.encodeFull() );
+                continue;
+            }
+            connection.player = game.addPlayer();
+            connection.send( encoder.encodeWelcome( connection.player.getId() ) );
+            connection.needsKeyframe = true;
+            connections.add( connection );
+        }
+
+        game.step();
+        tick++;
+
+        List<MultiplayerGame.Player> players = game.getPlayers();
+        ByteBuffer frame = encoder.encodeFrame( tick, players );
+        ByteBuffer keyframe = null;
+        for ( Connection client : connections )
+        {
+            if ( client.pending.get() > maxPending )
+            {
+                // Too far behind to catch up frame by frame.
+                framesDropped += client.drop();
+                client.needsKeyframe = true;
+            }
+            if ( client.needsKeyframe )
+            {
+                if ( keyframe == null )
+                    keyframe = encoder.encodeKeyframe( tick, players );
+                client.send( keyframe.duplicate() );
+                client.needsKeyframe = false;
+            }
+            else
+                client.send( frame.duplicate() );
+        }
+        framesQueued.set( true );
+        selector.wakeup();
+    }
+
+    /**
+     * Stops the game and disconnects every client.
+     */
+    public void close()
+    {
+        running = false;
+        selector.wakeup();
+        try
+        {
+            if ( ticker != null && ticker != Thread.currentThread() )
+                ticker.join();
+            io.join();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        try
+        {
+            for ( SelectionKey key : selector.keys() )
+                key.channel().close();
+            selector.close();
+        }
+        catch ( IOException e )
+        {
+            // Closing anyway.
+        }
+    }
+
+    /* Utility method: body of the game thread, stepping at a fixed rate. */
+    private void runTicks()
+    {
+        long tickNanos = (long) ( 1e9 / game.getUpdateRate() );
+        long next = System.nanoTime();
+        while ( running )
+        {
+            tick();
+            next += tickNanos;
+            long wait = next - System.nanoTime();
+            if ( wait > 0 )
+                LockSupport.parkNanos( wait );
+            else if ( wait < -tickNanos * AbstractGame.MAX_CATCH_UP_STEPS )
+                next = System.nanoTime();
+        }
+    }
+
+    /* Utility method: body of the network thread. */
+    private void runNetwork()
+    {
+        while ( running )
+        {
+            try
+            {
+                selector.select();
+            }
+            catch ( IOException e )
+            {
+                throw new RuntimeException( "network failure:  " + e.getMessage() );
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while ( keys.hasNext() )
+            {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if ( !key.isValid() )
+                    continue;
+                if ( key.isAcceptable() )
+                    accept();
+                else
+                {
+                    Connection connection = (Connection) key.attachment();
+                    if ( key.isReadable() )
+                        connection.read();
+                    if ( key.isValid() && key.isWritable() )
+                        connection.write();
+                }
+            }
+            if ( framesQueued.getAndSet( false ) )
+            {
+                for ( SelectionKey key : selector.keys() )
+                {
+                    if ( key.isValid() && key.attachment() != null )
+                        ( (Connection) key.attachment() ).write();
+                }
+            }
+        }
+    }
+
+    /* Utility method: takes in a new client (on the network thread). */
+    private void accept()
+    {
+        try
+        {
+            SocketChannel channel = server.accept();
+            if ( channel == null )
+                return;
+            channel.configureBlocking( false );
+            channel.socket().setTcpNoDelay( true );
+            Connection connection = new Connection( channel );
+            connection.key = channel.register( selector, SelectionKey.OP_READ, connection );
+            joining.add( connection );
+        }
+        catch ( IOException e )
+        {
+            // The client has gone already; nothing to clean up.
+        }
+    }
+
+    /*
+     * One client. Frames are queued by the game thread and written, and
+     * moves read, by the network thread.
+     */
+    private class Connection
+    {
+        final SocketChannel channel;
+        SelectionKey key;
+        final ByteBuffer input;
+        final Queue<ByteBuffer> output;
+        // Frame being written, and bytes queued but not yet written.
+        ByteBuffer writing;
+        final AtomicInteger pending;
+        volatile MultiplayerGame.Player player;
+        volatile boolean closed;
+        // Only touched by the game thread.
+        boolean needsKeyframe;
+
+        Connection( SocketChannel channel )
+        {
+            this.channel = channel;
+            input = ByteBuffer.allocate( 64 );
+            output = new ConcurrentLinkedQueue<ByteBuffer>();
+            writing = null;
+            pending = new AtomicInteger();
+            player = null;
+            closed = false;
+            needsKeyframe = false;
+        }
+
+        /* Queues a message (game thread). */
+        void send( ByteBuffer message )
+        {
+            pending.addAndGet( message.limit() );
+            output.add( message );
+        }
+
+        /* Throws away queued messages not yet started, returning how many (game thread). */
+        int drop()
+        {
+            int count = 0;
+            ByteBuffer message;
+            for ( ; ( message = output.poll() ) != null; count++ )
+                pending.addAndGet( -message.limit() );
+            return count;
+        }
+
+        /* Reads moves, one byte each (network thread). */
+        void read()
+        {
+            int count;
+            try
+            {
+                input.clear();
+                count = channel.read( input );
+            }
+            catch ( IOException e )
+            {
+                count = -1;
+            }
+            if ( count < 0 )
+            {
+                close();
+                return;
+            }
+            MultiplayerGame.Player playing = player;
+            for ( int i = 0; playing != null && i < count; i++ )
+            {
+                int direction = input.get( i );
+                if ( direction == AbstractGame.UP || direction == AbstractGame.DOWN )
+                    playing.queueDirection( direction );
+            }
+        }
+
+        /* Writes as much of the queued messages as the socket takes (network thread). */
+        void write()
+        {
+            try
+            {
+                while ( true )
+                {
+                    if ( writing == null )
+                    {
+                        writing = output.poll();
+                        if ( writing == null )
+                        {
+                            key.interestOps( SelectionKey.OP_READ );
+                            return;
+                        }
+                    }
+                    channel.write( writing );
+                    if ( writing.hasRemaining() )
+                    {
+                        key.interestOps( SelectionKey.OP_READ | SelectionKey.OP_WRITE );
+                        return;
+                    }
+                    pending.addAndGet( -writing.limit() );
+                    writing = null;
+                }
+            }
+            catch ( IOException e )
+            {
+                close();
+            }
+        }
+
+        /* Disconnects the client (network thread). */
+        void close()
+        {
+            if ( closed )
+                return;
+            closed = true;
+            key.cancel();
+            try
+            {
+                channel.close();
+            }
+            catch ( IOException e )
+            {
+                // Gone either way.
+            }
+            leaving.add( this );
+        }
+    }
+
+    /**
+     * Runs a server from the command line until it is killed.
+     *
+     * @param args [port [rows cols]]
+     */
+    public static void main( String[] args )
+    {
+        int port = args.length > 0 ? Integer.parseInt( args[0] ) : DEFAULT_PORT;
+        int rows = args.length > 2 ? Integer.parseInt( args[1] ) : 10;
+        int cols = args.length > 2 ? Integer.parseInt( args[2] ) : 15;
+        GameServer server = new GameServer( new MultiplayerGame( new HeadlessBoard( rows, cols ) ),
+                                            port );
+        server.start();
+        System.out.println( "Game server listening on port " + server.getPort() );
+    }
+}
\ No newline at end of file
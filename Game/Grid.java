@@ -1,4 +1,3 @@
-
 /**
  * A class for handling the graphical grid
  * for the Scrolling Game project.
@@ -11,15 +10,90 @@ import java.awt.event.*;
 import java.awt.image.*;
 import java.io.*;
 import java.net.*;
+import java.util.concurrent.CountDownLatch;
 import javax.imageio.*;
 import javax.swing.*;
 
 @SuppressWarnings( "serial" )
-public class Grid extends JComponent
+public class Grid extends JComponent implements Board
 {
-    private Cell[][] cells;
-    private JFrame frame;
+    private BoardPlanes planes;
+    // Window showing the grid: opened by the GUI thread while the game goes
+    // on setting up, so null until then (and for grids with no window).
+    // Key listeners added before it opens wait in pendingKeyListeners, and
+    // windowOpened is released once it is showing.
+    private volatile JFrame frame;
+    private java.util.List<KeyListener> pendingKeyListeners;
+    private CountDownLatch windowOpened;
+    private final Object windowLock = new Object();
+    // Window title; kept here too for grids with no window (guarded by
+    // windowLock). titlePending is true while a change of title is waiting
+    // to be shown on the GUI thread.
+    private String title;
+    private boolean titlePending;
     private Color lineColor;
+    // Every sprite, scaled to the cell size, packed into one image; the
+    // images are read and scaled by spriteCache.
+    private SpriteAtlas atlas;
+    private SpriteCache spriteCache;
+    private DirtyRegion dirty;
+    private int updateDepth;
+    
+    // Copies of the Cells, published by the game thread as each batch of
+    // changes is committed; drawing only ever reads these, never planes.
+    private SnapshotBuffer snapshots;
+    
+    // Picture of the whole grid, kept up to date by redrawing only the Cells
+    // changed since the snapshot it shows (undrawn), and copied to the
+    // screen in one go. It belongs to the drawing side (the GUI
+    // thread, or the game thread when rendering actively or saving), and
+    // bufferLock keeps those apart; game-play itself never takes the lock.
+    private VolatileImage backBuffer;
+    private int bufferCellSize;
+    // Cells changed in snapshots acquired since the back buffer was drawn,
+    // and the number and color version of the last snapshot acquired.
+    private DirtyRegion undrawn;
+    private long acquiredSequence;
+    private long acquiredColors;
+    // Background colors of Cells being drawn, one pixel per Cell, so they
+    // can be scaled up onto the screen with one drawImage() call.
+    private BufferedImage cellColors;
+    private final Object bufferLock = new Object();
+    
+    // View onto part of the grid (null to fit the whole grid in the window,
+    // drawn through the back buffer); with a camera, the Cells in view are
+    // drawn straight to the screen, or zoomed far out, their colors from
+    // pyramid. Guarded by bufferLock. A copy of it as last moved or drawn
+    // (shownCamera) lets the game thread work out what to repaint without
+    // taking the lock. Where the mouse was pressed to pan.
+    private Camera camera;
+    private volatile Camera shownCamera;
+    private ColorPyramid pyramid;
+    private Point dragStart;
+    private int dragRow;
+    private int dragCol;
+    
+    // What the drawing side has done so far; cellsDrawn is guarded by
+    // bufferLock, counters may be read from any thread.
+    private RenderCounters counters;
+    private int cellsDrawn;
+    
+    // Used to draw frames straight to the window, rather than waiting for
+    // the GUI system to call paintComponent().
+    private BufferStrategy strategy;
+    private boolean activeRendering;
+    
+    // Writes screenshots and recorded frames in the background (created when
+    // first needed, and closed once everything queued has been written and
+    // nothing is being recorded; null until then).
+    private FrameEncoder encoder;
+    // Every frameInterval-th batch of changes committed is recorded, as an
+    // image file named by framePattern, or into frameLog; 0 if not recording.
+    private int frameInterval;
+    private long framesCommitted;
+    private int framesRecorded;
+    private String framePattern;
+    private FrameLog frameLog;
     
     /**
      * Constructor for grid of game-cells.
@@ -29,7 +103,22 @@ public class Grid extends JComponent
      */
     public Grid( int numRows, int numCols )
     {
-        init( numRows, numCols );
+        init( numRows, numCols, true );
+    }
+    
+    /**
+     * Constructor for grid of game-cells that may be kept off the screen: if
+     * visible is false, no window is created, but the grid can still be drawn
+     * (with save(), or by calling paintComponent() with the Graphics of an
+     * image), for instance by tests and benchmarks.
+     *
+     * @param numRows Number of rows in grid.
+     * @param numCols Number of columns in grid.
+     * @param visible true to show the grid in a window of its own.
+     */
+    public Grid( int numRows, int numCols, boolean visible )
+    {
+        init( numRows, numCols, visible );
     }
     
     /**
@@ -41,7 +130,7 @@ public class Grid extends JComponent
     public Grid( String imageFileName )
     {
         BufferedImage image = loadImage( imageFileName );
-        init( image.getHeight(), image.getWidth() );
+        init( image.getHeight(), image.getWidth(), true );
         showImage( image );
         setTitle( imageFileName );
     }
@@ -52,27 +141,162 @@ public class Grid extends JComponent
      * @param numRows Number of rows in grid.
      *
      * @param numCols Number of columns in grid.
+     *
+     * @param visible true to show grid in a window.
      */
-    private void init( int numRows, int numCols )
+    private void init( int numRows, int numCols, boolean visible )
     {
+        long began = StartupProfile.begin();
         lineColor = null;
+        counters = new RenderCounters();
+        spriteCache = new SpriteCache();
+        spriteCache.setCounters( counters );
+        atlas = new SpriteAtlas( spriteCache );
+        updateDepth = 0;
+        backBuffer = null;
+        bufferCellSize = 0;
+        strategy = null;
+        activeRendering = false;
+        encoder = null;
+        frameInterval = 0;
+        frameLog = null;
+        
+        planes = new BoardPlanes( numRows, numCols );
+        planes.trackStoredChanges();
+        dirty = planes.trackChanges();
+        snapshots = new SnapshotBuffer( numRows, numCols );
+        undrawn = new DirtyRegion( numRows, numCols );
+        acquiredSequence = 0;
+        acquiredColors = 0;
+        cellColors = null;
+        camera = null;
+        pyramid = null;
         
-        cells = new Cell[numRows][numCols];
-        for ( int row = 0; row < numRows; row++ )
+        title = "Grid";
+        titlePending = false;
+        int cellSize = Math.min( 750 / getNumRows(), 750 / getNumCols() );
+        if ( cellSize > 0 )
+            setPreferredSize( new Dimension( cellSize * numCols, cellSize * numRows ) );
+        else
         {
-            for ( int col = 0; col < numCols; col++ )
-                cells[row][col] = new Cell();
+            // Too many Cells to show one pixel each: zoom out to fit.
+            camera = Camera.fit( numRows, numCols, 750, 750 );
+            cameraMoved();
+            setPreferredSize( new Dimension( camera.toX( numCols - 1 ) + 1,
+                                             camera.toY( numRows - 1 ) + 1 ) );
+        }
+        addCameraControls();
+        frame = null;
+        setSize( getPreferredSize() );
+        // Listened for only once sized, and sprites only dropped if Cells are
+        // drawn at a new size, so that those preloaded at this size are kept.
+        addComponentListener( new ComponentAdapter()
+        {
+            private int cellSize = camera != null ? camera.getCellSize() : getCellSize();
+            
+            public void componentResized( ComponentEvent e )
+            {
+                synchronized ( bufferLock )
+                {
+                    int size = camera != null ? camera.getCellSize() : getCellSize();
+                    if ( size != cellSize )
+                    {
+                        cellSize = size;
+                        atlas.clear();
+                    }
+                }
+            }
+        } );
+        StartupProfile.end( StartupProfile.BOARD, began );
+        if ( !visible )
+        {
+            pendingKeyListeners = null;
+            windowOpened = null;
+            return;
         }
         
-        frame = new JFrame( "Grid" );
-        frame.setDefaultCloseOperation( JFrame.EXIT_ON_CLOSE );
-        
-        int cellSize = Math.max( Math.min( 750 / getNumRows(), 750 / getNumCols() ), 1 );
-        setPreferredSize( new Dimension( cellSize * numCols, cellSize * numRows ) );
-        frame.getContentPane().add( this );
-        
-        frame.pack();
-        frame.setVisible( true );
+        // Starting the GUI system and opening a window take a while, so it is
+        // done on other threads: the GUI thread is started from a thread of
+        // its own, to build the window, while this one goes on setting up the
+        // game. Until the window is showing, changes are simply not drawn;
+        // it draws the latest snapshot when it opens. The starting thread is
+        // not a daemon, so that the program cannot end before the GUI thread
+        // (which keeps it running from then on) has started.
+        pendingKeyListeners = new java.util.ArrayList<KeyListener>();
+        windowOpened = new CountDownLatch( 1 );
+        long opening = StartupProfile.begin();
+        Thread opener = new Thread( () -> SwingUtilities.invokeLater( () -> openWindow( opening ) ),
+                                    "grid-window" );
+        opener.start();
+    }
+    
+    /*
+     * Utility method: creates and shows the window (on the GUI thread), then
+     * hands it the key listeners added so far.
+     */
+    private void openWindow( long began )
+    {
+        JFrame window = new JFrame();
+        window.setDefaultCloseOperation( JFrame.EXIT_ON_CLOSE );
+        window.getContentPane().add( this );
+        window.pack();
+        java.util.List<KeyListener> listeners;
+        synchronized ( windowLock )
+        {
+            window.setTitle( title );
+            frame = window;
+            listeners = pendingKeyListeners;
+            pendingKeyListeners = null;
+        }
+        for ( KeyListener listener : listeners )
+            window.addKeyListener( listener );
+        window.setVisible( true );
+        windowOpened.countDown();
+        StartupProfile.end( StartupProfile.WINDOW, began );
+    }
+    
+    /**
+     * Starts reading images in the background (see SpriteCache.preload()),
+     * then scales them to the size Cells are drawn at, so that the first
+     * frames do not wait for them.
+     *
+     * @param imageFileNames Names of accessible image-files the game will
+     *            show.
+     */
+    public void preloadSprites( String... imageFileNames )
+    {
+        spriteCache.preload( imageFileNames ).thenRun( () ->
+        {
+            long began = StartupProfile.begin();
+            synchronized ( bufferLock )
+            {
+                int size = camera != null ? camera.getCellSize() : getCellSize();
+                for ( String name : imageFileNames )
+                    spriteCache.get( name, size, null );
+            }
+            StartupProfile.end( StartupProfile.SPRITES, began );
+        } );
+    }
+    
+    /**
+     * Waits until the grid's window is showing.
+     *
+     * @return Window (null if the grid has none).
+     */
+    public JFrame waitForWindow()
+    {
+        if ( windowOpened == null )
+            return null;
+        try
+        {
+            windowOpened.await();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "interrupted waiting for window" );
+        }
+        return frame;
     }
     
     /**
@@ -80,7 +304,7 @@ public class Grid extends JComponent
      */
     public int getNumRows()
     {
-        return cells.length;
+        return planes.getNumRows();
     }
     
     /**
@@ -88,17 +312,37 @@ public class Grid extends JComponent
      */
     public int getNumCols()
     {
-        return cells[0].length;
+        return planes.getNumCols();
     }
     
     /**
-     * Sets window title.
+     * Sets window title. The window shows it once the GUI thread gets to it
+     * (if the title is changed again before then, only the last is shown).
      *
      * @param title Title for window.
      */
     public void setTitle( String title )
     {
-        frame.setTitle( title );
+        synchronized ( windowLock )
+        {
+            if ( title.equals( this.title ) )
+                return;
+            this.title = title;
+            if ( frame == null || titlePending )
+                return;
+            titlePending = true;
+        }
+        SwingUtilities.invokeLater( this::showTitle );
+    }
+    
+    /* Utility method: shows the latest title in the window (on the GUI thread). */
+    private void showTitle()
+    {
+        synchronized ( windowLock )
+        {
+            titlePending = false;
+            frame.setTitle( title );
+        }
     }
     
     /**
@@ -113,8 +357,8 @@ public class Grid extends JComponent
         if ( !isValid( row, col ) )
             throw new RuntimeException( "Cannot set color of invalid location " + row + ", " + col +
                                        " to color " + color );
-        cells[row][col].setColor( color );
-        repaint();
+        if ( planes.setRGB( row, col, BoardPlanes.toRGB( color ) ) )
+            markDirty( row, col );
     }
     
     /*
@@ -122,7 +366,7 @@ public class Grid extends JComponent
      */
     private boolean isValid( int row, int col )
     {
-        return 0 <= row && row < getNumRows() && 0 <= col && col < getNumCols();
+        return planes.isValid( row, col );
     }
     
     /**
@@ -138,7 +382,40 @@ public class Grid extends JComponent
         if ( !isValid( row, col ) )
             throw new RuntimeException( "Cannot get color from invalid location " + row + ", " +
                                        col );
-        return cells[row][col].getColor();
+        return planes.getColor( row, col );
+    }
+    
+    /**
+     * Sets background of Cell at a given location, as a packed color.
+     *
+     * @param row Row of grid-Cell location.
+     * @param col Column of grid-Cell location.
+     * @param argb Packed ARGB color (see BoardPlanes.toRGB()).
+     */
+    public void setRGB( int row, int col, int argb )
+    {
+        if ( !isValid( row, col ) )
+            throw new RuntimeException( "Cannot set color of invalid location " + row + ", " + col +
+                                       " to color " + Integer.toHexString( argb ) );
+        if ( planes.setRGB( row, col, argb ) )
+            markDirty( row, col );
+    }
+    
+    /**
+     * Gets background of Cell at a given location, as a packed color
+     * (without creating a Color).
+     *
+     * @param row Row of grid-Cell location.
+     * @param col Column of grid-Cell location.
+     *
+     * @return Packed ARGB color of Cell at position (row,col).
+     */
+    public int getRGB( int row, int col )
+    {
+        if ( !isValid( row, col ) )
+            throw new RuntimeException( "Cannot get color from invalid location " + row + ", " +
+                                       col );
+        return planes.getRGB( row, col );
     }
     
     /**
@@ -148,9 +425,10 @@ public class Grid extends JComponent
      */
     public void setBackground( Color color )
     {
-        for ( int row = 0; row < cells.length; row++ )
-            for ( int col = 0; col < cells[row].length; col++ )
-                cells[row][col].setColor( color );
+        planes.fillRGB( BoardPlanes.toRGB( color ) );
+        dirty.markAll();
+        if ( updateDepth == 0 )
+            repaintDirty();
     }
     
     /**
@@ -166,8 +444,8 @@ public class Grid extends JComponent
         if ( !isValid( row, col ) )
             throw new RuntimeException( "Cannot set image for invalid location " + row + ", " +
                                        col + " to \"" + imageFileName + "\"" );
-        cells[row][col].setImageFileName( imageFileName );
-        repaint();
+        if ( planes.setImage( row, col, imageFileName ) )
+            markDirty( row, col );
     }
     
     /**
@@ -184,7 +462,158 @@ public class Grid extends JComponent
         if ( !isValid( row, col ) )
             throw new RuntimeException( "Cannot get image for invalid location " + row + ", " +
                                        col );
-        return cells[row][col].getImageFileName();
+        return planes.getImage( row, col );
+    }
+    
+    /**
+     * @return Table giving the sprite id used in this grid for each
+     *         image-file name.
+     */
+    public SpriteTable getSpriteTable()
+    {
+        return planes.getSpriteTable();
+    }
+    
+    /**
+     * Returns sprite id of image displayed at given location.
+     *
+     * @param row Row of grid-Cell location.
+     * @param col Column of grid-Cell location.
+     *
+     * @return Sprite id for image at (row, col) (SpriteTable.NONE if empty).
+     */
+    public int getSprite( int row, int col )
+    {
+        if ( !isValid( row, col ) )
+            throw new RuntimeException( "Cannot get image for invalid location " + row + ", " +
+                                       col );
+        return planes.getSprite( row, col );
+    }
+    
+    /**
+     * Sets foreground image of Cell at given location by sprite id.
+     *
+     * @param row Row of grid-Cell location.
+     * @param col Column of grid-Cell location.
+     * @param id Sprite id (from getSpriteTable()) of image to place in Cell,
+     *            or SpriteTable.NONE to empty it.
+     */
+    public void setSprite( int row, int col, int id )
+    {
+        if ( !isValid( row, col ) )
+            throw new RuntimeException( "Cannot set image for invalid location " + row + ", " +
+                                       col + " to sprite " + id );
+        if ( planes.setSprite( row, col, id ) )
+            markDirty( row, col );
+    }
+    
+    /**
+     * Shows only part of the grid, through a camera that can be panned and
+     * zoomed (by dragging with the mouse, and with the mouse-wheel), rather
+     * than fitting every Cell into the window. Only the Cells in view are
+     * drawn, so drawing a frame takes much the same time however big the
+     * grid. A grid with more rows or columns than fit in 750 pixels is given
+     * a camera when created.
+     *
+     * @param camera View of the grid (null to show the whole grid again).
+     */
+    public void setCamera( Camera camera )
+    {
+        synchronized ( bufferLock )
+        {
+            this.camera = camera;
+            cameraMoved();
+            if ( camera != null && backBuffer != null )
+            {
+                // Not used while there is a camera.
+                backBuffer.flush();
+                backBuffer = null;
+            }
+        }
+        if ( activeRendering )
+        {
+            dirty.markAll();
+            repaintDirty();
+        }
+        else
+            repaint();
+    }
+    
+    /**
+     * @return View of the grid (null if the whole grid is shown).
+     */
+    public Camera getCamera()
+    {
+        return camera;
+    }
+    
+    /**
+     * @return Running totals of what this grid has drawn (repaints, Cells,
+     *         paints and sprites read).
+     */
+    public RenderCounters getRenderCounters()
+    {
+        return counters;
+    }
+    
+    /**
+     * @return Index of where each kind of object (sprite id) is in this
+     *         grid, used for checking collisions.
+     */
+    public CollisionIndex getCollisionIndex()
+    {
+        return planes.getCollisionIndex();
+    }
+    
+    /**
+     * Starts keeping track of which Cells change (see Board.trackChanges()).
+     *
+     * @return Region changed Cells are marked in (empty to begin with).
+     */
+    public DirtyRegion trackChanges()
+    {
+        return planes.trackChanges();
+    }
+    
+    /**
+     * Moves every image left one column: images in column 0 drop off the
+     * grid and the last column is left empty. Background colors stay put.
+     * Only Cells whose image actually changes are repainted; on a very big
+     * grid, they are found a band of rows at a time on all cores.
+     */
+    public void shiftLeft()
+    {
+        planes.shiftLeft();
+        if ( updateDepth == 0 )
+            repaintDirty();
+    }
+    
+    /**
+     * Starts a batch of changes to the grid: Cells changed from now on are
+     * only repainted once the matching call to commitUpdate() is made.
+     * Batches may be nested; the screen is updated when the outermost batch
+     * is committed.
+     */
+    public void beginUpdate()
+    {
+        updateDepth++;
+    }
+    
+    /**
+     * Ends a batch of changes started by beginUpdate(), repainting all Cells
+     * changed during the batch as a few merged rectangles.
+     */
+    public void commitUpdate()
+    {
+        if ( updateDepth == 0 )
+            throw new RuntimeException( "commitUpdate() called without matching beginUpdate()" );
+        updateDepth--;
+        if ( updateDepth == 0 )
+        {
+            repaintDirty();
+            if ( frameInterval > 0 )
+                recordFrame();
+        }
     }
     
     /**
@@ -223,19 +652,88 @@ public class Grid extends JComponent
      */
     public void save( String imageFileName )
     {
-        try
-        {
-            BufferedImage bi = new BufferedImage( getWidth(), getHeight(),
-                                                 BufferedImage.TYPE_INT_RGB );
-            paintComponent( bi.getGraphics() );
-            int index = imageFileName.lastIndexOf( '.' );
-            if ( index == -1 )
-                throw new RuntimeException( "invalid image file name:  " + imageFileName );
-            ImageIO.write( bi, imageFileName.substring( index + 1 ), new File( imageFileName ) );
-        }
-        catch ( IOException e )
+        FrameEncoder.encode( capture( new BufferedImage( getWidth(), getHeight(),
+                                                         BufferedImage.TYPE_INT_RGB ) ),
+                             imageFileName );
+    }
+    
+    /**
+     * Saves an image of the game-screen without waiting for it to be
+     * written: the screen is copied now, and encoded and written by a
+     * background thread (waiting only if many saves are already queued).
+     *
+     * @param imageFileName Name of the file to save.
+     */
+    public void saveLater( String imageFileName )
+    {
+        FrameEncoder frames = getEncoder();
+        frames.writeImage( capture( frames.obtainImage( getWidth(), getHeight() ) ),
+                           imageFileName );
+    }
+    
+    /**
+     * Starts recording the game-screen to a sequence of image files, one
+     * for every everyNth batch of changes committed (in play(), each frame
+     * drawn; in AbstractGame.simulate(), each step). Images are written by a
+     * background thread; if it falls behind, the game waits rather than
+     * skipping frames.
+     *
+     * @param fileNamePattern Pattern for file names, given the number of the
+     *            image (0, 1, 2, ...) as by String.format(), e.g.
+     *            "frame%05d.png".
+     * @param everyNth Record one frame in this many.
+     */
+    public void recordImages( String fileNamePattern, int everyNth )
+    {
+        startRecording( everyNth );
+        framePattern = fileNamePattern;
+    }
+    
+    /**
+     * Starts recording the game-screen into a FrameLog file, storing only
+     * the Cells that changed, for one every everyNth batch of changes
+     * committed. The log is written by a background thread.
+     *
+     * @param fileName Name of the log file.
+     * @param everyNth Record one frame in this many.
+     */
+    public void recordFrameLog( String fileName, int everyNth )
+    {
+        startRecording( everyNth );
+        frameLog = FrameLog.create( fileName, getNumRows(), getNumCols() );
+    }
+    
+    /**
+     * Stops recording started by recordImages() or recordFrameLog(), and
+     * waits until every recorded frame has been written (stopping the
+     * background thread that wrote them).
+     */
+    public void stopRecording()
+    {
+        if ( frameLog != null )
+            encoder.closeLog( frameLog );
+        frameInterval = 0;
+        framePattern = null;
+        frameLog = null;
+        waitForSaves();
+    }
+    
+    /**
+     * Waits until every image from saveLater() and every recorded frame
+     * queued so far has been written. Unless recording, the background
+     * thread that wrote them is then stopped (saveLater() starts another).
+     */
+    public void waitForSaves()
+    {
+        if ( encoder == null )
+            return;
+        if ( frameInterval > 0 )
+            encoder.flush();
+        else
         {
-            throw new RuntimeException( "unable to save image to file:  " + imageFileName );
+            FrameEncoder frames = encoder;
+            encoder = null;
+            frames.close();
         }
     }
     
@@ -245,70 +743,485 @@ public class Grid extends JComponent
      */
     public void addKeyListener( KeyListener listener )
     {
-        frame.addKeyListener( listener );
+        synchronized ( windowLock )
+        {
+            if ( frame != null )
+                frame.addKeyListener( listener );
+            else if ( pendingKeyListeners != null )
+                pendingKeyListeners.add( listener );
+            else
+                super.addKeyListener( listener );
+        }
+    }
+    
+    /**
+     * Chooses how frames reach the screen. Normally changed Cells are drawn
+     * into a back buffer and the GUI system is asked to repaint them; with
+     * active rendering on, the whole back buffer is instead copied straight
+     * to the window (through a BufferStrategy) as soon as a batch of changes
+     * is committed, for steadier, tear-free frames.
+     *
+     * @param active true to draw frames actively, false to leave it to the
+     *            GUI system.
+     */
+    public void setActiveRendering( boolean active )
+    {
+        JFrame frame = waitForWindow();
+        if ( frame == null )
+            throw new RuntimeException( "cannot render actively without a window" );
+        if ( active && strategy == null )
+        {
+            frame.createBufferStrategy( 2 );
+            strategy = frame.getBufferStrategy();
+        }
+        frame.setIgnoreRepaint( active );
+        activeRendering = active;
+        if ( active )
+        {
+            dirty.markAll();
+            repaintDirty();
+        }
     }
     
     /**
-     * Display graphical elements of game. Called by GUI system.
+     * Display graphical elements of game. Called by GUI system: the back
+     * buffer is brought up to date with the latest snapshot of the Cells
+     * published by the game, and copied to the screen (only the part being
+     * repainted is actually copied).
      */
     public void paintComponent( Graphics g )
     {
-        for ( int row = 0; row < getNumRows(); row++ )
+        drawGrid( g );
+    }
+    
+    /*
+     * Utility method: draws latest snapshot of grid using graphics g, by
+     * copying the back buffer or, when there is none (a grid with no window),
+     * by drawing the Cells within g's clip directly.
+     */
+    private void drawGrid( Graphics g )
+    {
+        synchronized ( bufferLock )
+        {
+            PaintEvent event = new PaintEvent();
+            event.begin();
+            int before = cellsDrawn;
+            drawSnapshot( g );
+            counters.painted();
+            event.cells = cellsDrawn - before;
+            event.commit();
+        }
+        StartupProfile.frameDrawn();
+    }
+    
+    /*
+     * Utility method: does the work of drawGrid(). Caller must hold
+     * bufferLock.
+     */
+    private void drawSnapshot( Graphics g )
+    {
+        BoardSnapshot snapshot = acquireSnapshot();
+        if ( camera != null )
+        {
+            Rectangle clip = g.getClipBounds();
+            drawView( g, snapshot, clip != null ? clip : new Rectangle( getWidth(), getHeight() ) );
+            return;
+        }
+        if ( updateBuffer( snapshot ) )
+        {
+            g.drawImage( backBuffer, 0, 0, null );
+            return;
+        }
+        
+        int cellSize = getCellSize();
+        if ( cellSize <= 0 )
+            return;
+        int firstRow = 0, lastRow = getNumRows() - 1;
+        int firstCol = 0, lastCol = getNumCols() - 1;
+        Rectangle clip = g.getClipBounds();
+        if ( clip != null )
+        {
+            firstRow = Math.max( firstRow, ( clip.y - 1 ) / cellSize );
+            lastRow = Math.min( lastRow, ( clip.y + clip.height ) / cellSize );
+            firstCol = Math.max( firstCol, ( clip.x - 1 ) / cellSize );
+            lastCol = Math.min( lastCol, ( clip.x + clip.width ) / cellSize );
+        }
+        drawCells( g, snapshot, cellSize, firstRow, firstCol, lastRow, lastCol );
+    }
+    
+    /*
+     * Utility method: draws the Cells of a snapshot seen by the camera
+     * within clip (in pixels). Caller must hold bufferLock.
+     */
+    private void drawView( Graphics g, BoardSnapshot snapshot, Rectangle clip )
+    {
+        Camera view = camera;
+        view.keepInside( getNumRows(), getNumCols(), getWidth(), getHeight() );
+        cameraMoved();
+        if ( view.getLevel() > 0 )
+        {
+            if ( pyramid == null )
+                pyramid = new ColorPyramid( getNumRows(), getNumCols() );
+            pyramid.draw( g, snapshot, view, clip );
+            cellsDrawn += clip.width * clip.height;
+            return;
+        }
+        
+        int firstRow = Math.max( 0, view.rowAt( clip.y ) );
+        int lastRow = Math.min( getNumRows() - 1, view.rowAt( clip.y + clip.height - 1 ) );
+        int firstCol = Math.max( 0, view.columnAt( clip.x ) );
+        int lastCol = Math.min( getNumCols() - 1, view.columnAt( clip.x + clip.width - 1 ) );
+        int x = view.toX( 0 );
+        int y = view.toY( 0 );
+        g.translate( x, y );
+        drawCells( g, snapshot, view.getCellSize(), firstRow, firstCol, lastRow, lastCol );
+        g.translate( -x, -y );
+    }
+    
+    /*
+     * Utility method: takes the latest snapshot, noting the Cells changed in
+     * it as not yet drawn into the back buffer (nor, if colors changed, into
+     * the pyramid). Every snapshot drawn must be taken through here. Caller
+     * must hold bufferLock.
+     */
+    private BoardSnapshot acquireSnapshot()
+    {
+        BoardSnapshot snapshot = snapshots.acquire();
+        if ( snapshot.getSequence() != acquiredSequence )
+        {
+            // Snapshots skipped since the last one are covered too, since
+            // each one's changes run from the snapshot acquired before it.
+            undrawn.add( snapshot.changes() );
+            if ( pyramid != null && snapshot.colorVersion() != acquiredColors )
+                pyramid.invalidate( snapshot.changes() );
+            acquiredSequence = snapshot.getSequence();
+            acquiredColors = snapshot.colorVersion();
+        }
+        return snapshot;
+    }
+    
+    /*
+     * Utility method: brings the back buffer up to date with a snapshot,
+     * redrawing only the Cells changed since the one it shows. Returns false
+     * if there is nothing to draw on yet. Caller must hold bufferLock.
+     */
+    private boolean updateBuffer( BoardSnapshot snapshot )
+    {
+        if ( !validateBuffer( snapshot ) )
+            return false;
+        
+        java.util.List<Rectangle> changed = undrawn.drain();
+        if ( !changed.isEmpty() )
+        {
+            Graphics2D g = backBuffer.createGraphics();
+            for ( Rectangle r : changed )
+                drawCells( g, snapshot, bufferCellSize, r.y, r.x, r.y + r.height - 1,
+                          r.x + r.width - 1 );
+            g.dispose();
+        }
+        return true;
+    }
+    
+    /*
+     * Utility method: makes sure the back buffer exists, suits the current
+     * cell size and screen, and still has its contents, redrawing every Cell
+     * of the snapshot into it if not. Returns false if there is nothing to
+     * draw on yet. Caller must hold bufferLock.
+     */
+    private boolean validateBuffer( BoardSnapshot snapshot )
+    {
+        int cellSize = getCellSize();
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        if ( cellSize <= 0 || config == null )
+            return false;
+        
+        int width = getNumCols() * cellSize + 1;
+        int height = getNumRows() * cellSize + 1;
+        int state = backBuffer == null ? VolatileImage.IMAGE_INCOMPATIBLE
+                                       : backBuffer.validate( config );
+        if ( state == VolatileImage.IMAGE_INCOMPATIBLE || cellSize != bufferCellSize ||
+             backBuffer.getWidth() != width || backBuffer.getHeight() != height )
+        {
+            if ( backBuffer != null )
+                backBuffer.flush();
+            backBuffer = config.createCompatibleVolatileImage( width, height );
+            bufferCellSize = cellSize;
+            state = VolatileImage.IMAGE_RESTORED;
+        }
+        
+        if ( state == VolatileImage.IMAGE_RESTORED )
         {
-            for ( int col = 0; col < getNumCols(); col++ )
+            Graphics2D g = backBuffer.createGraphics();
+            g.setColor( Color.black );
+            g.fillRect( 0, 0, width, height );
+            drawCells( g, snapshot, cellSize, 0, 0, getNumRows() - 1, getNumCols() - 1 );
+            g.dispose();
+            undrawn.clear();
+        }
+        return true;
+    }
+    
+    /*
+     * Utility method: draws the Cells of a snapshot in the given rows and
+     * columns (inclusive) using graphics g. Caller must hold bufferLock.
+     */
+    private void drawCells( Graphics g, BoardSnapshot snapshot, int cellSize, int firstRow,
+                           int firstCol, int lastRow, int lastCol )
+    {
+        if ( firstRow > lastRow || firstCol > lastCol )
+            return;
+        int cells = ( lastRow - firstRow + 1 ) * ( lastCol - firstCol + 1 );
+        cellsDrawn += cells;
+        counters.cellsRepainted( cells );
+        
+        // Backgrounds first, all at once: one pixel per Cell, scaled up.
+        int width = lastCol - firstCol + 1;
+        int height = lastRow - firstRow + 1;
+        if ( cellColors == null )
+            cellColors = new BufferedImage( width, height, BufferedImage.TYPE_INT_ARGB );
+        else if ( cellColors.getWidth() < width || cellColors.getHeight() < height )
+            cellColors = new BufferedImage( Math.max( width, cellColors.getWidth() ),
+                                            Math.max( height, cellColors.getHeight() ),
+                                            BufferedImage.TYPE_INT_ARGB );
+        int[] pixels = ( (DataBufferInt) cellColors.getRaster().getDataBuffer() ).getData();
+        int stride = cellColors.getWidth();
+        for ( int row = firstRow; row <= lastRow; row++ )
+            for ( int col = firstCol, index = ( row - firstRow ) * stride; col <= lastCol; col++ )
+                pixels[index++] = snapshot.getRGB( row, col );
+        g.drawImage( cellColors, firstCol * cellSize, firstRow * cellSize,
+                     ( lastCol + 1 ) * cellSize, ( lastRow + 1 ) * cellSize, 0, 0, width, height,
+                     null );
+        
+        // Then images, each copied from its square of the atlas.
+        atlas.pack( snapshot.names(), cellSize, getGraphicsConfiguration() );
+        for ( int row = firstRow; row <= lastRow; row++ )
+        {
+            for ( int col = firstCol; col <= lastCol; col++ )
             {
-                Cell cell = cells[row][col];
-                
-                Color color = cell.getColor();
-                g.setColor( color );
-                int cellSize = getCellSize();
                 int x = col * cellSize;
                 int y = row * cellSize;
-                g.fillRect( x, y, cellSize, cellSize );
+                int sprite = snapshot.getSprite( row, col );
+                if ( sprite != SpriteTable.NONE )
+                    atlas.draw( g, sprite, x, y );
                 
-                String imageFileName = cell.getImageFileName();
-                if ( imageFileName != null )
+                if ( lineColor != null )
+                {
+                    g.setColor( lineColor );
+                    g.drawRect( x, y, cellSize, cellSize );
+                }
+            }
+        }
+    }
+    
+    /* Utility method: records a changed Cell, repainting it unless batching. */
+    private void markDirty( int row, int col )
+    {
+        dirty.mark( row, col );
+        if ( updateDepth == 0 )
+            repaintDirty();
+    }
+    
+    /*
+     * Utility method: if any Cells changed, publishes a snapshot of the grid
+     * (one atomic swap, with no locking) and gets it onto the screen.
+     */
+    private void repaintDirty()
+    {
+        if ( dirty.isEmpty() )
+            return;
+        snapshots.publish( planes, dirty );
+        present( dirty.drain() );
+    }
+    
+    /*
+     * Utility method: gets the latest snapshot onto the screen, either by
+     * drawing it and copying the whole back buffer to the window now (active
+     * rendering) or by asking the GUI system to repaint the changed
+     * rectangles (in Cells).
+     */
+    private void present( java.util.List<Rectangle> changed )
+    {
+        if ( changed.isEmpty() )
+            return;
+        
+        if ( activeRendering )
+        {
+            Point at = SwingUtilities.convertPoint( this, 0, 0, frame );
+            counters.repaintRequested( 1 );
+            do
+            {
+                do
                 {
-                    try
+                    Graphics g = strategy.getDrawGraphics();
+                    synchronized ( bufferLock )
                     {
-                        File f = new File( imageFileName );
-                        URL url = f.toURI().toURL();
-                        if ( url == null )
-                            System.out.println( "File not found:  " + imageFileName );
-                        else
+                        PaintEvent event = new PaintEvent();
+                        event.begin();
+                        int before = cellsDrawn;
+                        if ( camera != null )
                         {
-                            
-                            Image image = new ImageIcon( url ).getImage();
-                            int width = image.getWidth( null );
-                            int height = image.getHeight( null );
-                            if ( width > height )
-                            {
-                                int drawHeight = cellSize * height / width;
-                                g.drawImage( image, x, y + ( cellSize - drawHeight ) / 2, cellSize,
-                                            drawHeight, null );
-                            }
-                            else
-                            {
-                                int drawWidth = cellSize * width / height;
-                                g.drawImage( image, x + ( cellSize - drawWidth ) / 2, y, drawWidth,
-                                            cellSize, null );
-                            }
+                            g.translate( at.x, at.y );
+                            g.setColor( Color.black );
+                            g.fillRect( 0, 0, getWidth(), getHeight() );
+                            drawView( g, acquireSnapshot(),
+                                      new Rectangle( getWidth(), getHeight() ) );
                         }
+                        else if ( updateBuffer( acquireSnapshot() ) )
+                            g.drawImage( backBuffer, at.x, at.y, null );
+                        counters.painted();
+                        event.cells = cellsDrawn - before;
+                        event.active = true;
+                        event.commit();
                     }
-                    catch ( MalformedURLException e )
-                    {
-                        System.out.println( "File not found:  " + imageFileName );
-                        e.printStackTrace();
-                    }
+                    g.dispose();
                 }
-                
-                if ( lineColor != null )
+                while ( strategy.contentsRestored() );
+                strategy.show();
+            }
+            while ( strategy.contentsLost() );
+            StartupProfile.frameDrawn();
+            return;
+        }
+        
+        counters.repaintRequested( changed.size() );
+        Camera view = shownCamera;
+        if ( view != null )
+        {
+            // Only the parts in view are actually redrawn.
+            for ( Rectangle r : changed )
+            {
+                int x = view.toX( r.x );
+                int y = view.toY( r.y );
+                repaint( x - 1, y - 1, view.toX( r.x + r.width ) - x + 2,
+                        view.toY( r.y + r.height ) - y + 2 );
+            }
+            return;
+        }
+        int cellSize = getCellSize();
+        for ( Rectangle r : changed )
+        {
+            // One extra pixel each way covers the grid-lines drawn around Cells.
+            repaint( r.x * cellSize - 1, r.y * cellSize - 1, r.width * cellSize + 2,
+                    r.height * cellSize + 2 );
+        }
+    }
+    
+    /*
+     * Utility method: publishes any changes, then copies the game-screen
+     * into an image (of the grid's size) and returns it.
+     */
+    private BufferedImage capture( BufferedImage image )
+    {
+        repaintDirty();
+        Graphics g = image.getGraphics();
+        g.setColor( Color.black );
+        g.fillRect( 0, 0, image.getWidth(), image.getHeight() );
+        drawGrid( g );
+        g.dispose();
+        return image;
+    }
+    
+    /* Utility method: starts recording one frame in everyNth. */
+    private void startRecording( int everyNth )
+    {
+        if ( everyNth < 1 )
+            throw new RuntimeException( "invalid frame interval:  " + everyNth );
+        if ( frameInterval > 0 )
+            stopRecording();
+        getEncoder();
+        frameInterval = everyNth;
+        framesCommitted = 0;
+        framesRecorded = 0;
+    }
+    
+    /* Utility method: records the frame just committed, if it is due. */
+    private void recordFrame()
+    {
+        if ( framesCommitted++ % frameInterval != 0 )
+            return;
+        if ( frameLog != null )
+        {
+            BoardSnapshot snapshot = encoder.obtainSnapshot( getNumRows(), getNumCols() );
+            snapshot.copy( planes, framesCommitted - 1 );
+            encoder.appendFrame( frameLog, snapshot );
+        }
+        else
+            encoder.writeImage( capture( encoder.obtainImage( getWidth(), getHeight() ) ),
+                                String.format( framePattern, framesRecorded ) );
+        framesRecorded++;
+    }
+    
+    /* Utility method: returns the background encoder, starting it if need be. */
+    private FrameEncoder getEncoder()
+    {
+        if ( encoder == null )
+            encoder = new FrameEncoder( FrameEncoder.DEFAULT_CAPACITY );
+        return encoder;
+    }
+    
+    /*
+     * Utility method: lets the camera, when there is one, be panned by
+     * dragging with the mouse and zoomed (about the mouse) with its wheel.
+     */
+    private void addCameraControls()
+    {
+        MouseAdapter controls = new MouseAdapter()
+        {
+            public void mousePressed( MouseEvent e )
+            {
+                synchronized ( bufferLock )
                 {
-                    g.setColor( lineColor );
-                    g.drawRect( x, y, cellSize, cellSize );
+                    if ( camera == null )
+                        return;
+                    dragStart = e.getPoint();
+                    dragRow = camera.getRow();
+                    dragCol = camera.getCol();
                 }
             }
-        }
+            
+            public void mouseDragged( MouseEvent e )
+            {
+                synchronized ( bufferLock )
+                {
+                    if ( camera == null || dragStart == null )
+                        return;
+                    camera.setPosition( dragRow, dragCol );
+                    camera.pan( dragRow - camera.rowAt( e.getY() - dragStart.y ),
+                                dragCol - camera.columnAt( e.getX() - dragStart.x ) );
+                    camera.keepInside( getNumRows(), getNumCols(), getWidth(), getHeight() );
+                    cameraMoved();
+                }
+                repaint();
+            }
+            
+            public void mouseWheelMoved( MouseWheelEvent e )
+            {
+                synchronized ( bufferLock )
+                {
+                    if ( camera == null )
+                        return;
+                    if ( e.getWheelRotation() < 0 )
+                        camera.zoomIn( e.getX(), e.getY() );
+                    else
+                        camera.zoomOut( e.getX(), e.getY() );
+                    camera.keepInside( getNumRows(), getNumCols(), getWidth(), getHeight() );
+                    cameraMoved();
+                }
+                repaint();
+            }
+        };
+        addMouseListener( controls );
+        addMouseMotionListener( controls );
+        addMouseWheelListener( controls );
+    }
+    
+    /*
+     * Utility method: publishes a copy of the camera for the game thread
+     * (see present()). Caller must hold bufferLock.
+     */
+    private void cameraMoved()
+    {
+        shownCamera = camera == null ? null : new Camera( camera );
     }
     
     /* Utility method to return size of cells in grid. */
@@ -337,22 +1250,15 @@ public class Grid extends JComponent
         }
     }
     
-    /* Utility method to display an image (pixelated) in grid */
-    private void showImage( BufferedImage image )
+    /*
+     * Utility method to display an image (pixelated) in grid (package-private
+     * so that benchmarks can time it without reading a file).
+     */
+    void showImage( BufferedImage image )
     {
-        for ( int row = 0; row < getNumRows(); row++ )
-        {
-            for ( int col = 0; col < getNumCols(); col++ )
-            {
-                int x = col * image.getWidth() / getNumCols();
-                int y = row * image.getHeight() / getNumRows();
-                int c = image.getRGB( x, y );
-                int red = ( c & 0x00ff0000 ) >> 16;
-                int green = ( c & 0x0000ff00 ) >> 8;
-                int blue = c & 0x000000ff;
-                cells[row][col].setColor( new Color( red, green, blue ) );
-            }
-        }
-        repaint();
+        planes.sampleImage( image );
+        dirty.markAll();
+        if ( updateDepth == 0 )
+            repaintDirty();
     }
 }
\ No newline at end of file
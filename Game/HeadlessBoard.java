@@ -0,0 +1,185 @@
+/**
+ * A game-board for the Scrolling Game project that is never displayed.
+ * It keeps the same Cells as a Grid, but opens no window, so games can be
+ * run (and simulated quickly) on machines without a display. AWT classes
+ * are only touched if colors are actually used.
+ */
+import java.awt.Color;
+import java.awt.event.KeyListener;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import javax.imageio.ImageIO;
+
+public class HeadlessBoard implements Board
+{
+    private final BoardPlanes planes;
+    private String title;
+
+    /**
+     * Constructor for board of given size; all Cells start black and empty.
+     *
+     * @param numRows Number of rows in board.
+     * @param numCols Number of columns in board.
+     */
+    public HeadlessBoard( int numRows, int numCols )
+    {
+        planes = new BoardPlanes( numRows, numCols );
+        title = "Grid";
+    }
+
+    public int getNumRows()
+    {
+        return planes.getNumRows();
+    }
+
+    public int getNumCols()
+    {
+        return planes.getNumCols();
+    }
+
+    public void setTitle( String title )
+    {
+        this.title = title;
+    }
+
+    /**
+     * @return Title last given to this board.
+     */
+    public String getTitle()
+    {
+        return title;
+    }
+
+    public void setColor( int row, int col, Color color )
+    {
+        if ( !planes.isValid( row, col ) )
+            throw new RuntimeException( "Cannot set color of invalid location " + row + ", " + col +
+                                       " to color " + color );
+        planes.setRGB( row, col, BoardPlanes.toRGB( color ) );
+    }
+
+    public Color getColor( int row, int col )
+    {
+        if ( !planes.isValid( row, col ) )
+            throw new RuntimeException( "Cannot get color from invalid location " + row + ", " +
+                                       col );
+        return planes.getColor( row, col );
+    }
+
+    public void setRGB( int row, int col, int argb )
+    {
+        if ( !planes.isValid( row, col ) )
+            throw new RuntimeException( "Cannot set color of invalid location " + row + ", " + col +
+                                       " to color " + Integer.toHexString( argb ) );
+        planes.setRGB( row, col, argb );
+    }
+
+    public int getRGB( int row, int col )
+    {
+        if ( !planes.isValid( row, col ) )
+            throw new RuntimeException( "Cannot get color from invalid location " + row + ", " +
+                                       col );
+        return planes.getRGB( row, col );
+    }
+
+    public void setBackground( Color color )
+    {
+        planes.fillRGB( BoardPlanes.toRGB( color ) );
+    }
+
+    public void setImage( int row, int col, String imageFileName )
+    {
+        if ( !planes.isValid( row, col ) )
+            throw new RuntimeException( "Cannot set image for invalid location " + row + ", " +
+                                       col + " to \"" + imageFileName + "\"" );
+        planes.setImage( row, col, imageFileName );
+    }
+
+    public String getImage( int row, int col )
+    {
+        if ( !planes.isValid( row, col ) )
+            throw new RuntimeException( "Cannot get image for invalid location " + row + ", " +
+                                       col );
+        return planes.getImage( row, col );
+    }
+
+    public SpriteTable getSpriteTable()
+    {
+        return planes.getSpriteTable();
+    }
+
+    public int getSprite( int row, int col )
+    {
+        if ( !planes.isValid( row, col ) )
+            throw new RuntimeException( "Cannot get image for invalid location " + row + ", " +
+                                       col );
+        return planes.getSprite( row, col );
+    }
+
+    public void setSprite( int row, int col, int id )
+    {
+        if ( !planes.isValid( row, col ) )
+            throw new RuntimeException( "Cannot set image for invalid location " + row + ", " +
+                                       col + " to sprite " + id );
+        planes.setSprite( row, col, id );
+    }
+
+    public CollisionIndex getCollisionIndex()
+    {
+        return planes.getCollisionIndex();
+    }
+
+    public void shiftLeft()
+    {
+        planes.shiftLeft();
+    }
+
+    public DirtyRegion trackChanges()
+    {
+        return planes.trackChanges();
+    }
+
+    /**
+     * Nothing is drawn, so batches of changes need no special handling.
+     */
+    public void beginUpdate()
+    {
+    }
+
+    public void commitUpdate()
+    {
+    }
+
+    public void load( String imageFileName )
+    {
+        BufferedImage image;
+        try
+        {
+            image = ImageIO.read( new File( imageFileName ) );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to read from file:  " + imageFileName );
+        }
+        if ( image == null )
+            throw new RuntimeException( "unable to read from file:  " + imageFileName );
+
+        planes.sampleImage( image );
+        setTitle( imageFileName );
+    }
+
+    /**
+     * A headless board has no picture to save.
+     */
+    public void save( String imageFileName )
+    {
+        throw new RuntimeException( "cannot save image of headless board:  " + imageFileName );
+    }
+
+    /**
+     * A headless board never receives key presses.
+     */
+    public void addKeyListener( KeyListener listener )
+    {
+    }
+}
\ No newline at end of file
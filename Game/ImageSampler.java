@@ -0,0 +1,112 @@
+/**
+ * Samples a picture down to one color per Cell of a board, for the Scrolling
+ * Game project (used to show a picture as the background of a board). Cell
+ * (row, col) takes the color of pixel (col * width / numCols,
+ * row * height / numRows), made opaque.
+ *
+ * Pixels are read straight from the picture's backing array when it is
+ * stored in one of the usual formats (packed ints, or the interleaved bytes
+ * ImageIO gives for most files), and one image row at a time with getRGB()
+ * otherwise; never with a getRGB( x, y ) call or Color object per Cell.
+ * Large boards are split into bands of rows sampled on all cores (see
+ * RowBands).
+ */
+import java.awt.image.*;
+
+public class ImageSampler
+{
+    private ImageSampler()
+    {
+    }
+
+    /**
+     * Samples a picture onto a board's background colors.
+     *
+     * @param image Picture to sample.
+     * @param numRows Number of rows in board.
+     * @param numCols Number of columns in board.
+     * @param argb Packed ARGB colors of the board, set to the samples (Cell
+     *            (row, col) at index row * numCols + col).
+     */
+    public static void sample( BufferedImage image, int numRows, int numCols, int[] argb )
+    {
+        if ( argb.length < numRows * numCols )
+            throw new RuntimeException( "color array too small for " + numRows + " x " + numCols +
+                                        " board" );
+        int width = image.getWidth();
+        int[] xs = new int[numCols];
+        for ( int col = 0; col < numCols; col++ )
+            xs[col] = (int) ( (long) col * width / numCols );
+
+        RowBands.forEach( numRows, numCols,
+                          ( fromRow, toRow ) -> sampleRows( image, xs, numRows, argb, fromRow,
+                                                            toRow ) );
+    }
+
+    /* Utility method: samples board rows [fromRow, toRow). */
+    private static void sampleRows( BufferedImage image, int[] xs, int numRows, int[] argb,
+                                    int fromRow, int toRow )
+    {
+        int numCols = xs.length;
+        int height = image.getHeight();
+        WritableRaster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        SampleModel model = raster.getSampleModel();
+        // Where pixel (0, 0) is in the sample model (not the origin for
+        // sub-images, which share their parent's data).
+        int dx = -raster.getSampleModelTranslateX();
+        int dy = -raster.getSampleModelTranslateY();
+
+        // Reading the backing array stops Java2D from keeping a copy of the
+        // picture in video memory, which is fine for one only being sampled.
+        int type = image.getType();
+        if ( ( type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB ) &&
+             buffer instanceof DataBufferInt && model instanceof SinglePixelPackedSampleModel )
+        {
+            int[] data = ( (DataBufferInt) buffer ).getData();
+            int stride = ( (SinglePixelPackedSampleModel) model ).getScanlineStride();
+            for ( int row = fromRow; row < toRow; row++ )
+            {
+                int y = (int) ( (long) row * height / numRows );
+                int base = buffer.getOffset() + ( y + dy ) * stride + dx;
+                for ( int col = 0, index = row * numCols; col < numCols; col++, index++ )
+                    argb[index] = data[base + xs[col]] | BoardPlanes.BLACK;
+            }
+            return;
+        }
+
+        if ( ( type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR ) &&
+             buffer instanceof DataBufferByte && model instanceof PixelInterleavedSampleModel )
+        {
+            byte[] data = ( (DataBufferByte) buffer ).getData();
+            ComponentSampleModel components = (ComponentSampleModel) model;
+            int stride = components.getScanlineStride();
+            int pixelStride = components.getPixelStride();
+            // Bands 0, 1 and 2 are red, green and blue in both formats.
+            int[] bands = components.getBandOffsets();
+            for ( int row = fromRow; row < toRow; row++ )
+            {
+                int y = (int) ( (long) row * height / numRows );
+                int base = buffer.getOffset() + ( y + dy ) * stride + dx * pixelStride;
+                for ( int col = 0, index = row * numCols; col < numCols; col++, index++ )
+                {
+                    int p = base + xs[col] * pixelStride;
+                    argb[index] = BoardPlanes.BLACK | ( data[p + bands[0]] & 0xff ) << 16 |
+                                  ( data[p + bands[1]] & 0xff ) << 8 | ( data[p + bands[2]] & 0xff );
+                }
+            }
+            return;
+        }
+
+        // Any other format: convert one whole image row per board row.
+        int width = image.getWidth();
+        int[] line = new int[width];
+        for ( int row = fromRow; row < toRow; row++ )
+        {
+            int y = (int) ( (long) row * height / numRows );
+            image.getRGB( 0, y, width, 1, line, 0, width );
+            for ( int col = 0, index = row * numCols; col < numCols; col++, index++ )
+                argb[index] = line[xs[col]] | BoardPlanes.BLACK;
+        }
+    }
+}
\ No newline at end of file
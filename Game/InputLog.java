@@ -0,0 +1,176 @@
+/**
+ * Record of a game's input for the Scrolling Game project: the seed its
+ * GameRandom started from, and the direction the user moved in each step
+ * (packed into 2 bits per step). Replaying the log with
+ * AbstractGame.replay() plays the very same game again, as fast as
+ * possible, so that a bad session can be studied or profiled.
+ *
+ * Saved logs hold a magic number, a version, the seed, the board size, the
+ * number of steps and then the packed directions.
+ */
+import java.io.*;
+import java.util.Arrays;
+
+public class InputLog
+{
+    // "GLOG": start of every saved log.
+    private static final int MAGIC = 0x474c4f47;
+    private static final int VERSION = 1;
+
+    // Codes stored for each step (2 bits).
+    private static final int STAY = 0;
+    private static final int MOVE_UP = 1;
+    private static final int MOVE_DOWN = 2;
+
+    private final long seed;
+    private final int numRows;
+    private final int numCols;
+    private byte[] moves;
+    private int size;
+
+    /**
+     * Creates an empty log for a game.
+     *
+     * @param seed State of the game's GameRandom when recording started.
+     * @param numRows Number of rows in the game's board.
+     * @param numCols Number of columns in the game's board.
+     */
+    public InputLog( long seed, int numRows, int numCols )
+    {
+        this.seed = seed;
+        this.numRows = numRows;
+        this.numCols = numCols;
+        moves = new byte[64];
+        size = 0;
+    }
+
+    /**
+     * @return State of the game's GameRandom when recording started.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * @return Number of rows in the recorded game's board.
+     */
+    public int getNumRows()
+    {
+        return numRows;
+    }
+
+    /**
+     * @return Number of columns in the recorded game's board.
+     */
+    public int getNumCols()
+    {
+        return numCols;
+    }
+
+    /**
+     * @return Number of steps recorded.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Records the direction used for the next step.
+     *
+     * @param direction AbstractGame.UP, AbstractGame.DOWN or 0.
+     */
+    public void record( int direction )
+    {
+        int code;
+        if ( direction == 0 )
+            code = STAY;
+        else if ( direction == AbstractGame.UP )
+            code = MOVE_UP;
+        else if ( direction == AbstractGame.DOWN )
+            code = MOVE_DOWN;
+        else
+            throw new RuntimeException( "cannot record direction:  " + direction );
+
+        if ( size >> 2 == moves.length )
+            moves = Arrays.copyOf( moves, moves.length * 2 );
+        moves[size >> 2] |= code << ( ( size & 3 ) << 1 );
+        size++;
+    }
+
+    /**
+     * @param step Number of step (from 0).
+     *
+     * @return Direction recorded for that step (AbstractGame.UP,
+     *         AbstractGame.DOWN or 0).
+     */
+    public int get( int step )
+    {
+        if ( step < 0 || step >= size )
+            throw new RuntimeException( "no step " + step + " in log of " + size + " steps" );
+        int code = ( moves[step >> 2] >> ( ( step & 3 ) << 1 ) ) & 3;
+        if ( code == MOVE_UP )
+            return AbstractGame.UP;
+        if ( code == MOVE_DOWN )
+            return AbstractGame.DOWN;
+        return 0;
+    }
+
+    /**
+     * Saves log to a file.
+     *
+     * @param fileName Name of file to write.
+     */
+    public void save( String fileName )
+    {
+        try ( DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream( new FileOutputStream( fileName ) ) ) )
+        {
+            out.writeInt( MAGIC );
+            out.writeInt( VERSION );
+            out.writeLong( seed );
+            out.writeInt( numRows );
+            out.writeInt( numCols );
+            out.writeInt( size );
+            out.write( moves, 0, ( size + 3 ) >> 2 );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to save input log to file:  " + fileName );
+        }
+    }
+
+    /**
+     * Reads a log saved by save().
+     *
+     * @param fileName Name of file to read.
+     *
+     * @return Log read from file.
+     */
+    public static InputLog load( String fileName )
+    {
+        try ( DataInputStream in = new DataInputStream(
+                new BufferedInputStream( new FileInputStream( fileName ) ) ) )
+        {
+            if ( in.readInt() != MAGIC )
+                throw new RuntimeException( "not an input log:  " + fileName );
+            int version = in.readInt();
+            if ( version != VERSION )
+                throw new RuntimeException( "unsupported input log version " + version + ":  " +
+                                           fileName );
+            InputLog log = new InputLog( in.readLong(), in.readInt(), in.readInt() );
+            int size = in.readInt();
+            if ( size < 0 )
+                throw new RuntimeException( "corrupt input log:  " + fileName );
+            log.moves = new byte[Math.max( 64, ( size + 3 ) >> 2 )];
+            in.readFully( log.moves, 0, ( size + 3 ) >> 2 );
+            log.size = size;
+            return log;
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to read input log from file:  " + fileName );
+        }
+    }
+}
\ No newline at end of file
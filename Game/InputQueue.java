@@ -0,0 +1,75 @@
+/**
+ * Queue of directions chosen by the player, for the Scrolling Game project.
+ * Key presses are added by the GUI thread and taken, one per step, by the
+ * game thread, so presses made between two steps are all kept (in order)
+ * rather than the last one overwriting the others. Neither side locks: the
+ * queue is a fixed ring of slots with an atomic count of slots added and
+ * another of slots taken.
+ *
+ * Only one thread may add and only one thread may take.
+ */
+import java.util.concurrent.atomic.AtomicLong;
+
+public class InputQueue
+{
+    // Number of directions held at most (a power of two); presses beyond
+    // this many steps ahead are dropped.
+    public static final int CAPACITY = 64;
+
+    private final int[] directions;
+    // Number of directions ever taken (written only by the taking thread).
+    private final AtomicLong head;
+    // Number of directions ever added (written only by the adding thread).
+    private final AtomicLong tail;
+
+    /**
+     * Basic constructor; creates an empty queue.
+     */
+    public InputQueue()
+    {
+        directions = new int[CAPACITY];
+        head = new AtomicLong();
+        tail = new AtomicLong();
+    }
+
+    /**
+     * Adds a direction to the end of the queue.
+     *
+     * @param direction Direction (AbstractGame.UP or AbstractGame.DOWN).
+     *
+     * @return false if the queue was full, so the direction was dropped.
+     */
+    public boolean offer( int direction )
+    {
+        long t = tail.get();
+        if ( t - head.get() == CAPACITY )
+            return false;
+        directions[(int) t & ( CAPACITY - 1 )] = direction;
+        // Publishes the slot written above along with the new count.
+        tail.lazySet( t + 1 );
+        return true;
+    }
+
+    /**
+     * Takes the direction at the front of the queue.
+     *
+     * @return Direction taken, or 0 if the queue is empty.
+     */
+    public int poll()
+    {
+        long h = head.get();
+        if ( h == tail.get() )
+            return 0;
+        int direction = directions[(int) h & ( CAPACITY - 1 )];
+        head.lazySet( h + 1 );
+        return direction;
+    }
+
+    /**
+     * @return true if there is nothing to take.
+     */
+    public boolean isEmpty()
+    {
+        return head.get() == tail.get();
+    }
+}
\ No newline at end of file
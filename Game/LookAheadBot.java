@@ -0,0 +1,290 @@
+/**
+ * A player that looks ahead, for the Scrolling Game project, used for
+ * automated play and for load and soak testing the engine. Before each
+ * step it captures the game in a SaveState, then tries out plans on copies
+ * of the game (each on its own HeadlessBoard): a first move (up, down or
+ * none), then heading for one row of the board and staying there. Each
+ * plan is played for some steps and scored by the objects got and hit,
+ * and the first move of the best plan is chosen.
+ *
+ * Plans are tried over a growing number of steps (4, 8, 16, ... up to
+ * getMaxHorizon()), spread over a pool of threads, each with its own copy
+ * of the game. Searching stops when the time budget for the step runs
+ * out, and the best plan from the longest look-ahead finished is used.
+ * With no budget the bot always looks getMaxHorizon() steps ahead, and
+ * plays the same game every time.
+ *
+ * Copies of the game are made by a given factory, which must set them up
+ * just as the game being played (same class, size and settings).
+ */
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+public class LookAheadBot implements Controller
+{
+    // Score of a plan that ran out of time.
+    private static final int ABORTED = Integer.MIN_VALUE;
+    // Shortest look-ahead tried, in steps.
+    private static final int MIN_HORIZON = 4;
+    // Score lost by a plan that ends the game.
+    private static final int GAME_OVER_PENALTY = 1000000;
+    // First moves of plans, staying put first so that ties favor it.
+    private static final int[] FIRST_MOVES = { 0, AbstractGame.UP, AbstractGame.DOWN };
+
+    private final long budgetNanos;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Simulation> simulations;
+    private int maxHorizon;
+    private int avoidWeight;
+
+    // State of the game being played, captured before each search, and the
+    // plans tried from it (reused from one search to the next).
+    private final SaveState current;
+    private final List<Plan> plans;
+    private long searches;
+    private int lastHorizon;
+    private final FrameStats searchStats;
+
+    /**
+     * Basic constructor.
+     *
+     * @param factory Makes copies of the game, for trying out plans.
+     * @param parallelism Number of threads to search with (1 searches on
+     *            the game thread itself).
+     * @param budgetNanos Most time to spend choosing each move, in
+     *            nanoseconds (0 for no limit).
+     */
+    public LookAheadBot( Supplier<AbstractGame> factory, int parallelism, long budgetNanos )
+    {
+        if ( parallelism < 1 )
+            throw new RuntimeException( "invalid parallelism:  " + parallelism );
+        if ( budgetNanos < 0 )
+            throw new RuntimeException( "invalid time budget:  " + budgetNanos );
+        this.budgetNanos = budgetNanos;
+        pool = parallelism > 1 ? new ForkJoinPool( parallelism ) : null;
+        simulations = ThreadLocal.withInitial( () -> new Simulation( factory.get() ) );
+        maxHorizon = 32;
+        avoidWeight = 4;
+        current = new SaveState();
+        plans = new ArrayList<Plan>();
+        searches = 0;
+        lastHorizon = 0;
+        searchStats = new FrameStats( "search" );
+    }
+
+    /**
+     * @param maxHorizon Most steps to look ahead (at least 1).
+     */
+    public void setMaxHorizon( int maxHorizon )
+    {
+        if ( maxHorizon < 1 )
+            throw new RuntimeException( "invalid look-ahead:  " + maxHorizon );
+        this.maxHorizon = maxHorizon;
+    }
+
+    /**
+     * @return Most steps looked ahead.
+     */
+    public int getMaxHorizon()
+    {
+        return maxHorizon;
+    }
+
+    /**
+     * @param avoidWeight How many objects got make up for one object hit.
+     */
+    public void setAvoidWeight( int avoidWeight )
+    {
+        this.avoidWeight = avoidWeight;
+    }
+
+    /**
+     * @return Number of moves chosen so far.
+     */
+    public long getSearches()
+    {
+        return searches;
+    }
+
+    /**
+     * @return Steps looked ahead in choosing the last move (0 if time ran
+     *         out before any plan was scored).
+     */
+    public int getLastHorizon()
+    {
+        return lastHorizon;
+    }
+
+    /**
+     * @return Times taken to choose each move.
+     */
+    public FrameStats getSearchStats()
+    {
+        return searchStats;
+    }
+
+    /**
+     * Chooses the next move by searching ahead (see above).
+     *
+     * @param game Game being played.
+     *
+     * @return UP, DOWN or 0.
+     */
+    public int nextDirection( AbstractGame game )
+    {
+        long start = System.nanoTime();
+        long deadline = budgetNanos == 0 ? 0 : start + budgetNanos;
+        current.capture( game );
+        searches++;
+
+        // Plans nearest the user's row come first, so ties favor moving least.
+        int numRows = game.board.getNumRows();
+        int userRow = game.userRow;
+        while ( plans.size() < numRows * 3 )
+            plans.add( new Plan() );
+        int next = 0;
+        for ( int first : FIRST_MOVES )
+        {
+            for ( int distance = 0; distance < numRows; distance++ )
+            {
+                if ( userRow - distance >= 0 )
+                    plans.get( next++ ).set( first, userRow - distance, deadline );
+                if ( distance > 0 && userRow + distance < numRows )
+                    plans.get( next++ ).set( first, userRow + distance, deadline );
+            }
+        }
+        List<Plan> tried = plans.subList( 0, next );
+
+        int choice = 0;
+        lastHorizon = 0;
+        for ( int horizon = Math.min( MIN_HORIZON, maxHorizon ); ; horizon *= 2 )
+        {
+            horizon = Math.min( horizon, maxHorizon );
+            Plan best = search( tried, horizon );
+            if ( !finished( tried ) )
+            {
+                // Out of time; part of a search is only better than none.
+                if ( lastHorizon == 0 && best != null )
+                    choice = best.first;
+                break;
+            }
+            choice = best.first;
+            lastHorizon = horizon;
+            if ( horizon == maxHorizon )
+                break;
+        }
+        searchStats.record( System.nanoTime() - start );
+        return choice;
+    }
+
+    /**
+     * Stops the search threads.
+     */
+    public void close()
+    {
+        if ( pool != null )
+            pool.shutdown();
+    }
+
+    /*
+     * Utility method: scores every plan over horizon steps; returns the
+     * best of those finished before time ran out (null if none were).
+     */
+    private Plan search( List<Plan> tried, int horizon )
+    {
+        for ( Plan plan : tried )
+            plan.horizon = horizon;
+        if ( pool != null )
+            pool.invokeAll( tried );
+        else
+        {
+            for ( Plan plan : tried )
+                plan.call();
+        }
+
+        Plan best = null;
+        for ( Plan plan : tried )
+        {
+            if ( plan.score != ABORTED && ( best == null || plan.score > best.score ) )
+                best = plan;
+        }
+        return best;
+    }
+
+    /* Utility method: true if every plan was scored. */
+    private static boolean finished( List<Plan> tried )
+    {
+        for ( Plan plan : tried )
+        {
+            if ( plan.score == ABORTED )
+                return false;
+        }
+        return true;
+    }
+
+    /* Copy of the game, and of the state it is restored from, for one thread. */
+    private static class Simulation
+    {
+        final AbstractGame game;
+        final SaveState state;
+        long search;
+
+        Simulation( AbstractGame game )
+        {
+            this.game = game;
+            state = new SaveState();
+            search = -1;
+        }
+    }
+
+    /*
+     * One plan: make the first move, then head for the target row and stay
+     * there. Run as a task by the search threads; the deadline is checked
+     * every step so that the search ends promptly.
+     */
+    private class Plan implements Callable<Void>
+    {
+        int first;
+        int target;
+        long deadline;
+        int horizon;
+        int score;
+
+        void set( int first, int target, long deadline )
+        {
+            this.first = first;
+            this.target = target;
+            this.deadline = deadline;
+        }
+
+        public Void call()
+        {
+            score = ABORTED;
+            Simulation sim = simulations.get();
+            if ( deadline != 0 && System.nanoTime() - deadline > 0 )
+                return null;
+            if ( sim.search != searches )
+            {
+                sim.state.copyFrom( current );
+                sim.search = searches;
+            }
+            AbstractGame game = sim.game;
+            sim.state.restore( game );
+            int gets = game.timesGet;
+            int avoids = game.timesAvoid;
+            for ( int step = 0; step < horizon && !game.isGameOver(); step++ )
+            {
+                if ( deadline != 0 && System.nanoTime() - deadline > 0 )
+                    return null;
+                game.direction = step == 0 ? first : Integer.signum( target - game.userRow );
+                game.step();
+            }
+            int value = ( game.timesGet - gets ) - ( game.timesAvoid - avoids ) * avoidWeight;
+            if ( game.isGameOver() )
+                value -= GAME_OVER_PENALTY;
+            score = value;
+            return null;
+        }
+    }
+}
\ No newline at end of file
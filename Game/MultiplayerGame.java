@@ -0,0 +1,327 @@
+/**
+ * A Scrolling Game shared by several players, for the Scrolling Game
+ * project, as run by a GameServer. Objects scroll across one board just as
+ * in Game (with the same odds), and every player has an icon of their own
+ * in column 1, on a row of their own, with their own counts of objects got
+ * and hit. A player who hits maxTimesAvoid objects to avoid is out (their
+ * icon leaves the board), but the game goes on for the others, and players
+ * may join and leave at any time; the game itself never ends. As each player
+ * joins on a row of their own, no more players may join than there are rows
+ * (see isFull()).
+ *
+ * Moves may be queued from another thread (see Player.queueDirection());
+ * everything else, joining and leaving included, must be done by the
+ * thread that steps the game.
+ */
+import java.util.*;
+
+public class MultiplayerGame extends AbstractGame
+{
+    // Chances (out of 10) that a new object is one to avoid or one to get.
+    protected int avoidOdds;
+    protected int getOdds;
+    // Number of hits on objects to avoid that puts a player out.
+    protected int maxTimesAvoid;
+
+    private final List<Player> players;
+    private int nextId;
+    // Player whose moves and collisions are being dealt with.
+    private Player current;
+
+    /**
+     * Constructor for a game with no players yet, played on a given board.
+     *
+     * @param board Game-board to play on.
+     */
+    public MultiplayerGame( Board board )
+    {
+        super( board );
+        // Each player has an icon of their own; the single user's is unused.
+        board.setImage( userRow, 1, null );
+        avoidOdds = 4;
+        getOdds = 2;
+        maxTimesAvoid = 3;
+        players = new ArrayList<Player>();
+        nextId = 1;
+        current = null;
+
+        CollisionIndex collisions = board.getCollisionIndex();
+        SpriteTable sprites = board.getSpriteTable();
+        collisions.addListener( sprites.getId( getImg ), ( row, col, sprite ) ->
+        {
+            current.timesGet++;
+            timesGet++;
+        } );
+        collisions.addListener( sprites.getId( avoidImg ), ( row, col, sprite ) ->
+        {
+            current.timesAvoid++;
+            timesAvoid++;
+        } );
+    }
+
+    /**
+     * Adds a player, on the free row nearest the middle of the board.
+     *
+     * @return New player.
+     */
+    public Player addPlayer()
+    {
+        int numRows = board.getNumRows();
+        int middle = numRows / 2;
+        int row = -1;
+        for ( int distance = 0; distance < numRows && row < 0; distance++ )
+        {
+            if ( middle - distance >= 0 && isFree( middle - distance ) )
+                row = middle - distance;
+            else if ( middle + distance < numRows && isFree( middle + distance ) )
+                row = middle + distance;
+        }
+        if ( row < 0 )
+            throw new RuntimeException( "no free row for another player:  all " + numRows +
+                                       " rows are taken" );
+        Player player = new Player( nextId++, row );
+        players.add( player );
+        current = player;
+        checkCollision( row, 1 );
+        current = null;
+        board.setImage( row, 1, userImg );
+        return player;
+    }
+
+    /**
+     * @return true if every row has a player still in, so that no more may
+     *         join until one leaves or is out.
+     */
+    public boolean isFull()
+    {
+        for ( int row = 0; row < board.getNumRows(); row++ )
+        {
+            if ( isFree( row ) )
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Takes a player out of the game.
+     *
+     * @param player Player to remove.
+     */
+    public void removePlayer( Player player )
+    {
+        if ( !players.remove( player ) )
+            return;
+        if ( !player.out && isFree( player.row ) )
+            board.setImage( player.row, 1, null );
+        player.out = true;
+    }
+
+    /**
+     * @return Players in the game (not to be changed), in order of joining.
+     */
+    public List<Player> getPlayers()
+    {
+        return Collections.unmodifiableList( players );
+    }
+
+    /**
+     * Runs a single step of game-play: moves every player still in by the
+     * next direction they queued, and every waitTime milliseconds scrolls
+     * the screen and adds new objects.
+     */
+    protected void step()
+    {
+        board.beginUpdate();
+        // Icons are off the board while everything moves, and put back after.
+        for ( Player player : players )
+        {
+            if ( !player.out )
+                board.setImage( player.row, 1, null );
+        }
+        PhaseEvent phase = PhaseEvent.start( PhaseEvent.MOVE );
+        for ( Player player : players )
+        {
+            if ( player.out )
+                continue;
+            current = player;
+            direction = player.input.poll();
+            move();
+        }
+        PhaseEvent.end( phase );
+        direction = 0;
+        if ( msElapsed >= nextScrollTime )
+        {
+            phase = PhaseEvent.start( PhaseEvent.SCROLL_LEFT );
+            scrollLeft();
+            PhaseEvent.end( phase );
+            phase = PhaseEvent.start( PhaseEvent.POPULATE_RIGHT_EDGE );
+            populateRightEdge();
+            PhaseEvent.end( phase );
+            nextScrollTime += waitTime;
+        }
+        current = null;
+        for ( Player player : players )
+        {
+            if ( player.timesAvoid >= maxTimesAvoid )
+                player.out = true;
+            if ( !player.out )
+                board.setImage( player.row, 1, userImg );
+        }
+        board.commitUpdate();
+        msElapsed += STEP_TIME;
+    }
+
+    /**
+     * Moves the current player's icon up or down.
+     */
+    public void move()
+    {
+        int row = current.row + direction;
+        if ( direction != 0 && row >= 0 && row < board.getNumRows() )
+        {
+            current.row = row;
+            checkCollision( row, 1 );
+        }
+    }
+
+    /**
+     * Adds a new object to the right edge at random.
+     */
+    public void populateRightEdge()
+    {
+        int row = random.nextInt( board.getNumRows() );
+        int obj = random.nextInt( 10 );
+        if ( obj < avoidOdds )
+            board.setImage( row, board.getNumCols() - 1, avoidImg );
+        else if ( obj < avoidOdds + getOdds )
+            board.setImage( row, board.getNumCols() - 1, getImg );
+    }
+
+    /**
+     * Moves every object left one Cell (the players' icons are off the board
+     * while it scrolls), then checks each player's Cell for collisions.
+     */
+    public void scrollLeft()
+    {
+        board.shiftLeft();
+        for ( Player player : players )
+        {
+            if ( player.out )
+                continue;
+            current = player;
+            checkCollision( player.row, 1 );
+        }
+    }
+
+    /**
+     * Counts a hit by the current player on whatever object is at (row, col).
+     */
+    public void handleCollision( int row, int col )
+    {
+        board.getCollisionIndex().check( row, col );
+    }
+
+    /**
+     * @return Objects got by all players together.
+     */
+    public int getScore()
+    {
+        return timesGet;
+    }
+
+    /**
+     * @return false: the game goes on for as long as it is run.
+     */
+    public boolean isGameOver()
+    {
+        return false;
+    }
+
+    /* Utility method: true if no player still in has an icon on row. */
+    private boolean isFree( int row )
+    {
+        for ( Player player : players )
+        {
+            if ( !player.out && player.row == row )
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * One player of a MultiplayerGame.
+     */
+    public static class Player
+    {
+        private final int id;
+        private final InputQueue input;
+        private int row;
+        private int timesGet;
+        private int timesAvoid;
+        private boolean out;
+
+        /* Creates a player on a given row. */
+        private Player( int id, int row )
+        {
+            this.id = id;
+            this.row = row;
+            input = new InputQueue();
+            timesGet = 0;
+            timesAvoid = 0;
+            out = false;
+        }
+
+        /**
+         * @return Number of player, unique within the game.
+         */
+        public int getId()
+        {
+            return id;
+        }
+
+        /**
+         * @return Row of player's icon.
+         */
+        public int getRow()
+        {
+            return row;
+        }
+
+        /**
+         * @return Number of objects to get the player has got.
+         */
+        public int getTimesGet()
+        {
+            return timesGet;
+        }
+
+        /**
+         * @return Number of objects to avoid the player has hit.
+         */
+        public int getTimesAvoid()
+        {
+            return timesAvoid;
+        }
+
+        /**
+         * @return true if the player has hit too many objects to avoid, or
+         *         has left the game.
+         */
+        public boolean isOut()
+        {
+            return out;
+        }
+
+        /**
+         * Queues a direction for the player to move in, one per step (see
+         * AbstractGame.queueDirection()); may be called by one thread other
+         * than the game's.
+         *
+         * @param direction AbstractGame.UP or AbstractGame.DOWN.
+         */
+        public void queueDirection( int direction )
+        {
+            input.offer( direction );
+        }
+    }
+}
\ No newline at end of file
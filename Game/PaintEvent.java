@@ -0,0 +1,20 @@
+/**
+ * JDK Flight Recorder event timing one paint of a Grid, for the Scrolling
+ * Game project: bringing the back buffer up to date with the latest
+ * snapshot of the Cells and copying it to the screen (see PhaseEvent).
+ */
+import jdk.jfr.*;
+
+@Name( "scrollinggame.Paint" )
+@Label( "Grid Paint" )
+@Category( "Scrolling Game" )
+@Description( "Drawing the grid onto the screen (or into an image)" )
+@StackTrace( false )
+public class PaintEvent extends Event
+{
+    @Label( "Cells Repainted" )
+    public int cells;
+
+    @Label( "Active Rendering" )
+    public boolean active;
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+/**
+ * JDK Flight Recorder event timing one phase of a step of game-play, for
+ * the Scrolling Game project: moving the user, scrolling, filling the right
+ * edge, or checking a collision. Record a session with, for instance,
+ * java -XX:StartFlightRecording=filename=game.jfr Game
+ * and open the file in JDK Mission Control. When no recording is running
+ * (or this event is disabled in it) the events cost next to nothing.
+ */
+import jdk.jfr.*;
+
+@Name( "scrollinggame.Phase" )
+@Label( "Game Step Phase" )
+@Category( "Scrolling Game" )
+@Description( "One phase of a step of game-play" )
+@StackTrace( false )
+public class PhaseEvent extends Event
+{
+    // Names of the phases.
+    public static final String MOVE = "move";
+    public static final String SCROLL_LEFT = "scrollLeft";
+    public static final String POPULATE_RIGHT_EDGE = "populateRightEdge";
+    public static final String HANDLE_COLLISION = "handleCollision";
+    public static final String MOVE_ENTITIES = "moveEntities";
+
+    @Label( "Phase" )
+    public String phase;
+
+    // This event's type, looked up once the Flight Recorder is running.
+    private static volatile EventType type;
+
+    /**
+     * Starts timing a phase; pass the result to end() when it ends. Unless
+     * a recording is running with this event enabled, nothing is created at
+     * all, since steps are short enough for even that to show.
+     *
+     * @param phase Name of phase (one of the constants above).
+     *
+     * @return Event being timed (null if no recording wants it).
+     */
+    public static PhaseEvent start( String phase )
+    {
+        if ( !FlightRecorder.isInitialized() )
+            return null;
+        EventType known = type;
+        if ( known == null )
+        {
+            known = EventType.getEventType( PhaseEvent.class );
+            type = known;
+        }
+        if ( !known.isEnabled() )
+            return null;
+        PhaseEvent event = new PhaseEvent();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Finishes timing a phase.
+     *
+     * @param event Result of start() (may be null).
+     */
+    public static void end( PhaseEvent event )
+    {
+        if ( event != null )
+            event.commit();
+    }
+}
\ No newline at end of file
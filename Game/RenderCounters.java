@@ -0,0 +1,89 @@
+/**
+ * Running totals kept by a Grid as it draws, for the Scrolling Game
+ * project: how many repaints it has asked for, how many Cells it has
+ * actually redrawn, how many paints it has done, and how many sprites it has
+ * had to read from disk. Counting is cheap enough to be always on, and the
+ * totals may be read from any thread at any time.
+ */
+import java.util.concurrent.atomic.LongAdder;
+
+public class RenderCounters
+{
+    private final LongAdder repaintRequests = new LongAdder();
+    private final LongAdder cellsRepainted = new LongAdder();
+    private final LongAdder paints = new LongAdder();
+    private final LongAdder spriteLoads = new LongAdder();
+
+    /*
+     * Counts repaints asked of the GUI system (or frames shown actively).
+     */
+    void repaintRequested( int requests )
+    {
+        repaintRequests.add( requests );
+    }
+
+    /*
+     * Counts Cells redrawn.
+     */
+    void cellsRepainted( int cells )
+    {
+        cellsRepainted.add( cells );
+    }
+
+    /*
+     * Counts one paint of the grid.
+     */
+    void painted()
+    {
+        paints.increment();
+    }
+
+    /*
+     * Counts one sprite read from disk and scaled.
+     */
+    void spriteLoaded()
+    {
+        spriteLoads.increment();
+    }
+
+    /**
+     * @return Number of repaints asked for so far.
+     */
+    public long getRepaintRequests()
+    {
+        return repaintRequests.sum();
+    }
+
+    /**
+     * @return Number of Cells redrawn so far.
+     */
+    public long getCellsRepainted()
+    {
+        return cellsRepainted.sum();
+    }
+
+    /**
+     * @return Number of paints so far.
+     */
+    public long getPaints()
+    {
+        return paints.sum();
+    }
+
+    /**
+     * @return Number of sprites read from disk so far.
+     */
+    public long getSpriteLoads()
+    {
+        return spriteLoads.sum();
+    }
+
+    /**
+     * @return One-line summary of the totals.
+     */
+    public String toString()
+    {
+        return "repaints=" + getRepaintRequests() + " cells=" + getCellsRepainted() + " paints=" +
+               getPaints() + " spriteLoads=" + getSpriteLoads();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,132 @@
+/**
+ * Runs work on a board in bands of rows on all cores, for the Scrolling
+ * Game project, so that a step of a very big board (scrolling it, filling
+ * its background, publishing a snapshot of it) does not take longer than
+ * the tick. Work on a board with fewer than PARALLEL_CELLS Cells to look at
+ * (or on a single-core machine) is simply done on the calling thread, as
+ * splitting it would cost more than it saves.
+ *
+ * Bands must only write to their own rows. Anything else a band finds out
+ * (how many rows it changed, say) is returned from it, and the results of
+ * neighbouring bands are merged as they join, so bands never share a
+ * counter or wait for each other.
+ */
+import java.util.concurrent.*;
+import java.util.function.BinaryOperator;
+
+public class RowBands
+{
+    // Work on at least this many Cells is split into bands.
+    public static final int PARALLEL_CELLS = 1 << 16;
+
+    private RowBands()
+    {
+    }
+
+    /**
+     * Work on one band of rows.
+     */
+    public interface Action
+    {
+        /**
+         * @param fromRow First row of band.
+         * @param toRow Row after last row of band.
+         */
+        void run( int fromRow, int toRow );
+    }
+
+    /**
+     * Work on one band of rows that finds something out.
+     */
+    public interface Band<T>
+    {
+        /**
+         * @param fromRow First row of band.
+         * @param toRow Row after last row of band.
+         *
+         * @return What the band found.
+         */
+        T run( int fromRow, int toRow );
+    }
+
+    /**
+     * @param numRows Number of rows.
+     * @param cellsPerRow Number of Cells looked at in each row.
+     *
+     * @return true if work of that size is split into bands.
+     */
+    public static boolean isParallel( int numRows, int cellsPerRow )
+    {
+        return numRows > 1 && (long) numRows * cellsPerRow >= PARALLEL_CELLS &&
+               ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    /**
+     * Runs work on rows [0, numRows), in bands if it is big enough.
+     *
+     * @param numRows Number of rows.
+     * @param cellsPerRow Number of Cells looked at in each row.
+     * @param action Work to do on each band.
+     */
+    public static void forEach( int numRows, int cellsPerRow, Action action )
+    {
+        reduce( numRows, cellsPerRow, ( from, to ) ->
+        {
+            action.run( from, to );
+            return null;
+        }, ( a, b ) -> null );
+    }
+
+    /**
+     * Runs work on rows [0, numRows), in bands if it is big enough, and
+     * merges what the bands found.
+     *
+     * @param numRows Number of rows.
+     * @param cellsPerRow Number of Cells looked at in each row.
+     * @param band Work to do on each band.
+     * @param merge Merges the results of two neighbouring bands (the upper
+     *            band's first).
+     *
+     * @return Merged result of all bands.
+     */
+    public static <T> T reduce( int numRows, int cellsPerRow, Band<T> band, BinaryOperator<T> merge )
+    {
+        if ( !isParallel( numRows, cellsPerRow ) )
+            return band.run( 0, numRows );
+        int chunk = Math.max( 1, PARALLEL_CELLS / 4 / Math.max( 1, cellsPerRow ) );
+        return ForkJoinPool.commonPool().invoke( new Split<T>( band, merge, 0, numRows, chunk ) );
+    }
+
+    /*
+     * A band of rows, split in two until small enough.
+     */
+    @SuppressWarnings( "serial" )
+    private static class Split<T> extends RecursiveTask<T>
+    {
+        private final Band<T> band;
+        private final BinaryOperator<T> merge;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        Split( Band<T> band, BinaryOperator<T> merge, int from, int to, int chunk )
+        {
+            this.band = band;
+            this.merge = merge;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        protected T compute()
+        {
+            if ( to - from <= chunk )
+                return band.run( from, to );
+            int middle = ( from + to ) >>> 1;
+            Split<T> upper = new Split<T>( band, merge, from, middle, chunk );
+            upper.fork();
+            T lower = new Split<T>( band, merge, middle, to, chunk ).compute();
+            return merge.apply( upper.join(), lower );
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,320 @@
+/**
+ * Saved state of a game, for the Scrolling Game project: everything needed
+ * to carry on playing exactly where it left off (the board's images and
+ * colors, the entities, the score, timers and user position, and the state
+ * of the random number generator), packed into one flat buffer.
+ *
+ * A SaveState can be captured and restored over and over; its buffer is
+ * only ever replaced when it needs to grow, so checkpointing every step
+ * (for undo, or rewinding) takes a few microseconds and makes no garbage.
+ * Keep an array of them as a ring to rewind several steps. A state can
+ * also be restored into a different game of the same class and size (for
+ * instance one on a HeadlessBoard), to fork simulations from it.
+ *
+ * States are written to a file with save(), through a FileChannel, and read
+ * back with load(), which maps the file into memory rather than copying it.
+ * Files hold a magic number and a version, then the board size, game
+ * fields, image-file names and both planes (in board order, whatever the
+ * scrolling), then the entities.
+ */
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+public class SaveState
+{
+    // "GSAV": start of every save-state.
+    private static final int MAGIC = 0x47534156;
+    public static final int VERSION = 1;
+
+    private ByteBuffer buffer;
+    private int size;
+
+    // Encoded image-file names, by sprite id, kept so that capturing does
+    // not encode them again each time.
+    private final String[] names;
+    private final byte[][] encodedNames;
+    // Sprite id on the board being restored of each saved sprite id.
+    private final int[] spriteMap;
+
+    /**
+     * Basic constructor; creates an empty state (holding no game yet).
+     */
+    public SaveState()
+    {
+        buffer = ByteBuffer.allocate( 4096 );
+        size = 0;
+        names = new String[SpriteTable.MAX_SPRITES + 1];
+        encodedNames = new byte[SpriteTable.MAX_SPRITES + 1][];
+        spriteMap = new int[SpriteTable.MAX_SPRITES + 1];
+    }
+
+    /**
+     * @return Number of bytes held (0 if nothing has been captured).
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Records the state of a game, replacing whatever was held. Should be
+     * called between steps.
+     *
+     * @param game Game to record.
+     */
+    public void capture( AbstractGame game )
+    {
+        Board board = game.board;
+        int numRows = board.getNumRows();
+        int numCols = board.getNumCols();
+        SpriteTable table = board.getSpriteTable();
+        int numSprites = table.size();
+
+        int needed = 4 * 12 + 8 * 2 + numRows * numCols * 5 + game.entities.stateSize();
+        for ( int id = 1; id < numSprites; id++ )
+            needed += 2 + encodedName( id, table.getName( id ) ).length;
+        if ( buffer.capacity() < needed || buffer.isReadOnly() )
+            buffer = ByteBuffer.allocate( Math.max( needed, buffer.capacity() * 2 ) );
+
+        ByteBuffer out = buffer;
+        out.clear();
+        out.putInt( MAGIC );
+        out.putInt( VERSION );
+        out.putInt( numRows );
+        out.putInt( numCols );
+
+        out.putInt( game.userRow );
+        out.putInt( game.direction );
+        out.putInt( game.timesGet );
+        out.putInt( game.timesAvoid );
+        out.putInt( game.waitTime );
+        out.putInt( game.msElapsed );
+        out.putInt( game.nextScrollTime );
+        out.putLong( game.random.getState() );
+        ChunkedWorld world = game.getWorld();
+        out.putLong( world == null ? -1 : world.getColumn() );
+
+        out.putInt( numSprites );
+        for ( int id = 1; id < numSprites; id++ )
+        {
+            byte[] name = encodedNames[id];
+            out.putShort( (short) name.length );
+            out.put( name );
+        }
+
+        for ( int row = 0; row < numRows; row++ )
+            for ( int col = 0; col < numCols; col++ )
+                out.put( (byte) board.getSprite( row, col ) );
+        for ( int row = 0; row < numRows; row++ )
+            for ( int col = 0; col < numCols; col++ )
+                out.putInt( board.getRGB( row, col ) );
+
+        game.entities.writeState( out );
+        size = out.position();
+    }
+
+    /**
+     * Makes this a copy of another state (for instance, so that each of
+     * several threads can restore it: a SaveState must only be used by one
+     * thread at a time).
+     *
+     * @param other State to copy.
+     */
+    public void copyFrom( SaveState other )
+    {
+        if ( buffer.capacity() < other.size || buffer.isReadOnly() )
+            buffer = ByteBuffer.allocate( Math.max( other.size, buffer.capacity() * 2 ) );
+        ByteBuffer from = other.buffer.duplicate();
+        from.position( 0 ).limit( other.size );
+        buffer.clear();
+        buffer.put( from );
+        size = other.size;
+    }
+
+    /**
+     * Puts a game back into the state held, as one batch of changes to its
+     * board (so only Cells that differ are repainted). Should be called
+     * between steps.
+     *
+     * @param game Game to restore, with a board of the size recorded and the
+     *            same kinds of entity defined.
+     */
+    public void restore( AbstractGame game )
+    {
+        if ( size == 0 )
+            throw new RuntimeException( "no game state has been captured" );
+        ByteBuffer in = buffer.duplicate();
+        in.position( 0 ).limit( size );
+        try
+        {
+            read( in, game );
+        }
+        catch ( BufferUnderflowException e )
+        {
+            throw new RuntimeException( "corrupt save-state" );
+        }
+    }
+
+    /**
+     * Writes the state held to a file.
+     *
+     * @param fileName Name of file to write.
+     */
+    public void save( String fileName )
+    {
+        if ( size == 0 )
+            throw new RuntimeException( "no game state has been captured" );
+        ByteBuffer out = buffer.duplicate();
+        out.position( 0 ).limit( size );
+        try ( FileChannel channel = FileChannel.open( Paths.get( fileName ),
+                                                      StandardOpenOption.CREATE,
+                                                      StandardOpenOption.TRUNCATE_EXISTING,
+                                                      StandardOpenOption.WRITE ) )
+        {
+            while ( out.hasRemaining() )
+                channel.write( out );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to save game state to file:  " + fileName );
+        }
+    }
+
+    /**
+     * Reads a state written by save(), by mapping the file into memory.
+     *
+     * @param fileName Name of file to read.
+     *
+     * @return State read from file, ready to restore().
+     */
+    public static SaveState load( String fileName )
+    {
+        try ( FileChannel channel = FileChannel.open( Paths.get( fileName ),
+                                                      StandardOpenOption.READ ) )
+        {
+            long length = channel.size();
+            if ( length < 8 || length > Integer.MAX_VALUE )
+                throw new RuntimeException( "not a save-state:  " + fileName );
+            ByteBuffer mapped = channel.map( FileChannel.MapMode.READ_ONLY, 0, length );
+            if ( mapped.getInt( 0 ) != MAGIC )
+                throw new RuntimeException( "not a save-state:  " + fileName );
+            int version = mapped.getInt( 4 );
+            if ( version != VERSION )
+                throw new RuntimeException( "unsupported save-state version " + version + ":  " +
+                                           fileName );
+            SaveState state = new SaveState();
+            state.buffer = mapped;
+            state.size = (int) length;
+            return state;
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to read game state from file:  " + fileName );
+        }
+    }
+
+    /* Utility method: reads a state from in into game. */
+    private void read( ByteBuffer in, AbstractGame game )
+    {
+        if ( in.getInt() != MAGIC || in.getInt() != VERSION )
+            throw new RuntimeException( "not a save-state" );
+        Board board = game.board;
+        int numRows = in.getInt();
+        int numCols = in.getInt();
+        if ( numRows != board.getNumRows() || numCols != board.getNumCols() )
+            throw new RuntimeException( "save-state is for a " + numRows + " x " + numCols +
+                                       " board, not " + board.getNumRows() + " x " +
+                                       board.getNumCols() );
+
+        int userRow = in.getInt();
+        int direction = in.getInt();
+        int timesGet = in.getInt();
+        int timesAvoid = in.getInt();
+        int waitTime = in.getInt();
+        int msElapsed = in.getInt();
+        int nextScrollTime = in.getInt();
+        long randomState = in.getLong();
+        long worldColumn = in.getLong();
+        ChunkedWorld world = game.getWorld();
+        if ( ( worldColumn >= 0 ) != ( world != null ) )
+            throw new RuntimeException( worldColumn >= 0 ? "save-state needs a world"
+                                                         : "save-state has no world" );
+
+        // Image-file names may have different ids on this board.
+        int numSprites = in.getInt();
+        if ( numSprites < 1 || numSprites > SpriteTable.MAX_SPRITES + 1 )
+            throw new RuntimeException( "corrupt save-state" );
+        SpriteTable table = board.getSpriteTable();
+        spriteMap[SpriteTable.NONE] = SpriteTable.NONE;
+        for ( int id = 1; id < numSprites; id++ )
+            spriteMap[id] = table.getId( readName( in, id ) );
+        for ( int id = numSprites; id <= SpriteTable.MAX_SPRITES; id++ )
+            spriteMap[id] = SpriteTable.NONE;
+
+        board.beginUpdate();
+        try
+        {
+            for ( int row = 0; row < numRows; row++ )
+                for ( int col = 0; col < numCols; col++ )
+                    board.setSprite( row, col, spriteMap[in.get() & 0xff] );
+            for ( int row = 0; row < numRows; row++ )
+                for ( int col = 0; col < numCols; col++ )
+                    board.setRGB( row, col, in.getInt() );
+            game.entities.readState( in, spriteMap );
+        }
+        finally
+        {
+            board.commitUpdate();
+        }
+
+        game.userRow = userRow;
+        game.direction = direction;
+        game.timesGet = timesGet;
+        game.timesAvoid = timesAvoid;
+        game.waitTime = waitTime;
+        game.msElapsed = msElapsed;
+        game.nextScrollTime = nextScrollTime;
+        game.random.setState( randomState );
+        if ( world != null )
+            world.seek( worldColumn );
+        game.updateTitle();
+    }
+
+    /* Utility method: reads the name of sprite id, decoding it only if new. */
+    private String readName( ByteBuffer in, int id )
+    {
+        int length = in.getShort() & 0xffff;
+        byte[] cached = encodedNames[id];
+        if ( cached != null && cached.length == length )
+        {
+            int start = in.position();
+            int i = 0;
+            while ( i < length && in.get( start + i ) == cached[i] )
+                i++;
+            if ( i == length )
+            {
+                in.position( start + length );
+                return names[id];
+            }
+        }
+        byte[] name = new byte[length];
+        in.get( name );
+        names[id] = new String( name, StandardCharsets.UTF_8 );
+        encodedNames[id] = name;
+        return names[id];
+    }
+
+    /* Utility method: UTF-8 form of an image-file name, encoded once per id. */
+    private byte[] encodedName( int id, String name )
+    {
+        if ( names[id] != name )
+        {
+            names[id] = name;
+            encodedNames[id] = name.getBytes( StandardCharsets.UTF_8 );
+        }
+        return encodedNames[id];
+    }
+}
\ No newline at end of file
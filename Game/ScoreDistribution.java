@@ -0,0 +1,193 @@
+/**
+ * Distribution of final scores over many games, for the Scrolling Game
+ * project (see BatchSimulator). Keeps a count of games for every score seen,
+ * plus the number of steps played, so two distributions gathered on
+ * different threads can simply be merged.
+ */
+public class ScoreDistribution
+{
+    // counts[i] is the number of games that scored (lowest + i).
+    private long[] counts;
+    private int lowest;
+    private long games;
+    private long totalScore;
+    private long totalSteps;
+    private long unfinished;
+
+    /**
+     * Basic constructor; creates an empty distribution.
+     */
+    public ScoreDistribution()
+    {
+        counts = new long[16];
+        lowest = 0;
+        games = 0;
+        totalScore = 0;
+        totalSteps = 0;
+        unfinished = 0;
+    }
+
+    /**
+     * Adds the result of one game.
+     *
+     * @param score Final score of game.
+     * @param steps Number of steps the game ran.
+     * @param finished false if the game was stopped before it was over.
+     */
+    public void add( int score, long steps, boolean finished )
+    {
+        addCount( score, 1 );
+        totalScore += score;
+        totalSteps += steps;
+        if ( !finished )
+            unfinished++;
+    }
+
+    /**
+     * Adds all games of another distribution to this one.
+     *
+     * @param other Distribution to add (left unchanged).
+     */
+    public void merge( ScoreDistribution other )
+    {
+        for ( int i = 0; i < other.counts.length; i++ )
+        {
+            if ( other.counts[i] != 0 )
+                addCount( other.lowest + i, other.counts[i] );
+        }
+        totalScore += other.totalScore;
+        totalSteps += other.totalSteps;
+        unfinished += other.unfinished;
+    }
+
+    /**
+     * @return Number of games.
+     */
+    public long getCount()
+    {
+        return games;
+    }
+
+    /**
+     * @param score A score.
+     *
+     * @return Number of games with exactly that score.
+     */
+    public long getCount( int score )
+    {
+        int i = score - lowest;
+        return i < 0 || i >= counts.length ? 0 : counts[i];
+    }
+
+    /**
+     * @return Number of games stopped before they were over.
+     */
+    public long getUnfinished()
+    {
+        return unfinished;
+    }
+
+    /**
+     * @return Total number of steps played by all games.
+     */
+    public long getTotalSteps()
+    {
+        return totalSteps;
+    }
+
+    /**
+     * @return Average score (0 if no games).
+     */
+    public double getMean()
+    {
+        return games == 0 ? 0 : (double) totalScore / games;
+    }
+
+    /**
+     * @return Lowest score of any game.
+     */
+    public int getMin()
+    {
+        return getPercentile( 0 );
+    }
+
+    /**
+     * @return Highest score of any game.
+     */
+    public int getMax()
+    {
+        return getPercentile( 100 );
+    }
+
+    /**
+     * @param percent Percentage, from 0 to 100.
+     *
+     * @return Lowest score that at least that percentage of games did not
+     *         exceed (0 if no games).
+     */
+    public int getPercentile( double percent )
+    {
+        if ( percent < 0 || percent > 100 )
+            throw new RuntimeException( "invalid percentile:  " + percent );
+        if ( games == 0 )
+            return 0;
+
+        long target = Math.max( 1, (long) Math.ceil( percent / 100 * games ) );
+        long seen = 0;
+        int last = lowest;
+        for ( int i = 0; i < counts.length; i++ )
+        {
+            if ( counts[i] == 0 )
+                continue;
+            seen += counts[i];
+            last = lowest + i;
+            if ( seen >= target )
+                break;
+        }
+        return last;
+    }
+
+    /**
+     * @return Summary of the distribution, followed by one line per score.
+     */
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder();
+        text.append( String.format( "games=%d unfinished=%d mean=%.3f min=%d p50=%d p90=%d p99=%d" +
+                                    " max=%d steps/game=%.1f%n",
+                                    games, unfinished, getMean(), getMin(), getPercentile( 50 ),
+                                    getPercentile( 90 ), getPercentile( 99 ), getMax(),
+                                    games == 0 ? 0.0 : (double) totalSteps / games ) );
+        for ( int i = 0; i < counts.length; i++ )
+        {
+            if ( counts[i] != 0 )
+                text.append( String.format( "%6d: %d%n", lowest + i, counts[i] ) );
+        }
+        return text.toString();
+    }
+
+    /* Utility method: adds games with a given score, growing counts if needed. */
+    private void addCount( int score, long count )
+    {
+        if ( games == 0 )
+        {
+            java.util.Arrays.fill( counts, 0 );
+            lowest = score;
+        }
+        if ( score < lowest )
+        {
+            int shift = lowest - score;
+            long[] grown = new long[Math.max( counts.length * 2, counts.length + shift )];
+            System.arraycopy( counts, 0, grown, shift, counts.length );
+            counts = grown;
+            lowest = score;
+        }
+        else if ( score - lowest >= counts.length )
+        {
+            counts = java.util.Arrays.copyOf( counts,
+                                              Math.max( counts.length * 2, score - lowest + 1 ) );
+        }
+        counts[score - lowest] += count;
+        games += count;
+    }
+}
\ No newline at end of file
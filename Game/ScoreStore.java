@@ -0,0 +1,511 @@
+/**
+ * Lasting record of finished game sessions, for the Scrolling Game project:
+ * a leaderboard and score statistics that survive from one run to the
+ * next. Sessions are appended to a log file and never rewritten; an index
+ * of the best getTopSize() sessions and of how many sessions had each score
+ * (a ScoreDistribution) is kept in memory, so leaderboard and percentile
+ * queries never touch the file. Opening a store reads the whole log once,
+ * in large chunks, to rebuild the index.
+ *
+ * Adding a session only copies it into a batch in memory; a background
+ * thread writes each batch with one write and one fsync, and sessions added
+ * while it does so go into the next batch (group commit). The writer lets a
+ * batch gather for up to COMMIT_DELAY_MILLIS before writing it, so fast
+ * adders do not pay for an fsync every few sessions. So many threads
+ * (for instance, a BatchSimulator) can add hundreds of thousands of
+ * sessions a second without waiting for the disk; call flush() to wait
+ * until everything added is safely on it.
+ *
+ * Files hold a magic number and a version, then one fixed-size record per
+ * session, each ending with a CRC32C of the rest. Records only partly
+ * written (as when the machine stopped mid-write) fail their check, and are
+ * cut off the end of the log when it is next opened. A record that fails
+ * its check but has good records after it (as when the disk damaged it) is
+ * skipped instead, and counted (see getCorruptCount()); the sessions after
+ * it are kept.
+ */
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+public class ScoreStore
+{
+    // "GSCO": start of every score log.
+    private static final int MAGIC = 0x4753434f;
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    // Bytes per session: four ints, three longs, flags, then the CRC.
+    private static final int RECORD_SIZE = 48;
+    // Bytes of records read at a time when opening a store.
+    private static final int READ_SIZE = RECORD_SIZE * 4096;
+    // Bytes of sessions collected before adding waits for the writer.
+    private static final int BATCH_SIZE = 1 << 20;
+    // Most time a session waits in memory for others to be written with it.
+    public static final int COMMIT_DELAY_MILLIS = 10;
+    // Flag set for sessions that ran until the game was over.
+    private static final int FINISHED = 1;
+    // Orders sessions lowest score first; of equal scores, the later first.
+    private static final Comparator<SessionRecord> WORST_FIRST = ( a, b ) ->
+        a.getScore() != b.getScore() ? Integer.compare( a.getScore(), b.getScore() )
+                                     : Long.compare( b.getEndMillis(), a.getEndMillis() );
+
+    private final String fileName;
+    private final FileChannel channel;
+    private final int topSize;
+    // Records skipped when the log was opened, as they failed their check.
+    private long corrupt;
+
+    // Everything below is guarded by lock. Sessions are added to filling,
+    // while the writer thread writes out writing.
+    private final Object lock = new Object();
+    private ByteBuffer filling;
+    private ByteBuffer writing;
+    private final CRC32C crc;
+    private long added;
+    private long durable;
+    private boolean closing;
+    // Number of threads waiting in flush() (the writer does not wait then).
+    private int flushing;
+    private IOException failure;
+    // Best sessions (the worst of them at the head), and all scores.
+    private final PriorityQueue<SessionRecord> top;
+    private final ScoreDistribution scores;
+    private final Thread writer;
+
+    /**
+     * Opens a store, creating its file if there is none, and reads every
+     * session in it into the index.
+     *
+     * @param fileName Name of log file.
+     * @param topSize Number of best sessions to keep in the leaderboard.
+     */
+    public ScoreStore( String fileName, int topSize )
+    {
+        if ( topSize < 1 )
+            throw new RuntimeException( "invalid leaderboard size:  " + topSize );
+        this.fileName = fileName;
+        this.topSize = topSize;
+        filling = ByteBuffer.allocate( BATCH_SIZE );
+        writing = ByteBuffer.allocate( BATCH_SIZE );
+        crc = new CRC32C();
+        added = 0;
+        durable = 0;
+        closing = false;
+        flushing = 0;
+        failure = null;
+        corrupt = 0;
+        top = new PriorityQueue<SessionRecord>( topSize + 1, WORST_FIRST );
+        scores = new ScoreDistribution();
+
+        try
+        {
+            channel = FileChannel.open( Paths.get( fileName ), StandardOpenOption.CREATE,
+                                        StandardOpenOption.READ, StandardOpenOption.WRITE );
+            long length = readLog();
+            channel.truncate( length );
+            channel.position( length );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to open score store:  " + fileName );
+        }
+        writer = new Thread( this::runWriter, "score-store" );
+        writer.setDaemon( true );
+        writer.start();
+    }
+
+    /**
+     * Opens a store keeping the best 10 sessions in its leaderboard.
+     *
+     * @param fileName Name of log file.
+     */
+    public ScoreStore( String fileName )
+    {
+        this( fileName, 10 );
+    }
+
+    /**
+     * Adds a session, to the index at once and to the log in the background.
+     * May be called from any thread.
+     *
+     * @param session Session to add.
+     */
+    public void add( SessionRecord session )
+    {
+        synchronized ( lock )
+        {
+            checkOpen();
+            while ( filling.remaining() < RECORD_SIZE )
+            {
+                // The writer is behind; wait for it to take this batch.
+                waitForWriter();
+                checkOpen();
+            }
+            boolean wasEmpty = filling.position() == 0;
+            encode( session, filling );
+            added++;
+            index( session );
+            if ( wasEmpty || filling.position() >= BATCH_SIZE / 2 )
+                lock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until every session added so far is written and synced to disk.
+     */
+    public void flush()
+    {
+        synchronized ( lock )
+        {
+            long target = added;
+            flushing++;
+            lock.notifyAll();
+            try
+            {
+                while ( durable < target && failure == null )
+                    waitForWriter();
+            }
+            finally
+            {
+                flushing--;
+            }
+            if ( failure != null )
+                throw new RuntimeException( "unable to write score store:  " + fileName );
+        }
+    }
+
+    /**
+     * Flushes everything added, then closes the file.
+     */
+    public void close()
+    {
+        synchronized ( lock )
+        {
+            if ( closing )
+                return;
+        }
+        flush();
+        synchronized ( lock )
+        {
+            closing = true;
+            lock.notifyAll();
+        }
+        try
+        {
+            writer.join();
+            channel.close();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( "unable to close score store:  " + fileName );
+        }
+    }
+
+    /**
+     * @return Number of sessions in the store.
+     */
+    public long getCount()
+    {
+        synchronized ( lock )
+        {
+            return scores.getCount();
+        }
+    }
+
+    /**
+     * @return Number of records in the log skipped when the store was opened,
+     *         as they failed their check.
+     */
+    public long getCorruptCount()
+    {
+        return corrupt;
+    }
+
+    /**
+     * @return Number of best sessions kept in the leaderboard.
+     */
+    public int getTopSize()
+    {
+        return topSize;
+    }
+
+    /**
+     * @param n Number of sessions wanted (at most getTopSize()).
+     *
+     * @return Best n sessions (fewer if there are not that many), highest
+     *         score first; of equal scores, the earliest first.
+     */
+    public List<SessionRecord> getTop( int n )
+    {
+        List<SessionRecord> best;
+        synchronized ( lock )
+        {
+            best = new ArrayList<SessionRecord>( top );
+        }
+        best.sort( WORST_FIRST.reversed() );
+        return best.subList( 0, Math.min( n, best.size() ) );
+    }
+
+    /**
+     * @param percent Percentage, from 0 to 100.
+     *
+     * @return Lowest score that at least that percentage of sessions did not
+     *         exceed (0 if no sessions).
+     */
+    public int getPercentile( double percent )
+    {
+        synchronized ( lock )
+        {
+            return scores.getPercentile( percent );
+        }
+    }
+
+    /**
+     * @param score A score.
+     *
+     * @return Percentage of sessions that scored less (0 if no sessions).
+     */
+    public double getPercentBelow( int score )
+    {
+        synchronized ( lock )
+        {
+            long games = scores.getCount();
+            if ( games == 0 )
+                return 0;
+            long below = 0;
+            for ( int s = scores.getMin(); s < score && s <= scores.getMax(); s++ )
+                below += scores.getCount( s );
+            return 100.0 * below / games;
+        }
+    }
+
+    /**
+     * @return Copy of the distribution of all sessions' scores.
+     */
+    public ScoreDistribution getScores()
+    {
+        ScoreDistribution copy = new ScoreDistribution();
+        synchronized ( lock )
+        {
+            copy.merge( scores );
+        }
+        return copy;
+    }
+
+    /* Utility method: body of the writer thread. */
+    private void runWriter()
+    {
+        while ( true )
+        {
+            long batchEnd;
+            synchronized ( lock )
+            {
+                try
+                {
+                    while ( filling.position() == 0 && !closing )
+                        lock.wait();
+                    // Let the batch gather, unless someone is waiting for it.
+                    long deadline = System.nanoTime() + COMMIT_DELAY_MILLIS * 1000000L;
+                    long wait;
+                    while ( filling.position() < BATCH_SIZE / 2 && !closing && flushing == 0 &&
+                            ( wait = deadline - System.nanoTime() ) > 0 )
+                        lock.wait( wait / 1000000, (int) ( wait % 1000000 ) );
+                }
+                catch ( InterruptedException e )
+                {
+                    return;
+                }
+                if ( filling.position() == 0 )
+                    return;
+                ByteBuffer batch = filling;
+                filling = writing;
+                writing = batch;
+                batchEnd = added;
+                // Room for adding again.
+                lock.notifyAll();
+            }
+
+            try
+            {
+                writing.flip();
+                while ( writing.hasRemaining() )
+                    channel.write( writing );
+                channel.force( false );
+                writing.clear();
+            }
+            catch ( IOException e )
+            {
+                synchronized ( lock )
+                {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+
+            synchronized ( lock )
+            {
+                durable = batchEnd;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /*
+     * Utility method: reads the log (writing its header if it is new) into
+     * the index; returns the length of the log up to the end of its last
+     * good record. The log is read through the channel rather than mapped,
+     * so that it may be truncated afterwards on any system.
+     */
+    private long readLog() throws IOException
+    {
+        long length = channel.size();
+        if ( length < HEADER_SIZE )
+        {
+            ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+            header.putInt( MAGIC ).putInt( VERSION ).flip();
+            channel.truncate( 0 );
+            while ( header.hasRemaining() )
+                channel.write( header, header.position() );
+            channel.force( true );
+            return HEADER_SIZE;
+        }
+
+        ByteBuffer chunk = ByteBuffer.allocate( READ_SIZE );
+        chunk.limit( HEADER_SIZE );
+        readFully( chunk, 0 );
+        if ( chunk.limit() < HEADER_SIZE || chunk.getInt( 0 ) != MAGIC )
+            throw new RuntimeException( "not a score store:  " + fileName );
+        int version = chunk.getInt( 4 );
+        if ( version != VERSION )
+            throw new RuntimeException( "unsupported score store version " + version + ":  " +
+                                       fileName );
+
+        // Bad records are only counted once a good one follows them.
+        long whole = HEADER_SIZE;
+        long bad = 0;
+        long position = HEADER_SIZE;
+        while ( length - position >= RECORD_SIZE )
+        {
+            int wanted = (int) Math.min( READ_SIZE,
+                                         ( length - position ) / RECORD_SIZE * RECORD_SIZE );
+            chunk.clear();
+            chunk.limit( wanted );
+            readFully( chunk, position );
+            while ( chunk.remaining() >= RECORD_SIZE )
+            {
+                SessionRecord session = decode( chunk );
+                if ( session == null )
+                {
+                    chunk.position( chunk.position() + RECORD_SIZE );
+                    bad++;
+                    continue;
+                }
+                index( session );
+                corrupt += bad;
+                bad = 0;
+                whole = position + chunk.position();
+            }
+            if ( chunk.limit() < wanted )
+                break;
+            position += wanted;
+        }
+        return whole;
+    }
+
+    /*
+     * Utility method: reads from the log at a given position until the
+     * buffer is full or the log ends, then flips the buffer.
+     */
+    private void readFully( ByteBuffer buffer, long position ) throws IOException
+    {
+        int start = buffer.position();
+        while ( buffer.hasRemaining() )
+        {
+            if ( channel.read( buffer, position + buffer.position() - start ) < 0 )
+                break;
+        }
+        buffer.flip();
+    }
+
+    /* Utility method: adds a session to the in-memory index. */
+    private void index( SessionRecord session )
+    {
+        scores.add( session.getScore(), session.getMsElapsed() / AbstractGame.STEP_TIME,
+                    session.isFinished() );
+        if ( top.size() < topSize )
+            top.add( session );
+        else if ( WORST_FIRST.compare( session, top.peek() ) > 0 )
+        {
+            top.poll();
+            top.add( session );
+        }
+    }
+
+    /* Utility method: writes one record. Caller must hold lock. */
+    private void encode( SessionRecord session, ByteBuffer out )
+    {
+        int start = out.position();
+        out.putInt( session.getScore() );
+        out.putInt( session.getTimesGet() );
+        out.putInt( session.getTimesAvoid() );
+        out.putInt( session.getMsElapsed() );
+        out.putLong( session.getSeed() );
+        out.putLong( session.getDurationNanos() );
+        out.putLong( session.getEndMillis() );
+        out.putInt( session.isFinished() ? FINISHED : 0 );
+        crc.reset();
+        crc.update( out.array(), start, RECORD_SIZE - 4 );
+        out.putInt( (int) crc.getValue() );
+    }
+
+    /*
+     * Utility method: reads one record, or returns null (leaving in where it
+     * was) if it fails its check.
+     */
+    private SessionRecord decode( ByteBuffer in )
+    {
+        int start = in.position();
+        ByteBuffer body = in.duplicate();
+        body.limit( start + RECORD_SIZE - 4 );
+        crc.reset();
+        crc.update( body );
+        if ( in.getInt( start + RECORD_SIZE - 4 ) != (int) crc.getValue() )
+            return null;
+        SessionRecord session = new SessionRecord( in.getInt(), in.getInt(), in.getInt(),
+                                                   in.getInt(), in.getLong(), in.getLong(),
+                                                   in.getLong(), ( in.getInt() & FINISHED ) != 0 );
+        in.getInt();
+        return session;
+    }
+
+    /* Utility method: waits for the writer to signal. Caller must hold lock. */
+    private void waitForWriter()
+    {
+        try
+        {
+            lock.wait();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "interrupted waiting for score store:  " + fileName );
+        }
+    }
+
+    /* Utility method: fails if the store can no longer be added to. */
+    private void checkOpen()
+    {
+        if ( failure != null )
+            throw new RuntimeException( "unable to write score store:  " + fileName );
+        if ( closing )
+            throw new RuntimeException( "score store is closed:  " + fileName );
+    }
+}
\ No newline at end of file
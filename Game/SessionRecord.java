@@ -0,0 +1,115 @@
+/**
+ * Result of one finished session of a game (one call of play() or
+ * simulate()), for the Scrolling Game project, as kept by a ScoreStore.
+ */
+public class SessionRecord
+{
+    private final int score;
+    private final int timesGet;
+    private final int timesAvoid;
+    private final int msElapsed;
+    private final long seed;
+    private final long durationNanos;
+    private final long endMillis;
+    private final boolean finished;
+
+    /**
+     * Basic constructor.
+     *
+     * @param score Final score.
+     * @param timesGet Objects to get that were got.
+     * @param timesAvoid Objects to avoid that were hit.
+     * @param msElapsed Game time played, in milliseconds.
+     * @param seed State of the game's GameRandom when the session started.
+     * @param durationNanos Real time the session took, in nanoseconds.
+     * @param endMillis When the session ended, in milliseconds since 1970.
+     * @param finished false if the session stopped before the game was over.
+     */
+    public SessionRecord( int score, int timesGet, int timesAvoid, int msElapsed, long seed,
+                          long durationNanos, long endMillis, boolean finished )
+    {
+        this.score = score;
+        this.timesGet = timesGet;
+        this.timesAvoid = timesAvoid;
+        this.msElapsed = msElapsed;
+        this.seed = seed;
+        this.durationNanos = durationNanos;
+        this.endMillis = endMillis;
+        this.finished = finished;
+    }
+
+    /**
+     * @return Final score.
+     */
+    public int getScore()
+    {
+        return score;
+    }
+
+    /**
+     * @return Objects to get that were got.
+     */
+    public int getTimesGet()
+    {
+        return timesGet;
+    }
+
+    /**
+     * @return Objects to avoid that were hit.
+     */
+    public int getTimesAvoid()
+    {
+        return timesAvoid;
+    }
+
+    /**
+     * @return Game time played, in milliseconds.
+     */
+    public int getMsElapsed()
+    {
+        return msElapsed;
+    }
+
+    /**
+     * @return State of the game's GameRandom when the session started (the
+     *         seed given to setSeed(), if it was called).
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * @return Real time the session took, in nanoseconds.
+     */
+    public long getDurationNanos()
+    {
+        return durationNanos;
+    }
+
+    /**
+     * @return When the session ended, in milliseconds since 1970.
+     */
+    public long getEndMillis()
+    {
+        return endMillis;
+    }
+
+    /**
+     * @return false if the session stopped before the game was over.
+     */
+    public boolean isFinished()
+    {
+        return finished;
+    }
+
+    /**
+     * @return Description of session.
+     */
+    public String toString()
+    {
+        return String.format( "score=%d get=%d avoid=%d time=%.1fs seed=%d duration=%.3fs%s", score,
+                              timesGet, timesAvoid, msElapsed / 1000.0, seed, durationNanos / 1e9,
+                              finished ? "" : " (unfinished)" );
+    }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+/**
+ * Hands snapshots of a game-board from the game thread to the thread that
+ * draws it, for the Scrolling Game project, without either of them locking
+ * or waiting. Three snapshots take turns: one being filled by the game
+ * thread, one being drawn, and the most recently published one in between.
+ * Publishing and taking a snapshot are each one atomic swap, so the game
+ * thread never waits for a slow frame (snapshots the drawing thread had no
+ * time for are simply skipped), and the drawing thread always gets a whole
+ * step.
+ *
+ * Each snapshot keeps track of the Cells the board has changed since it
+ * was last filled, so filling it copies only those, and each published
+ * snapshot says which Cells changed since the one acquired before it, so
+ * the drawing thread redraws only those; both take time proportional to
+ * what changed, not to the size of the board.
+ *
+ * Only one thread may publish and only one thread may acquire.
+ */
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SnapshotBuffer
+{
+    // Set in state when the middle snapshot has not yet been acquired.
+    private static final int FRESH = 4;
+
+    private final BoardSnapshot[] snapshots;
+    // Cells (as stored) each snapshot is missing; owned by the publisher.
+    private final DirtyRegion[] missing;
+    // Cells changed since the last snapshot acquired; owned by the publisher.
+    private final DirtyRegion unseen;
+    // Index of the middle (published) snapshot, plus FRESH.
+    private final AtomicInteger state;
+    // Owned by the publishing thread.
+    private int back;
+    private long sequence;
+    // Owned by the acquiring thread.
+    private int front;
+
+    /**
+     * Basic constructor; until something is published, acquire() returns an
+     * empty (black) board.
+     *
+     * @param numRows Number of rows in board.
+     * @param numCols Number of columns in board.
+     */
+    public SnapshotBuffer( int numRows, int numCols )
+    {
+        snapshots = new BoardSnapshot[3];
+        missing = new DirtyRegion[3];
+        for ( int i = 0; i < snapshots.length; i++ )
+        {
+            snapshots[i] = new BoardSnapshot( numRows, numCols );
+            missing[i] = new DirtyRegion( numRows, numCols );
+            missing[i].markAll();
+        }
+        unseen = new DirtyRegion( numRows, numCols );
+        unseen.markAll();
+        back = 0;
+        state = new AtomicInteger( 1 );
+        front = 2;
+        sequence = 0;
+    }
+
+    /**
+     * Publishes a copy of the board as it is now. Called by the game thread.
+     *
+     * @param planes Cells of the board (of the size given when this buffer
+     *            was created), keeping track of their stored changes (see
+     *            BoardPlanes.trackStoredChanges()).
+     * @param changes Cells (by column of the board) changed since the last
+     *            time this was called.
+     */
+    public void publish( BoardPlanes planes, DirtyRegion changes )
+    {
+        DirtyRegion stored = planes.getStoredChanges();
+        for ( DirtyRegion region : missing )
+            region.add( stored );
+        stored.clear();
+        // Once the middle snapshot has been taken, changes before it have
+        // been seen.
+        if ( ( state.get() & FRESH ) == 0 )
+            unseen.clear();
+        unseen.add( changes );
+
+        snapshots[back].copy( planes, ++sequence, missing[back], unseen );
+        missing[back].clear();
+        back = state.getAndSet( back | FRESH ) & ~FRESH;
+    }
+
+    /**
+     * Returns the most recently published snapshot. Called by the drawing
+     * thread; the snapshot returned stays unchanged until its next call.
+     *
+     * @return Latest snapshot of the board.
+     */
+    public BoardSnapshot acquire()
+    {
+        if ( ( state.get() & FRESH ) != 0 )
+            front = state.getAndSet( front ) & ~FRESH;
+        return snapshots[front];
+    }
+}
\ No newline at end of file
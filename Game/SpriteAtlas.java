@@ -0,0 +1,193 @@
+/**
+ * All of a game's sprites packed into one image, for the Scrolling Game
+ * project. Each sprite is read and scaled to the cell size once, then
+ * copied into its own square of the atlas, found from its sprite id alone
+ * (square id of a grid of COLUMNS squares per row). Drawing a Cell is then
+ * a copy of one square of one image: no names are looked up, and the
+ * graphics system only ever has one image to keep on the graphics card.
+ *
+ * The atlas is packed as sprite ids are first seen (all of a game's images
+ * are normally in its SpriteTable before the first paint, so they are all
+ * read then), and packed again if the cell size changes. A sprite whose
+ * file could not be read is tried again by a pack at least RETRY_MILLIS
+ * later, so that it is not left blank for good.
+ */
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+public class SpriteAtlas
+{
+    // Squares in each row of the atlas image.
+    public static final int COLUMNS = 16;
+
+    // Time before an image-file that could not be read is read again.
+    public static final long RETRY_MILLIS = 1000;
+
+    // What is known of each sprite id.
+    private static final byte UNKNOWN = 0;
+    private static final byte PACKED = 1;
+    private static final byte MISSING = 2;
+
+    private final SpriteCache loader;
+    private final byte[] states;
+    // When each MISSING sprite may next be read again (System.nanoTime()).
+    private final long[] retryTimes;
+    private BufferedImage image;
+    private int cellSize;
+
+    /**
+     * Basic constructor; creates an empty atlas.
+     *
+     * @param loader Reads and scales the image-files.
+     */
+    public SpriteAtlas( SpriteCache loader )
+    {
+        this.loader = loader;
+        states = new byte[SpriteTable.MAX_SPRITES + 1];
+        retryTimes = new long[SpriteTable.MAX_SPRITES + 1];
+        image = null;
+        cellSize = 0;
+    }
+
+    /**
+     * Makes sure every sprite named is in the atlas at the given size
+     * (packing them all again if the size has changed).
+     *
+     * @param names Image-file names by sprite id (null for ids not in use).
+     * @param size Width and height (in pixels) of one grid-Cell.
+     * @param config Configuration used to create an image that can be drawn
+     *            quickly to the screen (may be null).
+     */
+    public void pack( String[] names, int size, GraphicsConfiguration config )
+    {
+        if ( size != cellSize )
+        {
+            clear();
+            cellSize = size;
+        }
+        if ( size <= 0 )
+            return;
+
+        Graphics2D g = null;
+        long now = System.nanoTime();
+        for ( int id = 1; id < names.length; id++ )
+        {
+            if ( states[id] == PACKED || names[id] == null )
+                continue;
+            if ( states[id] == MISSING )
+            {
+                if ( now - retryTimes[id] < 0 )
+                    continue;
+                loader.forget( names[id] );
+            }
+            Image sprite = loader.get( names[id], size, null );
+            if ( sprite == null )
+            {
+                states[id] = MISSING;
+                retryTimes[id] = now + RETRY_MILLIS * 1000000;
+                continue;
+            }
+            if ( image == null || ( id / COLUMNS + 1 ) * size > image.getHeight() )
+            {
+                if ( g != null )
+                    g.dispose();
+                grow( id / COLUMNS + 1, config );
+                g = null;
+            }
+            if ( g == null )
+            {
+                g = image.createGraphics();
+                g.setComposite( AlphaComposite.Src );
+            }
+            g.drawImage( sprite, ( id % COLUMNS ) * size, ( id / COLUMNS ) * size, null );
+            states[id] = PACKED;
+        }
+        if ( g != null )
+            g.dispose();
+    }
+
+    /**
+     * Draws a sprite packed by pack().
+     *
+     * @param g Graphics to draw with.
+     * @param id Sprite id.
+     * @param x Left of Cell, in pixels.
+     * @param y Top of Cell, in pixels.
+     *
+     * @return true if drawn (false if the sprite is not in the atlas).
+     */
+    public boolean draw( Graphics g, int id, int x, int y )
+    {
+        if ( states[id] != PACKED )
+            return false;
+        int size = cellSize;
+        int sx = ( id % COLUMNS ) * size;
+        int sy = ( id / COLUMNS ) * size;
+        g.drawImage( image, x, y, x + size, y + size, sx, sy, sx + size, sy + size, null );
+        return true;
+    }
+
+    /**
+     * @param id Sprite id.
+     *
+     * @return Square of the atlas image holding the sprite, or null if it is
+     *         not in the atlas.
+     */
+    public Rectangle getBounds( int id )
+    {
+        if ( states[id] != PACKED )
+            return null;
+        return new Rectangle( ( id % COLUMNS ) * cellSize, ( id / COLUMNS ) * cellSize, cellSize,
+                              cellSize );
+    }
+
+    /**
+     * @return Atlas image (null if nothing has been packed).
+     */
+    public BufferedImage getImage()
+    {
+        return image;
+    }
+
+    /**
+     * @return Size of each sprite in the atlas, in pixels.
+     */
+    public int getCellSize()
+    {
+        return cellSize;
+    }
+
+    /**
+     * Empties the atlas (for instance, when the grid is resized).
+     */
+    public void clear()
+    {
+        java.util.Arrays.fill( states, UNKNOWN );
+        if ( image != null )
+            image.flush();
+        image = null;
+        cellSize = 0;
+        loader.clear();
+    }
+
+    /* Utility method: makes the atlas image tall enough for rows of squares. */
+    private void grow( int rows, GraphicsConfiguration config )
+    {
+        int width = COLUMNS * cellSize;
+        int height = rows * cellSize;
+        BufferedImage bigger;
+        if ( config != null )
+            bigger = config.createCompatibleImage( width, height, Transparency.TRANSLUCENT );
+        else
+            bigger = new BufferedImage( width, height, BufferedImage.TYPE_INT_ARGB );
+        if ( image != null )
+        {
+            Graphics2D g = bigger.createGraphics();
+            g.setComposite( AlphaComposite.Src );
+            g.drawImage( image, 0, 0, null );
+            g.dispose();
+            image.flush();
+        }
+        image = bigger;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,224 @@
+/**
+ * Cache of decoded game sprites for the Scrolling Game project.
+ * Each image-file is read from disk once, scaled to fit a single grid-Cell
+ * (keeping its aspect ratio, centered on a transparent square), and kept
+ * until the cell size changes or it is evicted as least-recently used.
+ *
+ * Image-files can also be read ahead of time, all at once in the background
+ * (see preload()), so that the first frames drawn only have to scale them.
+ */
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.imageio.*;
+
+public class SpriteCache
+{
+    // Default number of scaled sprites held at once.
+    public static final int DEFAULT_CAPACITY = 64;
+
+    // Marks image-files that could not be read, so they are not retried on
+    // every repaint.
+    private static final Image MISSING = new BufferedImage( 1, 1, BufferedImage.TYPE_INT_ARGB );
+
+    private final Map<String, Image> sprites;
+    // Image-files read ahead of time and not yet scaled, by name (each is
+    // dropped once used, or if it could not be read).
+    private final Map<String, CompletableFuture<BufferedImage>> preloaded;
+    private int cellSize;
+    // Told about each sprite read from disk (null if none).
+    private RenderCounters counters;
+
+    /**
+     * Basic constructor; creates an empty cache holding at most
+     * DEFAULT_CAPACITY sprites.
+     */
+    public SpriteCache()
+    {
+        this( DEFAULT_CAPACITY );
+    }
+
+    /**
+     * Creates an empty cache holding at most a given number of sprites.
+     *
+     * @param capacity Maximum number of sprites kept before the least
+     *            recently drawn one is dropped.
+     */
+    @SuppressWarnings( "serial" )
+    public SpriteCache( final int capacity )
+    {
+        if ( capacity < 1 )
+            throw new RuntimeException( "invalid sprite cache capacity:  " + capacity );
+        sprites = new LinkedHashMap<String, Image>( 16, 0.75f, true )
+        {
+            protected boolean removeEldestEntry( Map.Entry<String, Image> eldest )
+            {
+                return size() > capacity;
+            }
+        };
+        preloaded = new ConcurrentHashMap<String, CompletableFuture<BufferedImage>>();
+        cellSize = 0;
+        counters = null;
+    }
+
+    /**
+     * Starts reading image-files in the background, each on a thread of its
+     * own (or of the common ForkJoinPool), so that they are decoded while
+     * the game is still being set up rather than when first drawn. Files
+     * already being read are not read again; a file that could not be read
+     * is tried again the next time.
+     *
+     * @param imageFileNames Names of accessible image-files.
+     *
+     * @return Completes once every file has been read (or found missing).
+     */
+    public CompletableFuture<Void> preload( String... imageFileNames )
+    {
+        CompletableFuture<?>[] reads = new CompletableFuture<?>[imageFileNames.length];
+        for ( int i = 0; i < imageFileNames.length; i++ )
+        {
+            String name = imageFileNames[i];
+            CompletableFuture<BufferedImage> reading = preloaded.computeIfAbsent( name, key ->
+                CompletableFuture.supplyAsync( () ->
+                {
+                    long began = StartupProfile.begin();
+                    BufferedImage image = read( key );
+                    StartupProfile.end( StartupProfile.SPRITES, began );
+                    return image;
+                } ) );
+            reads[i] = reading.thenAccept( image ->
+            {
+                if ( image == null )
+                    preloaded.remove( name, reading );
+            } );
+        }
+        return CompletableFuture.allOf( reads );
+    }
+
+    /**
+     * Sets where reads of image-files (cache misses) are counted.
+     *
+     * @param counters Counters to add to, or null for none.
+     */
+    public void setCounters( RenderCounters counters )
+    {
+        this.counters = counters;
+    }
+
+    /**
+     * Returns image for the given file, scaled to fill a square cell of the
+     * given size. Changing the cell size drops every cached sprite.
+     *
+     * @param imageFileName Name of accessible image-file.
+     * @param size Width and height (in pixels) of one grid-Cell.
+     * @param config Configuration used to create images that can be drawn
+     *            quickly to the screen (may be null).
+     *
+     * @return Scaled image, or null if the file could not be read.
+     */
+    public Image get( String imageFileName, int size, GraphicsConfiguration config )
+    {
+        if ( size != cellSize )
+        {
+            sprites.clear();
+            cellSize = size;
+        }
+
+        Image sprite = sprites.get( imageFileName );
+        if ( sprite == null )
+        {
+            SpriteLoadEvent event = new SpriteLoadEvent();
+            event.begin();
+            sprite = load( imageFileName, size, config );
+            sprites.put( imageFileName, sprite );
+            event.imageFileName = imageFileName;
+            event.cellSize = size;
+            event.commit();
+            if ( counters != null )
+                counters.spriteLoaded();
+        }
+        return sprite == MISSING ? null : sprite;
+    }
+
+    /**
+     * Drops the cached sprite for one image-file, so that the file is read
+     * again when next drawn (for instance, if it could not be read before).
+     *
+     * @param imageFileName Name of image-file.
+     */
+    public void forget( String imageFileName )
+    {
+        sprites.remove( imageFileName );
+    }
+
+    /**
+     * Drops all cached sprites (for instance, when the grid is resized).
+     */
+    public void clear()
+    {
+        sprites.clear();
+        cellSize = 0;
+    }
+
+    /**
+     * @return Number of sprites currently held.
+     */
+    public int size()
+    {
+        return sprites.size();
+    }
+
+    /* Utility method: reads and scales an image-file into a cell-sized image. */
+    private Image load( String imageFileName, int size, GraphicsConfiguration config )
+    {
+        if ( size <= 0 )
+            return MISSING;
+        
+        // Read ahead of time if it was preloaded (waiting if it is still
+        // being read); once scaled, the sprite is kept instead.
+        CompletableFuture<BufferedImage> reading = preloaded.remove( imageFileName );
+        BufferedImage image = reading != null ? reading.join() : read( imageFileName );
+        if ( image == null )
+        {
+            System.out.println( "File not found:  " + imageFileName );
+            return MISSING;
+        }
+
+        BufferedImage sprite;
+        if ( config != null )
+            sprite = config.createCompatibleImage( size, size, Transparency.TRANSLUCENT );
+        else
+            sprite = new BufferedImage( size, size, BufferedImage.TYPE_INT_ARGB );
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Graphics2D g = sprite.createGraphics();
+        if ( width > height )
+        {
+            int drawHeight = size * height / width;
+            g.drawImage( image, 0, ( size - drawHeight ) / 2, size, drawHeight, null );
+        }
+        else
+        {
+            int drawWidth = size * width / height;
+            g.drawImage( image, ( size - drawWidth ) / 2, 0, drawWidth, size, null );
+        }
+        g.dispose();
+        return sprite;
+    }
+
+    /* Utility method: reads an image-file, or returns null if it cannot be read. */
+    private static BufferedImage read( String imageFileName )
+    {
+        try
+        {
+            return ImageIO.read( new File( imageFileName ) );
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,20 @@
+/**
+ * JDK Flight Recorder event timing the reading and scaling of one sprite by
+ * a SpriteCache, for the Scrolling Game project (see PhaseEvent). These
+ * happen while painting, so a slow one shows up as a stutter.
+ */
+import jdk.jfr.*;
+
+@Name( "scrollinggame.SpriteLoad" )
+@Label( "Sprite Load" )
+@Category( "Scrolling Game" )
+@Description( "Reading an image-file and scaling it to the cell size" )
+@StackTrace( false )
+public class SpriteLoadEvent extends Event
+{
+    @Label( "Image File" )
+    public String imageFileName;
+
+    @Label( "Cell Size" )
+    public int cellSize;
+}
\ No newline at end of file
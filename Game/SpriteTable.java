@@ -0,0 +1,145 @@
+/**
+ * Numbers the image-files used on a game-board, for the Scrolling Game
+ * project. Each distinct image-file name gets a small id (1, 2, 3, ...), so
+ * the board can store one byte per Cell instead of a String; id NONE stands
+ * for an empty Cell. The String object first given for each name is the one
+ * handed back for its id, so a game that always passes the same String (as
+ * games comparing image-file names using == do) gets that very String back.
+ */
+import java.util.*;
+
+public class SpriteTable
+{
+    // Id of an empty Cell (no image).
+    public static final int NONE = 0;
+
+    // Largest number of distinct images (ids must fit in one byte).
+    public static final int MAX_SPRITES = 255;
+
+    // Tables up to this size are searched by identity before hashing.
+    private static final int IDENTITY_SCAN = 16;
+
+    private String[] names;
+    private final Map<String, Integer> ids;
+    private int size;
+
+    // Most recent lookup, since games tend to ask for the same few names.
+    private String lastName;
+    private int lastId;
+
+    /**
+     * Basic constructor; creates a table holding only NONE.
+     */
+    public SpriteTable()
+    {
+        names = new String[8];
+        ids = new HashMap<String, Integer>();
+        size = 1;
+        lastName = null;
+        lastId = NONE;
+    }
+
+    /**
+     * Returns id for the given image-file, giving it a new id if it has not
+     * been seen before.
+     *
+     * @param imageFileName Name of image-file (null for an empty Cell).
+     *
+     * @return Id for image-file (NONE if name == null).
+     */
+    public int getId( String imageFileName )
+    {
+        if ( imageFileName == null )
+            return NONE;
+        if ( imageFileName == lastName )
+            return lastId;
+
+        // Games pass the same few String constants over and over, so look
+        // for the very same object before hashing.
+        if ( size <= IDENTITY_SCAN )
+        {
+            for ( int i = 1; i < size; i++ )
+            {
+                if ( names[i] == imageFileName )
+                {
+                    lastName = imageFileName;
+                    lastId = i;
+                    return i;
+                }
+            }
+        }
+
+        Integer id = ids.get( imageFileName );
+        if ( id == null )
+            id = add( imageFileName );
+        lastName = imageFileName;
+        lastId = id;
+        return id;
+    }
+
+    /**
+     * Returns id for the given image-file without adding it to the table.
+     *
+     * @param imageFileName Name of image-file.
+     *
+     * @return Id for image-file, or -1 if it is not in the table (NONE if
+     *         name == null).
+     */
+    public int findId( String imageFileName )
+    {
+        if ( imageFileName == null )
+            return NONE;
+        Integer id = ids.get( imageFileName );
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id Id of an image-file in the table.
+     *
+     * @return Name of image-file with given id (null for NONE, or for an id
+     *         not yet given out).
+     */
+    public String getName( int id )
+    {
+        return names[id];
+    }
+
+    /**
+     * @param id Number that may be a sprite id.
+     *
+     * @return true if id is NONE or has been given out by this table.
+     */
+    public boolean isValid( int id )
+    {
+        return 0 <= id && id < size;
+    }
+
+    /**
+     * @return Number of ids in use, including NONE.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /*
+     * Names by id, for copying into snapshots: entries already given out
+     * never change (the array is replaced, not resized, when it fills up).
+     */
+    String[] names()
+    {
+        return names;
+    }
+
+    /* Utility method: gives a new image-file name the next free id. */
+    private int add( String imageFileName )
+    {
+        if ( size > MAX_SPRITES )
+            throw new RuntimeException( "too many different images on board:  " + imageFileName );
+        if ( size == names.length )
+            names = Arrays.copyOf( names, Math.min( names.length * 2, MAX_SPRITES + 1 ) );
+        names[size] = imageFileName;
+        ids.put( imageFileName, size );
+        return size++;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,147 @@
+/**
+ * Times the phases of starting a game, for the Scrolling Game project: from
+ * the JVM starting, through building the board, opening its window and
+ * reading its sprites (which overlap, on different threads), to the first
+ * frame being drawn. Run a game with -Dgame.startup=log to have the
+ * breakdown printed to System.err once the first frame is drawn.
+ *
+ * Each phase is kept as the span from the earliest start to the latest end
+ * recorded for it (so reading three sprites at once is one phase); nothing
+ * more is recorded once the first frame has been drawn.
+ */
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+public class StartupProfile
+{
+    // Set this system property to "log" to print the breakdown.
+    public static final String PROPERTY = "game.startup";
+
+    // Names of the phases.
+    public static final String JVM = "jvm";
+    public static final String BOARD = "board";
+    public static final String WINDOW = "window";
+    public static final String SPRITES = "sprites";
+    public static final String GAME = "game";
+
+    // When this class was first used, as a System.nanoTime() and in
+    // milliseconds since 1970 (the end of the JVM's own startup).
+    private static final long loadedNanos = System.nanoTime();
+    private static final long loadedMillis = System.currentTimeMillis();
+    // When the JVM started, as a System.nanoTime() (0 until worked out).
+    private static long jvmStart = 0;
+    // Start and end (System.nanoTime()) of each phase, in order of starting.
+    private static final Map<String, long[]> phases = new LinkedHashMap<String, long[]>();
+    // When the first frame was drawn (0 until it has been).
+    private static volatile long firstFrame = 0;
+
+    private StartupProfile()
+    {
+    }
+
+    /**
+     * @return Time a phase starts, to be passed to end().
+     */
+    public static long begin()
+    {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records that a phase (or part of one) has ended.
+     *
+     * @param phase Name of phase (one of the constants above).
+     * @param began Result of begin() when it started.
+     */
+    public static void end( String phase, long began )
+    {
+        long now = System.nanoTime();
+        if ( firstFrame != 0 )
+            return;
+        synchronized ( phases )
+        {
+            long[] span = phases.get( phase );
+            if ( span == null )
+                phases.put( phase, new long[] { began, now } );
+            else
+            {
+                span[0] = Math.min( span[0], began );
+                span[1] = Math.max( span[1], now );
+            }
+        }
+    }
+
+    /**
+     * Records that a frame has been drawn; the first time, startup is over
+     * (and the breakdown is printed, if asked for).
+     */
+    public static void frameDrawn()
+    {
+        if ( firstFrame != 0 )
+            return;
+        synchronized ( phases )
+        {
+            if ( firstFrame != 0 )
+                return;
+            firstFrame = System.nanoTime();
+        }
+        if ( "log".equals( System.getProperty( PROPERTY ) ) )
+            System.err.print( getReport() );
+    }
+
+    /**
+     * @return Time from the JVM starting to the first frame being drawn, in
+     *         nanoseconds (-1 if no frame has been drawn yet).
+     */
+    public static long getTimeToFirstFrame()
+    {
+        long drawn = firstFrame;
+        return drawn == 0 ? -1 : drawn - getJvmStart();
+    }
+
+    /**
+     * @return Breakdown of startup: when each phase started and how long it
+     *         took, in milliseconds from the JVM starting.
+     */
+    public static String getReport()
+    {
+        StringBuilder report = new StringBuilder( "Startup (ms since the JVM started):\n" );
+        long jvmStart = getJvmStart();
+        synchronized ( phases )
+        {
+            for ( Map.Entry<String, long[]> phase : phases.entrySet() )
+            {
+                long[] span = phase.getValue();
+                report.append( String.format( "  %-8s at %7.1f  took %7.1f%n", phase.getKey(),
+                                              ( span[0] - jvmStart ) / 1e6,
+                                              ( span[1] - span[0] ) / 1e6 ) );
+            }
+        }
+        long drawn = getTimeToFirstFrame();
+        if ( drawn >= 0 )
+            report.append( String.format( "  first frame at %7.1f%n", drawn / 1e6 ) );
+        return report.toString();
+    }
+
+    /*
+     * Utility method: works out when the JVM started (only when asked, as
+     * the management classes take a while to load), and adds its startup to
+     * the phases.
+     */
+    private static synchronized long getJvmStart()
+    {
+        if ( jvmStart == 0 )
+        {
+            long startMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+            jvmStart = loadedNanos - ( loadedMillis - startMillis ) * 1000000;
+            synchronized ( phases )
+            {
+                Map<String, long[]> later = new LinkedHashMap<String, long[]>( phases );
+                phases.clear();
+                phases.put( JVM, new long[] { jvmStart, loadedNanos } );
+                phases.putAll( later );
+            }
+        }
+        return jvmStart;
+    }
+}
\ No newline at end of file
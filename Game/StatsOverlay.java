@@ -0,0 +1,148 @@
+/**
+ * Live performance figures for a game being played, for the Scrolling Game
+ * project: steps and frames per second, step and frame-time percentiles,
+ * what the Grid redrew, and garbage collections, so a stutter can be put
+ * down to game logic, drawing or GC. The figures are worked out about once
+ * a second, then printed to System.err (log mode) or shown after the score
+ * in the window
+ * title (title mode).
+ *
+ * Turned on with -Dgame.stats=log or -Dgame.stats=title, or with
+ * AbstractGame.showStats(); when off, play() does no extra work at all.
+ */
+import java.lang.management.*;
+
+public class StatsOverlay
+{
+    // System property choosing the mode.
+    public static final String PROPERTY = "game.stats";
+    public static final String LOG = "log";
+    public static final String TITLE = "title";
+
+    // Time between updates of the figures.
+    private static final long INTERVAL_NANOS = 1000000000L;
+
+    private final AbstractGame game;
+    private final RenderCounters counters;
+    private final boolean log;
+    private String text;
+
+    // Totals as of the last update.
+    private long lastTime;
+    private long lastSteps;
+    private long lastFrames;
+    private long lastRepaints;
+    private long lastCells;
+    private long lastLoads;
+    private long lastGcCount;
+    private long lastGcMillis;
+
+    /**
+     * Basic constructor.
+     *
+     * @param game Game to report on.
+     * @param mode LOG or TITLE.
+     */
+    public StatsOverlay( AbstractGame game, String mode )
+    {
+        if ( !LOG.equals( mode ) && !TITLE.equals( mode ) )
+            throw new RuntimeException( "unknown stats mode:  " + mode );
+        this.game = game;
+        counters = game.grid != null ? game.grid.getRenderCounters() : null;
+        log = LOG.equals( mode );
+        text = "";
+        lastTime = System.nanoTime();
+        takeTotals();
+    }
+
+    /**
+     * @return true if the figures go into the window title.
+     */
+    public boolean isShownInTitle()
+    {
+        return !log;
+    }
+
+    /**
+     * @return Latest figures, as one line (empty until the first update).
+     */
+    public String getText()
+    {
+        return text;
+    }
+
+    /**
+     * Called by play() after each frame; updates the figures if it is time.
+     *
+     * @param now Current System.nanoTime().
+     */
+    public void update( long now )
+    {
+        long elapsed = now - lastTime;
+        if ( elapsed < INTERVAL_NANOS )
+            return;
+        double seconds = elapsed / 1e9;
+        FrameStats steps = game.getUpdateStats();
+        FrameStats frames = game.getRenderStats();
+        long stepCount = steps.getCount();
+        long frameCount = frames.getCount();
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+
+        StringBuilder line = new StringBuilder();
+        line.append( String.format( "%.1f steps/s, %.1f fps; step p50 %.2fms p99 %.2fms; " +
+                                    "frame p50 %.2fms p99 %.2fms max %.2fms",
+                                    ( stepCount - lastSteps ) / seconds,
+                                    ( frameCount - lastFrames ) / seconds,
+                                    steps.getPercentile( 50 ) / 1e6,
+                                    steps.getPercentile( 99 ) / 1e6,
+                                    frames.getPercentile( 50 ) / 1e6,
+                                    frames.getPercentile( 99 ) / 1e6, frames.getMax() / 1e6 ) );
+        if ( counters != null )
+            line.append( String.format( "; %d repaints, %d cells, %d sprite loads",
+                                        counters.getRepaintRequests() - lastRepaints,
+                                        counters.getCellsRepainted() - lastCells,
+                                        counters.getSpriteLoads() - lastLoads ) );
+        line.append( String.format( "; GC %d (%d ms)", gcCount - lastGcCount,
+                                    gcMillis - lastGcMillis ) );
+        text = line.toString();
+        if ( log )
+            System.err.println( text );
+
+        lastTime = now;
+        takeTotals();
+    }
+
+    /* Utility method: remembers the current totals. */
+    private void takeTotals()
+    {
+        lastSteps = game.getUpdateStats().getCount();
+        lastFrames = game.getRenderStats().getCount();
+        if ( counters != null )
+        {
+            lastRepaints = counters.getRepaintRequests();
+            lastCells = counters.getCellsRepainted();
+            lastLoads = counters.getSpriteLoads();
+        }
+        lastGcCount = gcCount();
+        lastGcMillis = gcMillis();
+    }
+
+    /* Utility method: total garbage collections so far. */
+    private static long gcCount()
+    {
+        long total = 0;
+        for ( GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans() )
+            total += Math.max( 0, gc.getCollectionCount() );
+        return total;
+    }
+
+    /* Utility method: total time spent collecting garbage so far, in ms. */
+    private static long gcMillis()
+    {
+        long total = 0;
+        for ( GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans() )
+            total += Math.max( 0, gc.getCollectionTime() );
+        return total;
+    }
+}
\ No newline at end of file
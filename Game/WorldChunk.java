@@ -0,0 +1,84 @@
+/**
+ * A fixed number of columns of a game's world, for the Scrolling Game
+ * project: the sprite id of the object (if any) in each Cell, filled in by a
+ * ChunkGenerator and streamed onto the board by a ChunkedWorld.
+ */
+public class WorldChunk
+{
+    private final int numRows;
+    private final int numCols;
+    private final byte[] sprites;
+    private long index;
+
+    /*
+     * Creates an empty chunk.
+     */
+    WorldChunk( int numRows, int numCols )
+    {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        sprites = new byte[numRows * numCols];
+        index = -1;
+    }
+
+    /**
+     * @return Number of rows in chunk (as on the board).
+     */
+    public int getNumRows()
+    {
+        return numRows;
+    }
+
+    /**
+     * @return Number of columns in chunk.
+     */
+    public int getNumCols()
+    {
+        return numCols;
+    }
+
+    /**
+     * @return Number of this chunk in the world (chunk 0 holds the first
+     *         columns streamed onto the board).
+     */
+    public long getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * @param row Row of Cell.
+     * @param col Column of Cell within chunk.
+     *
+     * @return Sprite id of object in Cell (SpriteTable.NONE if empty).
+     */
+    public int getSprite( int row, int col )
+    {
+        return sprites[row * numCols + col] & 0xff;
+    }
+
+    /**
+     * Places an object in a Cell.
+     *
+     * @param row Row of Cell.
+     * @param col Column of Cell within chunk.
+     * @param sprite Sprite id of object (SpriteTable.NONE for none).
+     */
+    public void setSprite( int row, int col, int sprite )
+    {
+        if ( row < 0 || row >= numRows || col < 0 || col >= numCols )
+            throw new RuntimeException( "invalid chunk location " + row + ", " + col );
+        if ( sprite < 0 || sprite > SpriteTable.MAX_SPRITES )
+            throw new RuntimeException( "invalid sprite id:  " + sprite );
+        sprites[row * numCols + col] = (byte) sprite;
+    }
+
+    /*
+     * Empties the chunk for reuse as chunk number index.
+     */
+    void reset( long index )
+    {
+        java.util.Arrays.fill( sprites, (byte) 0 );
+        this.index = index;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,224 @@
+/**
+ * Work measured by the benchmarks in package bench, for the Scrolling Game
+ * project. JMH only accepts benchmarks in a named package, and a named
+ * package cannot import the game's classes (which are in the default
+ * package), so each piece of work is set up here and handed over as one of
+ * the standard functional interfaces. Each benchmark runs in its own JVM,
+ * so the call through the interface is cheap and easily inlined.
+ */
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.function.IntSupplier;
+
+public class BenchTargets
+{
+    /**
+     * Sets, then reads back, the image of every Cell on a board.
+     *
+     * @param kind "HeadlessBoard", or "Grid" for a Grid with no window.
+     * @param rows Number of rows in board.
+     * @param cols Number of columns in board.
+     *
+     * @return Work to measure; returns number of Cells read back as set.
+     */
+    public static IntSupplier setGetImage( String kind, int rows, int cols )
+    {
+        Board board = createBoard( kind, rows, cols );
+        String[] images = { "asteroid.gif", "burger.gif", null };
+        return new IntSupplier()
+        {
+            private int pass = 0;
+
+            public int getAsInt()
+            {
+                int matches = 0;
+                pass++;
+                for ( int row = 0; row < rows; row++ )
+                {
+                    for ( int col = 0; col < cols; col++ )
+                    {
+                        String image = images[( row + col + pass ) % images.length];
+                        board.setImage( row, col, image );
+                        if ( board.getImage( row, col ) == image )
+                            matches++;
+                    }
+                }
+                return matches;
+            }
+        };
+    }
+
+    /**
+     * Scrolls a busy Game's board one column left and fills its right edge.
+     *
+     * @param rows Number of rows in board.
+     * @param cols Number of columns in board.
+     *
+     * @return Work to measure; returns number of hits so far.
+     */
+    public static IntSupplier scrollLeft( int rows, int cols )
+    {
+        Game game = createBusyGame( rows, cols );
+        return () ->
+        {
+            game.scrollLeft();
+            game.populateRightEdge();
+            return game.timesGet + game.timesAvoid;
+        };
+    }
+
+    /**
+     * Runs the part of a step of a busy Game that touches the whole board,
+     * on a Grid with no window: scrolls it, fills its right edge, and
+     * publishes the result for drawing. Big boards are done in bands of rows
+     * on all cores (see RowBands).
+     *
+     * @param rows Number of rows in board.
+     * @param cols Number of columns in board.
+     *
+     * @return Work to measure; returns number of hits so far.
+     */
+    public static IntSupplier gridStep( int rows, int cols )
+    {
+        Game game = createBusyGame( new Grid( rows, cols, false ) );
+        return () ->
+        {
+            game.board.beginUpdate();
+            game.scrollLeft();
+            game.populateRightEdge();
+            game.board.commitUpdate();
+            return game.timesGet + game.timesAvoid;
+        };
+    }
+
+    /**
+     * Checks for collisions at column 1, down every row of a busy Game.
+     *
+     * @param rows Number of rows in board.
+     * @param cols Number of columns in board.
+     *
+     * @return Work to measure; returns number of hits so far.
+     */
+    public static IntSupplier handleCollision( int rows, int cols )
+    {
+        Game game = createBusyGame( rows, cols );
+        return () ->
+        {
+            for ( int row = 0; row < rows; row++ )
+                game.handleCollision( row, 1 );
+            return game.timesGet + game.timesAvoid;
+        };
+    }
+
+    /**
+     * Moves and draws a board's worth of entities (one per four Cells) at
+     * different speeds; entities reaching the left edge wrap round to the
+     * right, so the number stays the same.
+     *
+     * @param rows Number of rows in board.
+     * @param cols Number of columns in board.
+     *
+     * @return Work to measure; returns number of entities.
+     */
+    public static IntSupplier moveEntities( int rows, int cols )
+    {
+        Board board = new HeadlessBoard( rows, cols );
+        EntityPool pool = new EntityPool( rows, cols, 16 );
+        EntityBehavior wrap = ( entities, entity ) ->
+        {
+            if ( entities.getX( entity ) < EntityPool.CELL )
+                entities.setPosition( entity, ( cols - 1 ) * EntityPool.CELL, entities.getY( entity ) );
+            return true;
+        };
+        int asteroid = pool.defineKind( board.getSpriteTable().getId( "asteroid.gif" ), wrap );
+        int burger = pool.defineKind( board.getSpriteTable().getId( "burger.gif" ), wrap );
+        GameRandom random = new GameRandom( 42 );
+        for ( int i = 0; i < rows * cols / 4; i++ )
+            pool.spawn( i % 2 == 0 ? asteroid : burger, random.nextInt( rows ),
+                        random.nextInt( cols ), -16 - random.nextInt( 240 ), 0 );
+        return () ->
+        {
+            pool.update();
+            pool.render( board );
+            return pool.size();
+        };
+    }
+
+    /**
+     * Shows a large image as the background of a Grid with no window.
+     *
+     * @param width Width of image, in pixels.
+     * @param height Height of image, in pixels.
+     * @param rows Number of rows in grid.
+     * @param cols Number of columns in grid.
+     *
+     * @return Work to measure.
+     */
+    public static Runnable showImage( int width, int height, int rows, int cols )
+    {
+        Grid grid = new Grid( rows, cols, false );
+        BufferedImage image = new BufferedImage( width, height, BufferedImage.TYPE_INT_RGB );
+        GameRandom random = new GameRandom( 1 );
+        for ( int y = 0; y < height; y++ )
+            for ( int x = 0; x < width; x++ )
+                image.setRGB( x, y, (int) random.nextLong() );
+        return () -> grid.showImage( image );
+    }
+
+    /**
+     * Paints a whole Grid (with no window) into an image.
+     *
+     * @param rows Number of rows in grid.
+     * @param cols Number of columns in grid.
+     *
+     * @return Work to measure; returns one pixel of the result.
+     */
+    public static IntSupplier paint( int rows, int cols )
+    {
+        Game game = createBusyGame( new Grid( rows, cols, false ) );
+        Grid grid = game.grid;
+        BufferedImage image = new BufferedImage( Math.max( 1, grid.getWidth() ),
+                                                 Math.max( 1, grid.getHeight() ),
+                                                 BufferedImage.TYPE_INT_RGB );
+        Graphics2D g = image.createGraphics();
+        return () ->
+        {
+            grid.paintComponent( g );
+            return image.getRGB( 0, 0 );
+        };
+    }
+
+    /* Utility method: creates a board of the given kind. */
+    private static Board createBoard( String kind, int rows, int cols )
+    {
+        if ( kind.equals( "HeadlessBoard" ) )
+            return new HeadlessBoard( rows, cols );
+        if ( kind.equals( "Grid" ) )
+            return new Grid( rows, cols, false );
+        throw new RuntimeException( "unknown kind of board:  " + kind );
+    }
+
+    /* Utility method: creates a headless Game whose board is full of objects. */
+    private static Game createBusyGame( int rows, int cols )
+    {
+        return createBusyGame( new HeadlessBoard( rows, cols ) );
+    }
+
+    /* Utility method: creates a Game on board, then fills the board with objects. */
+    private static Game createBusyGame( Board board )
+    {
+        Game game = new Game( board );
+        game.setSeed( 42 );
+        game.maxTimesAvoid = Integer.MAX_VALUE;
+        // One batch, so a Grid publishes the full board once, not per Cell.
+        board.beginUpdate();
+        for ( int col = 0; col < board.getNumCols(); col++ )
+        {
+            for ( int row = 0; row < board.getNumRows(); row++ )
+                game.populateRightEdge();
+            game.scrollLeft();
+        }
+        board.commitUpdate();
+        return game;
+    }
+}
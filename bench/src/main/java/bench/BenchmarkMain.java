@@ -0,0 +1,32 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks (all of them, or those matching the regular expressions
+ * given, plus any other JMH options) with the GC profiler, so each result
+ * comes with its allocation rate per operation (gc.alloc.rate.norm). Results
+ * are also written as JSON to target/jmh-result.json, for comparing against a
+ * saved baseline.
+ */
+public class BenchmarkMain
+{
+    public static void main( String[] args ) throws RunnerException, CommandLineOptionException
+    {
+        Options options = new OptionsBuilder()
+            .parent( new CommandLineOptions( args ) )
+            .addProfiler( GCProfiler.class )
+            .jvmArgsAppend( "-Djava.awt.headless=true" )
+            .resultFormat( ResultFormatType.JSON )
+            .result( System.getProperty( "bench.result", "../target/jmh-result.json" ) )
+            .build();
+        new Runner( options ).run();
+    }
+}
@@ -0,0 +1,41 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Throughput of setImage()/getImage() over every Cell of a board, for both
+ * kinds of board. Per-operation times divide by rows * cols to give the cost
+ * of one Cell.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class BoardBenchmark
+{
+    @Param( { "HeadlessBoard", "Grid" } )
+    public String kind;
+
+    @Param( { "10x15", "100x150", "1000x1500" } )
+    public String size;
+
+    private IntSupplier setGetImage;
+
+    @Setup
+    public void setup()
+    {
+        int[] dims = Targets.parseSize( size );
+        setGetImage = Targets.create( "setGetImage", kind, dims[0], dims[1] );
+    }
+
+    @Benchmark
+    public int setGetImage()
+    {
+        return setGetImage.getAsInt();
+    }
+}
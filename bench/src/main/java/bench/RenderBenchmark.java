@@ -0,0 +1,50 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Drawing work on a Grid with no window: showImage() of a large image as the
+ * grid's background, and paintComponent() of a full grid into an offscreen
+ * BufferedImage.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( value = 1, jvmArgsAppend = "-Djava.awt.headless=true" )
+@State( Scope.Thread )
+public class RenderBenchmark
+{
+    @Param( { "10x15", "100x150" } )
+    public String size;
+
+    @Param( { "1920x1080" } )
+    public String imageSize;
+
+    private Runnable showImage;
+    private IntSupplier paint;
+
+    @Setup
+    public void setup()
+    {
+        int[] dims = Targets.parseSize( size );
+        int[] image = Targets.parseSize( imageSize );
+        showImage = Targets.create( "showImage", image[0], image[1], dims[0], dims[1] );
+        paint = Targets.create( "paint", dims[0], dims[1] );
+    }
+
+    @Benchmark
+    public void showImage()
+    {
+        showImage.run();
+    }
+
+    @Benchmark
+    public int paint()
+    {
+        return paint.getAsInt();
+    }
+}
@@ -0,0 +1,67 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The parts of a step of game-play that touch the whole board: scrolling
+ * (scrollLeft() plus populateRightEdge()) and collision checks down column 1,
+ * on a headless board already full of objects, and moving a board's worth of
+ * entities (which should allocate nothing). gridStep is a scroll on a Grid,
+ * including publishing the board for drawing; on big boards it is split
+ * into bands of rows on all cores, so compare a run with
+ * -jvmArgsAppend -Djava.util.concurrent.ForkJoinPool.common.parallelism=1
+ * to see how it scales.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class StepBenchmark
+{
+    @Param( { "10x15", "100x150", "1000x1500" } )
+    public String size;
+
+    private IntSupplier scrollLeft;
+    private IntSupplier handleCollision;
+    private IntSupplier moveEntities;
+    private IntSupplier gridStep;
+
+    @Setup
+    public void setup()
+    {
+        int[] dims = Targets.parseSize( size );
+        scrollLeft = Targets.create( "scrollLeft", dims[0], dims[1] );
+        handleCollision = Targets.create( "handleCollision", dims[0], dims[1] );
+        moveEntities = Targets.create( "moveEntities", dims[0], dims[1] );
+        gridStep = Targets.create( "gridStep", dims[0], dims[1] );
+    }
+
+    @Benchmark
+    public int scrollLeft()
+    {
+        return scrollLeft.getAsInt();
+    }
+
+    @Benchmark
+    public int handleCollision()
+    {
+        return handleCollision.getAsInt();
+    }
+
+    @Benchmark
+    public int moveEntities()
+    {
+        return moveEntities.getAsInt();
+    }
+
+    @Benchmark
+    public int gridStep()
+    {
+        return gridStep.getAsInt();
+    }
+}
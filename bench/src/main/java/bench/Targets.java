@@ -0,0 +1,51 @@
+package bench;
+
+import java.lang.reflect.Method;
+
+/**
+ * Looks up the work to measure from BenchTargets, which is in the default
+ * package alongside the game's classes (and so cannot be imported here).
+ */
+final class Targets
+{
+    private Targets()
+    {
+    }
+
+    /**
+     * Calls a static factory method of BenchTargets.
+     *
+     * @param name Name of the method.
+     * @param args Arguments (Strings and ints only).
+     *
+     * @return What the method returned.
+     */
+    @SuppressWarnings( "unchecked" )
+    static <T> T create( String name, Object... args )
+    {
+        try
+        {
+            Class<?>[] types = new Class<?>[args.length];
+            for ( int i = 0; i < args.length; i++ )
+                types[i] = args[i] instanceof Integer ? int.class : args[i].getClass();
+            Method method = Class.forName( "BenchTargets" ).getMethod( name, types );
+            return (T) method.invoke( null, args );
+        }
+        catch ( ReflectiveOperationException e )
+        {
+            throw new RuntimeException( "cannot create benchmark target " + name, e );
+        }
+    }
+
+    /**
+     * @param size Board size written as "rows" + "x" + "cols", e.g. "10x15".
+     *
+     * @return { rows, cols }
+     */
+    static int[] parseSize( String size )
+    {
+        int x = size.indexOf( 'x' );
+        return new int[] { Integer.parseInt( size.substring( 0, x ) ),
+                           Integer.parseInt( size.substring( x + 1 ) ) };
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Tests of the checks every Board makes on what it is given.
+ */
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class BoardTest
+{
+    @Test
+    public void unknownSpriteIdsAreRejected()
+    {
+        for ( Board board : new Board[] { new HeadlessBoard( 4, 5 ), new Grid( 4, 5, false ) } )
+        {
+            int id = board.getSpriteTable().getId( "burger.gif" );
+            board.setSprite( 1, 2, id );
+            assertThrows( RuntimeException.class, () -> board.setSprite( 1, 2, id + 1 ) );
+            assertThrows( RuntimeException.class, () -> board.setSprite( 1, 2, -1 ) );
+            assertThrows( RuntimeException.class,
+                          () -> board.setSprite( 1, 2, SpriteTable.MAX_SPRITES + 1 ) );
+            assertEquals( id, board.getSprite( 1, 2 ) );
+            board.setSprite( 1, 2, SpriteTable.NONE );
+            assertNull( board.getImage( 1, 2 ) );
+        }
+    }
+
+    @Test
+    public void imageNamesComeBackAsGiven()
+    {
+        for ( Board board : new Board[] { new HeadlessBoard( 4, 5 ), new Grid( 4, 5, false ) } )
+        {
+            // Built at run time, so not the interned "burger.gif".
+            String name = new StringBuilder( "burger" ).append( ".gif" ).toString();
+            assertNotSame( "burger.gif", name );
+            board.setImage( 1, 2, name );
+            board.setImage( 2, 3, "burger.gif" );
+            assertSame( name, board.getImage( 1, 2 ) );
+            assertSame( name, board.getImage( 2, 3 ) );
+        }
+    }
+
+    @Test
+    public void scrollingMarksEachRowWithAnImage()
+    {
+        for ( Board board : new Board[] { new HeadlessBoard( 6, 8 ), new Grid( 6, 8, false ) } )
+        {
+            int id = board.getSpriteTable().getId( "burger.gif" );
+            DirtyRegion changed = board.trackChanges();
+            GameRandom random = new GameRandom( 4 );
+            for ( int step = 0; step < 500; step++ )
+            {
+                for ( int i = random.nextInt( 3 ); i > 0; i-- )
+                    board.setSprite( random.nextInt( 6 ), random.nextInt( 8 ),
+                                     random.nextInt( 2 ) == 0 ? id : SpriteTable.NONE );
+                boolean[] hasImage = new boolean[6];
+                for ( int row = 0; row < 6; row++ )
+                    for ( int col = 0; col < 8; col++ )
+                        hasImage[row] |= board.getSprite( row, col ) != SpriteTable.NONE;
+                changed.clear();
+                board.shiftLeft();
+                for ( int row = 0; row < 6; row++ )
+                {
+                    String where = "row " + row + " of step " + step;
+                    assertEquals( hasImage[row] ? 0 : Integer.MAX_VALUE, changed.getMinCol( row ),
+                                  where );
+                    assertEquals( hasImage[row] ? 7 : -1, changed.getMaxCol( row ), where );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void worldChunksRejectIdsThatDoNotFitInAByte()
+    {
+        WorldChunk chunk = new WorldChunk( 3, 4 );
+        assertThrows( RuntimeException.class, () -> chunk.setSprite( 0, 0, 256 ) );
+        assertThrows( RuntimeException.class, () -> chunk.setSprite( 0, 0, -1 ) );
+    }
+}
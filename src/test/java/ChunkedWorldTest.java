@@ -0,0 +1,78 @@
+/**
+ * Tests that a ChunkedWorld streams the same columns however it is moved
+ * around with seek(), as when a game is restored again and again.
+ */
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class ChunkedWorldTest
+{
+    private static final int ROWS = 6;
+    private static final int COLUMNS = 400;
+
+    @Test
+    public void seekingGivesTheSameWorld()
+    {
+        Board board = new HeadlessBoard( ROWS, 1 );
+        String[] expected = new String[COLUMNS];
+        ChunkedWorld world = newWorld( board );
+        for ( int col = 0; col < COLUMNS; col++ )
+            expected[col] = stream( world, board );
+        world.close();
+
+        world = newWorld( board );
+        GameRandom random = new GameRandom( 17 );
+        for ( int jump = 0; jump < 2000; jump++ )
+        {
+            // Mostly short moves, as restoring recent saves makes, some far.
+            long column = jump % 10 == 0 ? random.nextInt( COLUMNS - 20 )
+                                         : Math.max( 0, Math.min( COLUMNS - 20,
+                                                                  world.getColumn() - 8 +
+                                                                      random.nextInt( 16 ) ) );
+            world.seek( column );
+            int count = 1 + random.nextInt( 19 );
+            for ( int i = 0; i < count; i++ )
+            {
+                long col = world.getColumn();
+                assertEquals( expected[(int) col], stream( world, board ), "column " + col +
+                              " after seek " + jump + " to " + column );
+            }
+        }
+        world.close();
+    }
+
+    /*
+     * A world of small chunks and a small window, so that seeks often land
+     * on chunks held and chunks not.
+     */
+    private static ChunkedWorld newWorld( Board board )
+    {
+        int get = board.getSpriteTable().getId( "burger.gif" );
+        int avoid = board.getSpriteTable().getId( "asteroid.gif" );
+        return new ChunkedWorld( ROWS, 4, 3, 99, ( chunk, rand ) ->
+        {
+            for ( int col = 0; col < chunk.getNumCols(); col++ )
+                for ( int row = 0; row < chunk.getNumRows(); row++ )
+                {
+                    int obj = rand.nextInt( 4 );
+                    if ( obj == 0 )
+                        chunk.setSprite( row, col, get );
+                    else if ( obj == 1 )
+                        chunk.setSprite( row, col, avoid );
+                }
+        } );
+    }
+
+    /* Utility method: streams the next column of the world, as text. */
+    private static String stream( ChunkedWorld world, Board board )
+    {
+        for ( int row = 0; row < ROWS; row++ )
+            board.setSprite( row, 0, SpriteTable.NONE );
+        world.fillColumn( board, 0 );
+        StringBuilder text = new StringBuilder();
+        for ( int row = 0; row < ROWS; row++ )
+            text.append( board.getSprite( row, 0 ) );
+        return text.toString();
+    }
+}
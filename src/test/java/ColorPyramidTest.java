@@ -0,0 +1,66 @@
+/**
+ * Tests that a ColorPyramid brought up to date over the Cells that changed
+ * matches one worked out afresh.
+ */
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+public class ColorPyramidTest
+{
+    private static final int ROWS = 37;
+    private static final int COLS = 53;
+
+    @Test
+    public void changedTilesMatchFreshPyramid()
+    {
+        BoardPlanes planes = new BoardPlanes( ROWS, COLS );
+        planes.trackStoredChanges();
+        SnapshotBuffer buffer = new SnapshotBuffer( ROWS, COLS );
+        GameRandom random = new GameRandom( 3 );
+        DirtyRegion changes = new DirtyRegion( ROWS, COLS );
+        for ( int row = 0; row < ROWS; row++ )
+            for ( int col = 0; col < COLS; col++ )
+                planes.setRGB( row, col, (int) random.nextLong() );
+        changes.markAll();
+        buffer.publish( planes, changes );
+
+        ColorPyramid pyramid = new ColorPyramid( ROWS, COLS );
+        pyramid.getLevel( buffer.acquire(), 3 );
+        for ( int round = 0; round < 20; round++ )
+        {
+            changes.clear();
+            // Several batches may be published between frames.
+            for ( int batch = 0; batch < 3; batch++ )
+            {
+                for ( int i = 0; i < 5; i++ )
+                {
+                    int row = random.nextInt( ROWS );
+                    int col = random.nextInt( COLS );
+                    planes.setRGB( row, col, (int) random.nextLong() );
+                    changes.mark( row, col );
+                }
+                buffer.publish( planes, changes );
+                changes.clear();
+            }
+            BoardSnapshot snapshot = buffer.acquire();
+            pyramid.invalidate( snapshot.changes() );
+            ColorPyramid fresh = new ColorPyramid( ROWS, COLS );
+            int level = 1 + round % Camera.MAX_LEVEL;
+            assertSameImage( fresh.getLevel( snapshot, level ), pyramid.getLevel( snapshot, level ),
+                             "round " + round + " level " + level );
+        }
+    }
+
+    private static void assertSameImage( BufferedImage expected, BufferedImage actual, String when )
+    {
+        assertEquals( expected.getWidth(), actual.getWidth(), when );
+        assertEquals( expected.getHeight(), actual.getHeight(), when );
+        for ( int y = 0; y < expected.getHeight(); y++ )
+            for ( int x = 0; x < expected.getWidth(); x++ )
+                assertEquals( expected.getRGB( x, y ), actual.getRGB( x, y ),
+                              when + " pixel (" + x + ", " + y + ")" );
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Tests that entities are drawn where they are, and nowhere else, as the
+ * game around them scrolls and removes them.
+ */
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class EntityPoolTest
+{
+    @Test
+    public void scrollingLeavesNoCopiesOfEntities()
+    {
+        Game game = newGame();
+        int burger = game.board.getSpriteTable().getId( "burger.gif" );
+        int kind = game.entities.defineKind( burger, null );
+        game.entities.spawn( kind, 3, 8, 0, 0 );
+        game.simulate( 200 );
+
+        assertEquals( 1, game.entities.size() );
+        assertEquals( "........B.", row( game.board, 3, burger ) );
+        assertEquals( 0, game.getScore() );
+    }
+
+    @Test
+    public void entitiesRemovedBetweenStepsAreTakenAway()
+    {
+        Game game = newGame();
+        int burger = game.board.getSpriteTable().getId( "burger.gif" );
+        int kind = game.entities.defineKind( burger, null );
+        int entity = game.entities.spawn( kind, 3, 8, 0, 0 );
+        game.simulate( 3 );
+        assertEquals( "........B.", row( game.board, 3, burger ) );
+
+        // Removed by the game rather than by the entity's own update().
+        game.entities.remove( entity );
+        game.simulate( 1 );
+        assertEquals( 0, game.entities.size() );
+        assertEquals( "..........", row( game.board, 3, burger ) );
+    }
+
+    /*
+     * A game on a 5 x 10 board with no scenery, so only entities are drawn
+     * outside the user's column.
+     */
+    private static Game newGame()
+    {
+        Game game = new Game( new HeadlessBoard( 5, 10 ) );
+        game.avoidOdds = 0;
+        game.getOdds = 0;
+        game.setSeed( 1 );
+        return game;
+    }
+
+    /*
+     * A row of the board, with B for the given sprite, . for an empty Cell
+     * and ? for anything else.
+     */
+    private static String row( Board board, int row, int sprite )
+    {
+        StringBuilder text = new StringBuilder();
+        for ( int col = 0; col < board.getNumCols(); col++ )
+        {
+            int found = board.getSprite( row, col );
+            text.append( found == sprite ? 'B' : found == SpriteTable.NONE ? '.' : '?' );
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Tests for FrameLog: a session recorded from a Grid plays back onto any
+ * board of the same size exactly as the Grid showed it.
+ */
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FrameLogTest
+{
+    @TempDir
+    Path dir;
+
+    @Test
+    public void playbackMatchesRecordedBoard()
+    {
+        Grid grid = new Grid( 10, 15, false );
+        Game game = new Game( grid );
+        game.setSeed( 3 );
+        game.maxTimesAvoid = Integer.MAX_VALUE;
+        String fileName = dir.resolve( "session.frames" ).toString();
+        grid.recordFrameLog( fileName, 1 );
+        game.simulate( 1500 );
+        // Only committed batches of changes are recorded.
+        grid.beginUpdate();
+        grid.setColor( 2, 3, Color.RED );
+        grid.setBackground( Color.BLUE );
+        grid.commitUpdate();
+        game.simulate( 1500 );
+        grid.beginUpdate();
+        grid.setColor( 7, 0, Color.GREEN );
+        grid.commitUpdate();
+        grid.stopRecording();
+
+        FrameLog log = FrameLog.open( fileName );
+        assertEquals( 10, log.getNumRows() );
+        assertEquals( 15, log.getNumCols() );
+        HeadlessBoard board = new HeadlessBoard( log.getNumRows(), log.getNumCols() );
+        long frames = 0;
+        while ( log.readFrame( board ) >= 0 )
+            frames++;
+        log.close();
+
+        assertTrue( frames >= 3000 );
+        for ( int row = 0; row < 10; row++ )
+        {
+            for ( int col = 0; col < 15; col++ )
+            {
+                assertEquals( grid.getImage( row, col ), board.getImage( row, col ) );
+                assertEquals( grid.getRGB( row, col ), board.getRGB( row, col ) );
+            }
+        }
+    }
+
+    @Test
+    public void gridRecordsAgainAfterStopping()
+    {
+        Grid grid = new Grid( 4, 5, false );
+        for ( int session = 0; session < 3; session++ )
+        {
+            String fileName = dir.resolve( "session" + session + ".frames" ).toString();
+            grid.recordFrameLog( fileName, 1 );
+            for ( int col = 0; col < 5; col++ )
+            {
+                grid.beginUpdate();
+                grid.setColor( session, col, Color.RED );
+                grid.commitUpdate();
+            }
+            grid.stopRecording();
+
+            FrameLog log = FrameLog.open( fileName );
+            HeadlessBoard board = new HeadlessBoard( 4, 5 );
+            long frames = 0;
+            while ( log.readFrame( board ) >= 0 )
+                frames++;
+            log.close();
+            assertEquals( 5, frames );
+            assertEquals( Color.RED.getRGB(), board.getRGB( session, 4 ) );
+        }
+        grid.saveLater( dir.resolve( "last.png" ).toString() );
+        grid.waitForSaves();
+        assertTrue( dir.resolve( "last.png" ).toFile().length() > 0 );
+    }
+
+    @Test
+    public void emptyLogHasNoFrames()
+    {
+        String fileName = dir.resolve( "empty.frames" ).toString();
+        FrameLog.create( fileName, 4, 5 ).close();
+        FrameLog log = FrameLog.open( fileName );
+        assertEquals( -1, log.readFrame( new HeadlessBoard( 4, 5 ) ) );
+        log.close();
+    }
+}
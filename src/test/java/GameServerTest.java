@@ -0,0 +1,195 @@
+/**
+ * Tests of GameServer and GameClient talking over the loopback interface:
+ * every client must end up showing the server's board and scores, even one
+ * that stalls for long enough to have its frames dropped.
+ */
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.Test;
+
+public class GameServerTest
+{
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Test
+    public void fiftyClientsSeeTheServersGame() throws Exception
+    {
+        MultiplayerGame game = new MultiplayerGame( new HeadlessBoard( 60, 40 ) );
+        game.setSeed( 5 );
+        GameServer server = new GameServer( game, 0 );
+        ExecutorService connecting = Executors.newFixedThreadPool( 50 );
+        List<GameClient> clients = new ArrayList<GameClient>();
+        Map<GameClient, Board> boards = new HashMap<GameClient, Board>();
+        try
+        {
+            // Clients are let in by tick(), so they connect on threads of their own.
+            List<Future<GameClient>> joins = new ArrayList<Future<GameClient>>();
+            for ( int i = 0; i < 50; i++ )
+                joins.add( connecting.submit( () -> new GameClient( "localhost",
+                                                                    server.getPort() ) ) );
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while ( game.getPlayers().size() < 50 )
+            {
+                assertTrue( System.currentTimeMillis() < deadline, "clients joined in time" );
+                server.tick();
+                Thread.sleep( 1 );
+            }
+            for ( Future<GameClient> join : joins )
+            {
+                GameClient client = join.get( TIMEOUT_MILLIS, TimeUnit.MILLISECONDS );
+                clients.add( client );
+                boards.put( client, start( client ) );
+            }
+
+            GameRandom random = new GameRandom( 9 );
+            for ( int tick = 0; tick < 100; tick++ )
+            {
+                for ( GameClient client : clients )
+                {
+                    if ( random.nextInt( 4 ) == 0 )
+                        client.sendDirection( random.nextInt( 2 ) == 0 ? AbstractGame.UP
+                                                                        : AbstractGame.DOWN );
+                }
+                server.tick();
+            }
+            for ( GameClient client : clients )
+                assertShows( server, client, boards.get( client ) );
+            assertEquals( 0, server.getFramesDropped() );
+        }
+        finally
+        {
+            for ( GameClient client : clients )
+                client.close();
+            connecting.shutdownNow();
+            server.close();
+        }
+    }
+
+    @Test
+    public void stalledClientCatchesUpFromKeyframe() throws Exception
+    {
+        MultiplayerGame game = new MultiplayerGame( new HeadlessBoard( 30, 40 ) );
+        game.setSeed( 7 );
+        GameServer server = new GameServer( game, 0, 4096 );
+        GameRandom random = new GameRandom( 11 );
+        GameClient client = null;
+        try
+        {
+            client = join( server ).get();
+
+            // The client reads nothing until it is started, so once the
+            // socket buffers fill its frames back up on the server.
+            for ( int tick = 0; tick < 5000 && server.getFramesDropped() == 0; tick++ )
+            {
+                paint( game.board, random );
+                server.tick();
+            }
+            assertTrue( server.getFramesDropped() > 0, "frames dropped for stalled client" );
+
+            Board board = start( client );
+            for ( int tick = 0; tick < 10; tick++ )
+            {
+                paint( game.board, random );
+                server.tick();
+            }
+            assertShows( server, client, board );
+        }
+        finally
+        {
+            if ( client != null )
+                client.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void fullGameTurnsClientsAway() throws Exception
+    {
+        MultiplayerGame game = new MultiplayerGame( new HeadlessBoard( 1, 10 ) );
+        GameServer server = new GameServer( game, 0 );
+        List<GameClient> clients = new ArrayList<GameClient>();
+        try
+        {
+            clients.add( join( server ).get() );
+            Future<GameClient> second = join( server );
+            ExecutionException e = assertThrows( ExecutionException.class, () -> second.get() );
+            assertTrue( e.getCause().getMessage().contains( "game is full" ),
+                        e.getCause().getMessage() );
+            assertEquals( 1, game.getPlayers().size() );
+        }
+        finally
+        {
+            for ( GameClient client : clients )
+                client.close();
+            server.close();
+        }
+    }
+
+    /*
+     * Connects a client on another thread, ticking the server until it has
+     * been let in or turned away.
+     */
+    private static Future<GameClient> join( GameServer server ) throws InterruptedException
+    {
+        Future<GameClient> join = ForkJoinPool.commonPool().submit( () ->
+            new GameClient( "localhost", server.getPort() ) );
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while ( !join.isDone() && System.currentTimeMillis() < deadline )
+        {
+            server.tick();
+            Thread.sleep( 1 );
+        }
+        return join;
+    }
+
+    /*
+     * Starts a client showing the game on a board of its own.
+     */
+    private static Board start( GameClient client )
+    {
+        Board board = new HeadlessBoard( client.getNumRows(), client.getNumCols() );
+        client.start( board );
+        return board;
+    }
+
+    /*
+     * Colors every Cell of the board at random, so that frames are large.
+     */
+    private static void paint( Board board, GameRandom random )
+    {
+        for ( int row = 0; row < board.getNumRows(); row++ )
+            for ( int col = 0; col < board.getNumCols(); col++ )
+                board.setRGB( row, col, 0xff000000 | random.nextInt( 0x1000000 ) );
+    }
+
+    /*
+     * Waits for the client to show the server's last tick, then checks its
+     * board and scores against the server's.
+     */
+    private static void assertShows( GameServer server, GameClient client, Board board )
+    {
+        assertTrue( client.waitForTick( server.getTick(), TIMEOUT_MILLIS ),
+                    "client " + client.getPlayerId() + " shown tick " + server.getTick() );
+        MultiplayerGame game = server.getGame();
+        Board expected = game.board;
+        for ( int row = 0; row < expected.getNumRows(); row++ )
+            for ( int col = 0; col < expected.getNumCols(); col++ )
+            {
+                String where = "client " + client.getPlayerId() + " at (" + row + ", " + col + ")";
+                assertEquals( expected.getImage( row, col ), board.getImage( row, col ), where );
+                assertEquals( expected.getRGB( row, col ), board.getRGB( row, col ), where );
+            }
+        for ( MultiplayerGame.Player player : game.getPlayers() )
+        {
+            if ( player.getId() != client.getPlayerId() )
+                continue;
+            assertEquals( player.getTimesGet(), client.getTimesGet() );
+            assertEquals( player.getTimesAvoid(), client.getTimesAvoid() );
+            assertEquals( player.isOut(), client.isOut() );
+        }
+        assertEquals( game.getPlayers().size(), client.getPlayerCount() );
+    }
+}
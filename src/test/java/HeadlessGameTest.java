@@ -0,0 +1,162 @@
+/**
+ * Regression tests for games run with no window (on a HeadlessBoard): the
+ * same seed and moves always give the same game, a recorded game replays
+ * exactly, and a batch gives the same results however many threads play it.
+ */
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class HeadlessGameTest
+{
+    @TempDir
+    Path dir;
+
+    @Test
+    public void headlessPropertyOpensNoWindow()
+    {
+        System.setProperty( AbstractGame.HEADLESS_PROPERTY, "true" );
+        try
+        {
+            Game game = new Game();
+            // Descendants written for a window use grid as they always have.
+            assertSame( game.board, game.grid );
+            assertNull( game.grid.waitForWindow() );
+            game.grid.addKeyListener( new java.awt.event.KeyAdapter() { } );
+            game.grid.setImage( 0, 0, game.getImg );
+            assertEquals( game.getImg, game.board.getImage( 0, 0 ) );
+            game.setSeed( 1 );
+            assertTrue( game.simulate( 100000 ) > 0 );
+        }
+        finally
+        {
+            System.clearProperty( AbstractGame.HEADLESS_PROPERTY );
+        }
+    }
+
+    @Test
+    public void seededGamesRepeat()
+    {
+        for ( long seed = 0; seed < 2000; seed++ )
+        {
+            Game first = newGame( seed );
+            first.simulate( 5000 );
+            Game second = newGame( seed );
+            second.simulate( 5000 );
+            assertEquals( describe( first ), describe( second ), "seed " + seed );
+        }
+    }
+
+    @Test
+    public void recordedGamesReplay()
+    {
+        for ( long seed = 0; seed < 200; seed++ )
+        {
+            Game game = newGame( seed );
+            game.startRecording();
+            game.simulate( 5000 );
+            String fileName = dir.resolve( "game" + seed + ".log" ).toString();
+            game.getInputLog().save( fileName );
+
+            Game replayed = new Game( new HeadlessBoard( 10, 15 ) );
+            replayed.replay( InputLog.load( fileName ) );
+            assertEquals( describe( game ), describe( replayed ), "seed " + seed );
+        }
+    }
+
+    @Test
+    public void batchDoesNotDependOnThreads()
+    {
+        assertEquals( runBatch( 1 ), runBatch( 4 ) );
+    }
+
+    @Test
+    public void imagesChangedBySubclassesAreCounted()
+    {
+        Game game = new OwnImagesGame( new HeadlessBoard( 5, 10 ) );
+        game.avoidOdds = 0;
+        game.getOdds = 0;
+        game.simulate( 1 );
+        game.board.setImage( 1, 1, "get.gif" );
+        game.board.setImage( 3, 1, "avoid.gif" );
+        game.queueDirection( AbstractGame.DOWN );
+        game.queueDirection( AbstractGame.DOWN );
+        game.queueDirection( AbstractGame.DOWN );
+        game.simulate( 3 );
+        assertEquals( 1, game.getScore() );
+        assertEquals( 1, game.timesAvoid );
+    }
+
+    @Test
+    public void titleIsOnlySetWhenItChanges()
+    {
+        int[] titles = new int[1];
+        HeadlessBoard board = new HeadlessBoard( 5, 10 )
+        {
+            public void setTitle( String title )
+            {
+                titles[0]++;
+                super.setTitle( title );
+            }
+        };
+        Game game = new Game( board );
+        for ( int frame = 0; frame < 100; frame++ )
+            game.updateTitle();
+        assertEquals( 1, titles[0] );
+        game.timesGet++;
+        game.updateTitle();
+        game.updateTitle();
+        assertEquals( 2, titles[0] );
+        assertEquals( "Game Score:  " + game.getScore(), board.getTitle() );
+    }
+
+    /*
+     * A game that picks its own images once the Game constructor has run,
+     * as the AbstractGame constructor invites descendants to.
+     */
+    private static class OwnImagesGame extends Game
+    {
+        OwnImagesGame( Board board )
+        {
+            super( board );
+            getImg = "get.gif";
+            avoidImg = "avoid.gif";
+        }
+    }
+
+    /* Utility method: a game with a given seed, moved at random by a controller. */
+    private static Game newGame( long seed )
+    {
+        Game game = new Game( new HeadlessBoard( 10, 15 ) );
+        game.setSeed( seed );
+        GameRandom moves = new GameRandom( ~seed );
+        game.setController( playing -> moves.nextInt( 3 ) - 1 );
+        return game;
+    }
+
+    /* Utility method: everything about a game's state, as text to compare. */
+    private static String describe( Game game )
+    {
+        StringBuilder text = new StringBuilder();
+        text.append( game.getScore() ).append( ' ' ).append( game.timesAvoid ).append( ' ' )
+            .append( game.msElapsed ).append( ' ' ).append( game.userRow ).append( '\n' );
+        for ( int row = 0; row < game.board.getNumRows(); row++ )
+        {
+            for ( int col = 0; col < game.board.getNumCols(); col++ )
+                text.append( game.board.getImage( row, col ) ).append( ' ' );
+            text.append( '\n' );
+        }
+        return text.toString();
+    }
+
+    /* Utility method: plays a batch of games on a given number of threads. */
+    private static String runBatch( int parallelism )
+    {
+        BatchSimulator batch = new BatchSimulator();
+        batch.setSeed( 7 );
+        batch.setParallelism( parallelism );
+        return batch.run( 1000 ).toString();
+    }
+}
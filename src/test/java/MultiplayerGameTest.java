@@ -0,0 +1,41 @@
+/**
+ * Tests of players joining and leaving a MultiplayerGame.
+ */
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+public class MultiplayerGameTest
+{
+    @Test
+    public void playersJoinOnRowsOfTheirOwn()
+    {
+        MultiplayerGame game = new MultiplayerGame( new HeadlessBoard( 5, 8 ) );
+        Set<Integer> rows = new HashSet<Integer>();
+        for ( int i = 0; i < 5; i++ )
+        {
+            assertFalse( game.isFull() );
+            rows.add( game.addPlayer().getRow() );
+        }
+        assertEquals( 5, rows.size() );
+        assertTrue( game.isFull() );
+    }
+
+    @Test
+    public void fullGameTurnsPlayersAway()
+    {
+        MultiplayerGame game = new MultiplayerGame( new HeadlessBoard( 3, 8 ) );
+        MultiplayerGame.Player first = game.addPlayer();
+        game.addPlayer();
+        game.addPlayer();
+        assertThrows( RuntimeException.class, () -> game.addPlayer() );
+        assertEquals( 3, game.getPlayers().size() );
+
+        // A row is free again once its player leaves.
+        game.removePlayer( first );
+        assertFalse( game.isFull() );
+        assertEquals( first.getRow(), game.addPlayer().getRow() );
+        assertTrue( game.isFull() );
+    }
+}
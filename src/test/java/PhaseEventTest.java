@@ -0,0 +1,64 @@
+/**
+ * Tests that steps of game-play show up as PhaseEvents in a Flight Recorder
+ * session, collision checks included.
+ */
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PhaseEventTest
+{
+    @TempDir
+    Path dir;
+
+    @Test
+    public void movingOntoAnObjectTimesTheCollision() throws IOException
+    {
+        Game game = new Game( new HeadlessBoard( 5, 10 ) );
+        game.avoidOdds = 0;
+        game.getOdds = 0;
+        // The first step scrolls; the next scroll is waitTime later.
+        game.simulate( 1 );
+        game.board.setImage( 1, 1, game.getImg );
+
+        Path file = dir.resolve( "steps.jfr" );
+        try ( Recording recording = new Recording() )
+        {
+            recording.enable( PhaseEvent.class ).withThreshold( Duration.ZERO );
+            recording.start();
+            game.queueDirection( AbstractGame.DOWN );
+            game.simulate( 1 );
+            recording.stop();
+            recording.dump( file );
+        }
+
+        assertEquals( 1, game.getScore() );
+        assertEquals( 1, count( file, PhaseEvent.HANDLE_COLLISION ) );
+        assertEquals( 1, count( file, PhaseEvent.MOVE ) );
+        assertEquals( 0, count( file, PhaseEvent.SCROLL_LEFT ) );
+    }
+
+    /*
+     * Utility method: number of events recorded for a phase by this thread
+     * (other tests may be stepping games at the same time).
+     */
+    private static long count( Path file, String phase ) throws IOException
+    {
+        long thread = Thread.currentThread().getId();
+        long count = 0;
+        for ( RecordedEvent event : RecordingFile.readAllEvents( file ) )
+        {
+            if ( event.getEventType().getName().equals( "scrollinggame.Phase" ) &&
+                 phase.equals( event.getString( "phase" ) ) && event.getThread() != null &&
+                 event.getThread().getJavaThreadId() == thread )
+                count++;
+        }
+        return count;
+    }
+}
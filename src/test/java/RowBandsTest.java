@@ -0,0 +1,174 @@
+/**
+ * Tests for work split into row bands (RowBands): on a board big enough to
+ * be split, scrolling, filling and drawing give exactly what they would if
+ * done one row at a time. Needs the common pool to have several threads
+ * (the build runs tests with -Djava.util.concurrent.ForkJoinPool.common.parallelism=4).
+ */
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+public class RowBandsTest
+{
+    private static final int ROWS = 300;
+    private static final int COLS = 300;
+    private static final String[] IMAGES = { "burger.gif", "asteroid.gif", "ship.gif" };
+
+    @Test
+    public void bigBoardsAreSplit()
+    {
+        assertTrue( RowBands.isParallel( ROWS, COLS ),
+                    "common pool has one thread, so nothing is split into bands" );
+        assertFalse( RowBands.isParallel( 10, 15 ) );
+    }
+
+    @Test
+    public void bandsMergeInOrder()
+    {
+        List<Integer> rows = RowBands.reduce( 5000, COLS, ( from, to ) ->
+        {
+            List<Integer> band = new ArrayList<Integer>();
+            for ( int row = from; row < to; row++ )
+                band.add( row );
+            return band;
+        }, ( upper, lower ) ->
+        {
+            upper.addAll( lower );
+            return upper;
+        } );
+        assertEquals( 5000, rows.size() );
+        for ( int row = 0; row < rows.size(); row++ )
+            assertEquals( row, (int) rows.get( row ) );
+    }
+
+    @Test
+    public void planesMatchSimpleModel()
+    {
+        BoardPlanes planes = new BoardPlanes( ROWS, COLS );
+        int[] ids = new int[IMAGES.length];
+        for ( int i = 0; i < IMAGES.length; i++ )
+            ids[i] = planes.getSpriteTable().getId( IMAGES[i] );
+        int[][] model = new int[ROWS][COLS];
+        int background = BoardPlanes.BLACK;
+        Random random = new Random( 5 );
+
+        for ( int step = 0; step < 200; step++ )
+        {
+            for ( int i = 0; i < 500; i++ )
+            {
+                int row = random.nextInt( ROWS );
+                int col = random.nextInt( COLS );
+                int id = random.nextInt( 4 ) == 0 ? SpriteTable.NONE
+                                                  : ids[random.nextInt( ids.length )];
+                planes.setSprite( row, col, id );
+                model[row][col] = id;
+            }
+            planes.shiftLeft();
+            for ( int[] row : model )
+            {
+                System.arraycopy( row, 1, row, 0, COLS - 1 );
+                row[COLS - 1] = SpriteTable.NONE;
+            }
+            if ( step % 50 == 0 )
+            {
+                background = 0xff000000 | random.nextInt();
+                planes.fillRGB( background );
+            }
+        }
+
+        CollisionIndex index = planes.getCollisionIndex();
+        for ( int id : ids )
+        {
+            for ( int row = 0; row < ROWS; row++ )
+            {
+                int count = 0;
+                for ( int col = 0; col < COLS; col++ )
+                {
+                    assertEquals( model[row][col], planes.getSprite( row, col ) );
+                    assertEquals( background, planes.getRGB( row, col ) );
+                    if ( model[row][col] == id )
+                        count++;
+                }
+                assertEquals( count, index.countInRow( id, row ) );
+            }
+            for ( int col = 0; col < COLS; col++ )
+            {
+                int count = 0;
+                for ( int row = 0; row < ROWS; row++ )
+                    if ( model[row][col] == id )
+                        count++;
+                assertEquals( count, index.countInColumn( id, col ) );
+            }
+        }
+    }
+
+    @Test
+    public void gridDrawsChangesLikeFreshGrid()
+    {
+        Grid grid = new Grid( ROWS, COLS, false );
+        Random random = new Random( 9 );
+        paint( grid );
+        for ( int step = 1; step <= 40; step++ )
+        {
+            grid.beginUpdate();
+            for ( int i = 0; i < 300; i++ )
+                grid.setImage( random.nextInt( ROWS ), random.nextInt( COLS ),
+                               random.nextInt( 4 ) == 0 ? null : IMAGES[random.nextInt( 3 )] );
+            grid.shiftLeft();
+            if ( random.nextBoolean() )
+                grid.shiftLeft();
+            if ( step % 15 == 0 )
+                grid.setBackground( new Color( random.nextInt() ) );
+            if ( step % 7 == 0 )
+                grid.setColor( random.nextInt( ROWS ), random.nextInt( COLS ), Color.YELLOW );
+            grid.commitUpdate();
+            BufferedImage drawn = paint( grid );
+            if ( step % 10 == 0 )
+                assertSameImage( paint( copyOf( grid ) ), drawn, "step " + step );
+        }
+    }
+
+    /* Utility method: a new Grid showing the same Cells as another. */
+    private static Grid copyOf( Grid grid )
+    {
+        Grid copy = new Grid( ROWS, COLS, false );
+        copy.beginUpdate();
+        for ( int row = 0; row < ROWS; row++ )
+        {
+            for ( int col = 0; col < COLS; col++ )
+            {
+                copy.setRGB( row, col, grid.getRGB( row, col ) );
+                copy.setImage( row, col, grid.getImage( row, col ) );
+            }
+        }
+        copy.commitUpdate();
+        return copy;
+    }
+
+    /* Utility method: draws a grid into a new image, as the window would. */
+    static BufferedImage paint( Grid grid )
+    {
+        BufferedImage image = new BufferedImage( grid.getWidth(), grid.getHeight(),
+                                                 BufferedImage.TYPE_INT_RGB );
+        Graphics2D g = image.createGraphics();
+        g.setClip( 0, 0, image.getWidth(), image.getHeight() );
+        grid.paintComponent( g );
+        g.dispose();
+        return image;
+    }
+
+    /* Utility method: checks that two images have the same pixels. */
+    static void assertSameImage( BufferedImage expected, BufferedImage actual, String message )
+    {
+        assertEquals( expected.getWidth(), actual.getWidth(), message );
+        assertEquals( expected.getHeight(), actual.getHeight(), message );
+        for ( int y = 0; y < expected.getHeight(); y++ )
+            for ( int x = 0; x < expected.getWidth(); x++ )
+                if ( expected.getRGB( x, y ) != actual.getRGB( x, y ) )
+                    fail( message + ": pixel " + x + ", " + y + " differs" );
+    }
+}
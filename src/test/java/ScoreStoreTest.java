@@ -0,0 +1,145 @@
+/**
+ * Tests for ScoreStore: sessions survive closing and reopening the store,
+ * a session only partly written is dropped without losing the rest, and a
+ * damaged session is skipped without losing those after it.
+ */
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ScoreStoreTest
+{
+    // Layout of the log (see ScoreStore).
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 48;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void reopeningRestoresIndex()
+    {
+        String fileName = dir.resolve( "scores" ).toString();
+        ScoreStore store = new ScoreStore( fileName );
+        addSessions( store, 1000, 1 );
+        String before = describe( store );
+        store.close();
+
+        ScoreStore reopened = new ScoreStore( fileName );
+        assertEquals( 1000, reopened.getCount() );
+        assertEquals( before, describe( reopened ) );
+        reopened.close();
+    }
+
+    @Test
+    public void tornTailIsCutOff() throws IOException
+    {
+        Path file = dir.resolve( "scores" );
+        ScoreStore store = new ScoreStore( file.toString() );
+        addSessions( store, 100, 2 );
+        String before = describe( store );
+        store.close();
+        long length = Files.size( file );
+
+        // Part of a record, as left by a crash in the middle of a write.
+        Files.write( file, new byte[20], StandardOpenOption.APPEND );
+        ScoreStore reopened = new ScoreStore( file.toString() );
+        assertEquals( 100, reopened.getCount() );
+        assertEquals( before, describe( reopened ) );
+        assertEquals( length, Files.size( file ) );
+
+        addSessions( reopened, 1, 3 );
+        reopened.close();
+        ScoreStore again = new ScoreStore( file.toString() );
+        assertEquals( 101, again.getCount() );
+        again.close();
+    }
+
+    @Test
+    public void tornFinalRecordIsCutOff() throws IOException
+    {
+        Path file = dir.resolve( "scores" );
+        ScoreStore store = new ScoreStore( file.toString() );
+        addSessions( store, 100, 5 );
+        store.close();
+        long length = Files.size( file );
+
+        // A whole record's length, but not all of it reached the disk.
+        damage( file, HEADER_SIZE + 99 * RECORD_SIZE + 30 );
+        ScoreStore reopened = new ScoreStore( file.toString() );
+        assertEquals( 99, reopened.getCount() );
+        assertEquals( 0, reopened.getCorruptCount() );
+        assertEquals( length - RECORD_SIZE, Files.size( file ) );
+        reopened.close();
+    }
+
+    @Test
+    public void corruptRecordIsSkipped() throws IOException
+    {
+        Path file = dir.resolve( "scores" );
+        ScoreStore store = new ScoreStore( file.toString() );
+        // More than is read at a time, so that reading goes on past a chunk.
+        addSessions( store, 10000, 6 );
+        store.close();
+        long length = Files.size( file );
+
+        damage( file, HEADER_SIZE + 50 * RECORD_SIZE + 5 );
+        ScoreStore reopened = new ScoreStore( file.toString() );
+        assertEquals( 9999, reopened.getCount() );
+        assertEquals( 1, reopened.getCorruptCount() );
+        assertEquals( length, Files.size( file ) );
+
+        // Sessions added later are read back after the damaged one.
+        addSessions( reopened, 1, 7 );
+        reopened.close();
+        ScoreStore again = new ScoreStore( file.toString() );
+        assertEquals( 10000, again.getCount() );
+        assertEquals( 1, again.getCorruptCount() );
+        again.close();
+    }
+
+    @Test
+    public void flushWaitsForDisk()
+    {
+        String fileName = dir.resolve( "scores" ).toString();
+        ScoreStore store = new ScoreStore( fileName );
+        addSessions( store, 10, 4 );
+        store.flush();
+        // A second store on the same file sees everything flushed.
+        ScoreStore reader = new ScoreStore( fileName );
+        assertEquals( 10, reader.getCount() );
+        reader.close();
+        store.close();
+    }
+
+    /* Utility method: flips the bits of one byte of a file. */
+    static void damage( Path file, long offset ) throws IOException
+    {
+        byte[] bytes = Files.readAllBytes( file );
+        bytes[(int) offset] ^= 0xff;
+        Files.write( file, bytes );
+    }
+
+    /* Utility method: adds sessions with random scores. */
+    static void addSessions( ScoreStore store, int count, long seed )
+    {
+        Random random = new Random( seed );
+        for ( int i = 0; i < count; i++ )
+        {
+            int score = random.nextInt( 50 );
+            store.add( new SessionRecord( score, score, 3, 100 * random.nextInt( 1000 ),
+                                          random.nextLong(), 1000000, 1000L * i, true ) );
+        }
+    }
+
+    /* Utility method: the store's leaderboard and statistics, as text to compare. */
+    static String describe( ScoreStore store )
+    {
+        return store.getCount() + " " + store.getTop( 10 ) + " " + store.getPercentile( 50 ) +
+               " " + store.getPercentBelow( 20 ) + " " + store.getScores();
+    }
+}
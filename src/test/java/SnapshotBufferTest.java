@@ -0,0 +1,110 @@
+/**
+ * Tests that snapshots handed to the drawing thread are whole copies of the
+ * board, and say which Cells changed since the one drawn before them.
+ */
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class SnapshotBufferTest
+{
+    @Test
+    public void skippedSnapshotsAreCoveredByTheNext()
+    {
+        BoardPlanes planes = new BoardPlanes( 6, 8 );
+        planes.trackStoredChanges();
+        SnapshotBuffer buffer = new SnapshotBuffer( 6, 8 );
+        int burger = planes.getSpriteTable().getId( "burger.gif" );
+
+        publish( buffer, planes, 1, 2, burger );
+        assertEquals( 1, buffer.acquire().getSequence() );
+
+        // Two snapshots published before the next is taken: the second
+        // must also name the Cell changed only in the first.
+        publish( buffer, planes, 2, 3, burger );
+        publish( buffer, planes, 4, 5, burger );
+        BoardSnapshot snapshot = buffer.acquire();
+        assertEquals( 3, snapshot.getSequence() );
+        assertCovers( snapshot.changes(), 2, 3 );
+        assertCovers( snapshot.changes(), 4, 5 );
+        assertFalse( covers( copy( snapshot.changes() ), 1, 2 ) );
+
+        // Once taken, earlier changes are not repeated.
+        publish( buffer, planes, 0, 0, burger );
+        snapshot = buffer.acquire();
+        assertCovers( snapshot.changes(), 0, 0 );
+        assertFalse( covers( copy( snapshot.changes() ), 4, 5 ) );
+        assertCopied( planes, snapshot, "after four batches" );
+    }
+
+    @Test
+    public void snapshotsFollowScrolling()
+    {
+        BoardPlanes planes = new BoardPlanes( 5, 7 );
+        planes.trackStoredChanges();
+        SnapshotBuffer buffer = new SnapshotBuffer( 5, 7 );
+        int ship = planes.getSpriteTable().getId( "ship.gif" );
+        for ( int step = 0; step < 20; step++ )
+        {
+            DirtyRegion changes = new DirtyRegion( 5, 7 );
+            planes.shiftLeft();
+            changes.markAll();
+            if ( step % 3 == 0 )
+            {
+                planes.setSprite( step % 5, 6, ship );
+                planes.setRGB( step % 5, step % 7, 0xff000000 | step * 1000 );
+            }
+            buffer.publish( planes, changes );
+            if ( step % 2 == 1 )
+                assertCopied( planes, buffer.acquire(), "step " + step );
+        }
+    }
+
+    /*
+     * Publishes the planes after changing one Cell.
+     */
+    private static void publish( SnapshotBuffer buffer, BoardPlanes planes, int row, int col,
+                                 int sprite )
+    {
+        DirtyRegion changes = new DirtyRegion( planes.getNumRows(), planes.getNumCols() );
+        planes.setSprite( row, col, sprite );
+        changes.mark( row, col );
+        buffer.publish( planes, changes );
+    }
+
+    private static void assertCovers( DirtyRegion region, int row, int col )
+    {
+        assertTrue( covers( copy( region ), row, col ), "(" + row + ", " + col + ") changed" );
+    }
+
+    private static DirtyRegion copy( DirtyRegion region )
+    {
+        DirtyRegion copy = new DirtyRegion( 6, 8 );
+        copy.add( region );
+        return copy;
+    }
+
+    private static boolean covers( DirtyRegion region, int row, int col )
+    {
+        List<Rectangle> rectangles = region.drain();
+        for ( Rectangle r : rectangles )
+            if ( r.contains( col, row ) )
+                return true;
+        return false;
+    }
+
+    private static void assertCopied( BoardPlanes planes, BoardSnapshot snapshot, String when )
+    {
+        for ( int row = 0; row < planes.getNumRows(); row++ )
+            for ( int col = 0; col < planes.getNumCols(); col++ )
+            {
+                assertEquals( planes.getSprite( row, col ), snapshot.getSprite( row, col ),
+                              when + " sprite at (" + row + ", " + col + ")" );
+                assertEquals( planes.getRGB( row, col ), snapshot.getRGB( row, col ),
+                              when + " color at (" + row + ", " + col + ")" );
+            }
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * Tests that a SpriteAtlas does not leave a sprite blank for good when its
+ * image-file could not be read the first time.
+ */
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SpriteAtlasTest
+{
+    @TempDir
+    Path dir;
+
+    @Test
+    public void missingSpriteIsPackedOnceItsFileTurnsUp() throws Exception
+    {
+        String name = dir.resolve( "late.gif" ).toString();
+        String[] names = { null, "ship.gif", name };
+        SpriteAtlas atlas = new SpriteAtlas( new SpriteCache() );
+        atlas.pack( names, 10, null );
+        assertNotNull( atlas.getBounds( 1 ) );
+        assertNull( atlas.getBounds( 2 ) );
+
+        Files.copy( Paths.get( "ship.gif" ), Paths.get( name ) );
+        // Not read again straight away, as packs come once a frame.
+        atlas.pack( names, 10, null );
+        assertNull( atlas.getBounds( 2 ) );
+        Thread.sleep( SpriteAtlas.RETRY_MILLIS + 50 );
+        atlas.pack( names, 10, null );
+        assertNotNull( atlas.getBounds( 2 ) );
+    }
+}
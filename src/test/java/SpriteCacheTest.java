@@ -0,0 +1,42 @@
+/**
+ * Tests that a SpriteCache reads image-files ahead of time for itself, and
+ * does not hold on to files it could not read.
+ */
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SpriteCacheTest
+{
+    @TempDir
+    Path dir;
+
+    @Test
+    public void fileMissingWhenPreloadedIsReadLater() throws Exception
+    {
+        String name = dir.resolve( "late.gif" ).toString();
+        SpriteCache cache = new SpriteCache();
+        cache.preload( name ).join();
+
+        Files.copy( Paths.get( "ship.gif" ), Paths.get( name ) );
+        assertNotNull( cache.get( name, 10, null ) );
+    }
+
+    @Test
+    public void preloadedFileIsScaledForTheCacheThatReadIt() throws Exception
+    {
+        String name = dir.resolve( "gone.gif" ).toString();
+        Files.copy( Paths.get( "ship.gif" ), Paths.get( name ) );
+        SpriteCache cache = new SpriteCache();
+        cache.preload( name ).join();
+        Files.delete( Paths.get( name ) );
+
+        assertNotNull( cache.get( name, 10, null ) );
+        // Read for that cache only, and not kept once scaled.
+        assertNull( new SpriteCache().get( name, 10, null ) );
+        cache.clear();
+        assertNull( cache.get( name, 10, null ) );
+    }
+}